@@ -0,0 +1,87 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ardat.tree.builder;
+
+import ardat.tree.root.TreeRoot;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * FSTreeBuilderBenchmark measures building of the entity tree of a directory tree depending on the number of threads
+ * listing the directories, 0 means the sequential builder. The parallel listing pays off mostly on the network file
+ * systems, where every call waits for the server.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FSTreeBuilderBenchmark {
+
+	@Param({"0", "4"})
+	public int threads;
+
+	@Param({"100"})
+	public int directories;
+
+	@Param({"100"})
+	public int filesPerDirectory;
+
+	private Path workingDir;
+
+	private ForkJoinPool pool;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		workingDir = Files.createTempDirectory("scan");
+		for (int i = 0; i < directories; i++) {
+			Path dir = Files.createDirectories(workingDir.resolve("dir" + i % 10).resolve("dir" + i));
+			for (int j = 0; j < filesPerDirectory; j++) Files.write(dir.resolve("file" + j), new byte[16]);
+		}
+		if (threads > 0) pool = new ForkJoinPool(threads);
+	}
+
+	@TearDown(Level.Iteration)
+	public void closeTree() {
+		TreeRoot.getTreeRoot().set(null);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		if (pool != null) pool.shutdown();
+		try (Stream<Path> paths = Files.walk(workingDir)) {
+			for (Path path: paths.sorted(Comparator.reverseOrder()).toList()) Files.delete(path);
+		}
+	}
+
+	@Benchmark
+	public void build() throws IOException {
+		FSTreeBuilder builder = new FSTreeBuilder(workingDir);
+		builder.setPool(pool);
+		builder.build();
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ardat.tree.builder;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FileHierarchyBenchmark measures building and walking a flat directory with a great number of children. The legacy
+ * variant reproduces the former approach: the hierarchy is a hash map of paths, and the children array of the parent
+ * is copied on every append, so it's measured on smaller directories only.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FileHierarchyBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class WideDirectory {
+
+		@Param({"100000", "500000"})
+		public int children;
+	}
+
+	@State(Scope.Benchmark)
+	public static class LegacyWideDirectory {
+
+		@Param({"10000", "50000"})
+		public int children;
+
+		private Path root;
+
+		private Path[] paths;
+
+		@Setup(Level.Trial)
+		public void setUp() {
+			root = Path.of("root");
+			paths = new Path[children];
+			for (int i = 0; i < children; i++) paths[i] = root.resolve("file" + i);
+		}
+	}
+
+	@Benchmark
+	public void arena(WideDirectory directory, Blackhole blackhole) {
+		FileHierarchy hierarchy = new FileHierarchy();
+		int root = hierarchy.addChild(-1);
+		for (int i = 0; i < directory.children; i++) hierarchy.addChild(root);
+		for (int child = hierarchy.getFirstChild(root); child >= 0; child = hierarchy.getNextSibling(child)) {
+			blackhole.consume(child);
+		}
+	}
+
+	@Benchmark
+	public void legacyPathMap(LegacyWideDirectory directory, Blackhole blackhole) {
+		HashMap<Path, Path[]> hierarchy = new HashMap<>();
+		hierarchy.put(directory.root, new Path[0]);
+		for (Path child: directory.paths) {
+			Path[] oldChildren = hierarchy.get(child.getParent());
+			Path[] newChildren = Arrays.copyOf(oldChildren, oldChildren.length + 1);
+			newChildren[newChildren.length - 1] = child;
+			hierarchy.replace(child.getParent(), newChildren);
+			hierarchy.put(child, new Path[0]);
+		}
+		for (Path child: hierarchy.get(directory.root)) blackhole.consume(child);
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ardat.tree.builder.archive;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * HeadersBenchmark measures scanning of an archive consisting of one million small entities. The legacy variant
+ * reproduces the former approach: the header is read line by line decoding every read window with the default
+ * charset, and the path and the size are extracted with freshly compiled regular expressions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class HeadersBenchmark {
+
+	@Param({"1000000"})
+	public int headers;
+
+	private Path archive;
+
+	private ByteBuffer inMemory;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		archive = Files.createTempFile("headers", ".ardat");
+		StringBuilder builder = new StringBuilder(headers * 200);
+		for (int i = 0; i < headers; i++) {
+			builder.append("""
+				class FileEntity
+				create-time 1
+				modify-time 1
+				access-time 1
+				class none
+				filepath root/\u0444\u0430\u0439\u043b%d
+				children 0
+				size 0000000000000006
+
+				qwerty""".formatted(i));
+		}
+		byte[] bytes = builder.toString().getBytes(StandardCharsets.UTF_8);
+		Files.write(archive, bytes);
+		inMemory = ByteBuffer.wrap(bytes);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		Files.delete(archive);
+	}
+
+	@Benchmark
+	public long parseInMemory() {
+		ByteBuffer buffer = inMemory.duplicate();
+		long sizes = 0;
+		while (buffer.hasRemaining()) {
+			ArchiveHeader header = Headers.parse(buffer);
+			sizes += header.size();
+			buffer.position(buffer.position() + (int) header.size());
+		}
+		return sizes;
+	}
+
+	@Benchmark
+	public long scanArchive() throws IOException {
+		try (FileChannel channel = FileChannel.open(archive, StandardOpenOption.READ)) {
+			HeaderReader reader = new HeaderReader(channel);
+			long offset = 0;
+			long size = channel.size();
+			while (offset < size) {
+				ArchiveHeader header = reader.read(offset);
+				offset += header.length() + header.size();
+			}
+			return offset;
+		}
+	}
+
+	@Benchmark
+	public long legacyScanArchive() throws IOException {
+		try (FileChannel channel = FileChannel.open(archive, StandardOpenOption.READ)) {
+			long size = channel.size();
+			while (channel.position() < size) {
+				long pos = channel.position();
+				StringBuilder header = new StringBuilder();
+				String line;
+				while (!(line = legacyReadLine(channel)).isBlank()) {
+					header.append(line).append('\n');
+				}
+				header.append('\n');
+				Matcher pathMatcher = Pattern.compile("filepath [^\n]+").matcher(header);
+				Matcher sizeMatcher = Pattern.compile("size [\\da-f]{16}").matcher(header);
+				if (!pathMatcher.find() || !sizeMatcher.find()) throw new IllegalStateException();
+				long fileSize = Long.parseLong(sizeMatcher.group().substring(5), 16);
+				channel.position(pos + header.length() + fileSize);
+			}
+			return channel.position();
+		}
+	}
+
+	private static String legacyReadLine(SeekableByteChannel channel) throws IOException {
+		StringBuilder lineBuilder = new StringBuilder();
+		ByteBuffer byteBuffer = ByteBuffer.allocate(512);
+		while (channel.read(byteBuffer) > 0) {
+			byteBuffer.flip();
+			CharBuffer charBuffer = Charset.defaultCharset().decode(byteBuffer);
+			int lfIndex = charBuffer.toString().indexOf('\n');
+			if (lfIndex > -1) {
+				lineBuilder.append(charBuffer, 0, lfIndex);
+				channel.position(channel.position() - byteBuffer.limit() + lfIndex + 1);
+				break;
+			}
+			lineBuilder.append(charBuffer);
+			byteBuffer.clear();
+		}
+		return lineBuilder.toString();
+	}
+}
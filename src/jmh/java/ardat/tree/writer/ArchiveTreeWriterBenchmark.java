@@ -0,0 +1,138 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ardat.tree.writer;
+
+import ardat.tree.ArchiveEntity;
+import ardat.tree.ArchiveEntityProperty;
+import ardat.tree.builder.FSTreeBuilder;
+import ardat.tree.root.TreeRoot;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * ArchiveTreeWriterBenchmark measures archiving of a directory consisting of many small files. The legacy variant
+ * reproduces the former approach: the archive is reopened for every entity, and every header line is a separate write.
+ * The source files are kept open until the tree is released, so the number of files is limited by the open files limit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ArchiveTreeWriterBenchmark {
+
+	@Param({"10000"})
+	public int files;
+
+	@Param({"100"})
+	public int fileSize;
+
+	private Path workingDir;
+
+	private Path source;
+
+	private Path archive;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		workingDir = Files.createTempDirectory("writer");
+		source = Files.createDirectory(workingDir.resolve("source"));
+		byte[] content = new byte[fileSize];
+		for (int i = 0; i < files; i++) Files.write(source.resolve("file" + i), content);
+		archive = workingDir.resolve("archive.ardat");
+	}
+
+	@Setup(Level.Iteration)
+	public void buildTree() throws IOException {
+		new FSTreeBuilder(source).build();
+	}
+
+	@TearDown(Level.Iteration)
+	public void deleteArchive() throws IOException {
+		TreeRoot.getTreeRoot().set(null);
+		Files.deleteIfExists(archive);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		try (Stream<Path> paths = Files.walk(workingDir)) {
+			for (Path path: paths.sorted(Comparator.reverseOrder()).toList()) Files.delete(path);
+		}
+	}
+
+	@Benchmark
+	public void write() throws IOException {
+		ArchiveTreeWriter.getArchiveTreeWriter(archive).write();
+	}
+
+	@Benchmark
+	public void legacyWrite() throws IOException {
+		Files.createFile(archive);
+		new LegacyArchiveTreeWriter(archive).write();
+	}
+
+	private static class LegacyArchiveTreeWriter extends AbstractTreeWriter {
+
+		private final Path archPath;
+
+		private LegacyArchiveTreeWriter(Path archive) {
+			archPath = archive;
+		}
+
+		@Override
+		protected void writeArchiveEntity(ArchiveEntity entity) throws IOException {
+			try (SeekableByteChannel sbc = Files.newByteChannel(archPath, StandardOpenOption.WRITE)) {
+				sbc.position(sbc.size());
+				for (ArchiveEntityProperty property: entity.getProperties()) {
+					String ptLine = property.key() + " " + property.val() + "\n";
+					sbc.write(ByteBuffer.wrap(ptLine.getBytes(StandardCharsets.UTF_8)));
+				}
+				sbc.write(ByteBuffer.wrap("class none\n".getBytes()));
+				String pathLine = "filepath %s\n".formatted(String.join("/", entity.getName()));
+				sbc.write(ByteBuffer.wrap(pathLine.getBytes(StandardCharsets.UTF_8)));
+				sbc.write(ByteBuffer.wrap(("children %d\n".formatted(entity.getChildren().length)).getBytes()));
+
+				long sizePos = sbc.position();
+				sbc.write(ByteBuffer.wrap("size %016x\n".formatted(10).getBytes()));
+				sbc.write(ByteBuffer.wrap(new byte[] {'\n'}));
+
+				long size = 0;
+				ByteBuffer buffer = ByteBuffer.allocate(8 * 1024);
+				while (entity.getContent(buffer) > 0) {
+					buffer.flip();
+					size += sbc.write(buffer);
+					buffer.clear();
+				}
+				sbc.position(sizePos);
+				sbc.write(ByteBuffer.wrap("size %016x".formatted(size).getBytes()));
+			}
+		}
+	}
+}
@@ -0,0 +1,120 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ardat.tree.writer;
+
+import ardat.tree.AESEntityConfigurator;
+import ardat.tree.FileEntityDecorator;
+import ardat.tree.PrettyEntityConfigurator;
+import ardat.tree.builder.FSTreeBuilder;
+import ardat.tree.builder.TreeBuilder;
+import ardat.tree.root.TreeRoot;
+import crypto.AESCTRStrategy;
+import io.Durability;
+import io.GlobalKey;
+import org.openjdk.jmh.annotations.*;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * AsyncOutputBenchmark measures archiving of hex encoded and encrypted files ( {@link ardat.tree.PrettyEntity} and
+ * {@link ardat.tree.AESEntity} ) depending on the number of buffers the archive is written behind through, 0 writes
+ * the archive on the calling thread. The overlap of the encoding and the writes shows only if the writes block, i.e.
+ * the device is slower than the encoding or the page cache is full of dirty pages, so the durability is a parameter
+ * as well.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AsyncOutputBenchmark {
+
+	@Param({"0", "2", "3"})
+	public int buffers;
+
+	@Param({"none", "end-of-job"})
+	public String durability;
+
+	@Param({"100"})
+	public int files;
+
+	@Param({"1048576"})
+	public int fileSize;
+
+	private Path workingDir;
+
+	private Path source;
+
+	private Path archive;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		workingDir = Files.createTempDirectory("async-output");
+		source = Files.createDirectory(workingDir.resolve("source"));
+		Random random = new Random(42);
+		byte[] content = new byte[fileSize];
+		for (int i = 0; i < files; i++) {
+			random.nextBytes(content);
+			Files.write(source.resolve("file" + i), content);
+		}
+		archive = workingDir.resolve("archive.ardat");
+		byte[] key = new byte[16];
+		random.nextBytes(key);
+		GlobalKey.getGlobalKey().setKey(new SecretKeySpec(key, "AES"));
+	}
+
+	@Setup(Level.Iteration)
+	public void buildTree() throws IOException {
+		TreeBuilder builder = new FSTreeBuilder(source);
+		FileEntityDecorator decorator = new FileEntityDecorator();
+		decorator.getDecoratorList().add(new PrettyEntityConfigurator());
+		decorator.getDecoratorList().add(new AESEntityConfigurator(AESCTRStrategy.class));
+		builder.setDecorator(decorator);
+		builder.build();
+	}
+
+	@TearDown(Level.Iteration)
+	public void deleteArchive() throws IOException {
+		TreeRoot.getTreeRoot().set(null);
+		Files.deleteIfExists(archive);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		try (Stream<Path> paths = Files.walk(workingDir)) {
+			for (Path path: paths.sorted(Comparator.reverseOrder()).toList()) Files.delete(path);
+		}
+	}
+
+	@Benchmark
+	public void write() throws IOException {
+		ArchiveTreeWriter writer = ArchiveTreeWriter.getArchiveTreeWriter(archive);
+		writer.setAsyncOutput(buffers);
+		if (durability.equals("end-of-job")) writer.setDurability(Durability.endOfJob());
+		writer.write();
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ardat.tree.writer;
+
+import ardat.tree.FileEntityDecorator;
+import ardat.tree.PrettyEntityConfigurator;
+import ardat.tree.builder.ArchiveTreeBuilder;
+import ardat.tree.builder.FSTreeBuilder;
+import ardat.tree.builder.TreeBuilder;
+import ardat.tree.root.TreeRoot;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * FSTreeWriterBenchmark measures extraction of an archive with hex encoded content ( {@link ardat.tree.PrettyEntity} )
+ * depending on the number of executor threads. 0 threads means the sequential writer. The throughput is the number of
+ * extracted bytes, files * fileSize, divided by the score.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FSTreeWriterBenchmark {
+
+	@Param({"0", "1", "2", "4", "8"})
+	public int threads;
+
+	@Param({"1000"})
+	public int files;
+
+	@Param({"65536"})
+	public int fileSize;
+
+	private Path workingDir;
+
+	private Path archive;
+
+	private Path destination;
+
+	private ExecutorService executor;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		workingDir = Files.createTempDirectory("extraction");
+		Path source = Files.createDirectory(workingDir.resolve("source"));
+		Random random = new Random(42);
+		byte[] content = new byte[fileSize];
+		for (int i = 0; i < files; i++) {
+			random.nextBytes(content);
+			Files.write(source.resolve("file" + i), content);
+		}
+		TreeBuilder builder = new FSTreeBuilder(source);
+		FileEntityDecorator decorator = new FileEntityDecorator();
+		decorator.getDecoratorList().add(new PrettyEntityConfigurator());
+		builder.setDecorator(decorator);
+		builder.build();
+		archive = workingDir.resolve("archive.ardat");
+		ArchiveTreeWriter.getArchiveTreeWriter(archive, true).write();
+		TreeRoot.getTreeRoot().set(null);
+		destination = workingDir.resolve("destination");
+		if (threads > 0) executor = Executors.newFixedThreadPool(threads);
+	}
+
+	@Setup(Level.Iteration)
+	public void buildTree() throws IOException {
+		Files.createDirectory(destination);
+		ArchiveTreeBuilder.getArchiveTreeBuilder(archive).build();
+	}
+
+	@TearDown(Level.Iteration)
+	public void deleteDestination() throws IOException {
+		TreeRoot.getTreeRoot().set(null);
+		delete(destination);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		if (executor != null) executor.shutdown();
+		delete(workingDir);
+	}
+
+	@Benchmark
+	public void write() throws IOException {
+		FSTreeWriter writer = FSTreeWriter.getFSTreeWriter(destination);
+		writer.setExecutor(executor);
+		writer.write();
+	}
+
+	private static void delete(Path path) throws IOException {
+		try (Stream<Path> paths = Files.walk(path)) {
+			for (Path p: paths.sorted(Comparator.reverseOrder()).toList()) Files.delete(p);
+		}
+	}
+}
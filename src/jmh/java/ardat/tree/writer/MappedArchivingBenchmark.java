@@ -0,0 +1,101 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ardat.tree.writer;
+
+import ardat.tree.builder.FSTreeBuilder;
+import ardat.tree.root.TreeRoot;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * MappedArchivingBenchmark measures archiving of undecorated files written through the channel and through
+ * the mappings, see {@link ArchiveTreeWriter#setMappedOutput(boolean)}. The small files are written by the channel with
+ * a gathering write per entity, the large ones are transferred by the channel and read into the mapping.
+ * The distributions are:
+ * <ul>
+ *     <li>small: 4096 files of 4 KiB</li>
+ *     <li>large: 8 files of 32 MiB</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MappedArchivingBenchmark {
+
+	@Param({"channel", "mapped"})
+	public String output;
+
+	@Param({"small", "large"})
+	public String distribution;
+
+	private Path workingDir;
+
+	private Path source;
+
+	private Path archive;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		workingDir = Files.createTempDirectory("mapped-archiving");
+		source = Files.createDirectory(workingDir.resolve("source"));
+		Random random = new Random(42);
+		boolean small = distribution.equals("small");
+		byte[] content = new byte[small ? 4 * 1024 : 32 * 1024 * 1024];
+		for (int i = 0; i < (small ? 4096 : 8); i++) {
+			random.nextBytes(content);
+			Files.write(source.resolve("file" + i), content);
+		}
+		archive = workingDir.resolve("archive.ardat");
+	}
+
+	@Setup(Level.Iteration)
+	public void buildTree() throws IOException {
+		new FSTreeBuilder(source).build();
+	}
+
+	@TearDown(Level.Iteration)
+	public void deleteArchive() throws IOException {
+		TreeRoot.getTreeRoot().set(null);
+		Files.deleteIfExists(archive);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		try (Stream<Path> paths = Files.walk(workingDir)) {
+			for (Path path: paths.sorted(Comparator.reverseOrder()).toList()) Files.delete(path);
+		}
+	}
+
+	@Benchmark
+	public void write() throws IOException {
+		ArchiveTreeWriter writer = ArchiveTreeWriter.getArchiveTreeWriter(archive);
+		writer.setMappedOutput(output.equals("mapped"));
+		writer.write();
+	}
+}
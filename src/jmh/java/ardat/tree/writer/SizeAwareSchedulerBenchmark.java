@@ -0,0 +1,136 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ardat.tree.writer;
+
+import ardat.tree.builder.ArchiveTreeBuilder;
+import ardat.tree.builder.FSTreeBuilder;
+import ardat.tree.root.TreeRoot;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * SizeAwareSchedulerBenchmark measures extraction of a plain archive with a skewed size distribution: one large file
+ * stored last and many small files. The fifo variant submits the files to the pool in the wide-wise order, as
+ * {@link FSTreeWriter#setExecutor} does, so the large file is started last. The scheduler variant uses
+ * {@link SizeAwareScheduler}, which starts the large file first and splits it into ranges.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SizeAwareSchedulerBenchmark {
+
+	@Param({"fifo", "scheduler"})
+	public String mode;
+
+	@Param({"4"})
+	public int threads;
+
+	@Param({"1000"})
+	public int smallFiles;
+
+	@Param({"65536"})
+	public int smallFileSize;
+
+	@Param({"268435456"})
+	public long largeFileSize;
+
+	private Path workingDir;
+
+	private Path archive;
+
+	private Path destination;
+
+	private ForkJoinPool pool;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		workingDir = Files.createTempDirectory("scheduling");
+		Path source = Files.createDirectory(workingDir.resolve("source"));
+		Random random = new Random(42);
+		byte[] chunk = new byte[1024 * 1024];
+		for (int i = 0; i < smallFiles; i++) {
+			random.nextBytes(chunk);
+			try (OutputStream output = Files.newOutputStream(source.resolve("file" + i))) {
+				output.write(chunk, 0, smallFileSize);
+			}
+		}
+		try (OutputStream output = Files.newOutputStream(source.resolve("zlarge"))) {
+			for (long written = 0; written < largeFileSize; written += chunk.length) {
+				random.nextBytes(chunk);
+				output.write(chunk, 0, (int) Math.min(chunk.length, largeFileSize - written));
+			}
+		}
+		new FSTreeBuilder(source).build();
+		archive = workingDir.resolve("archive.ardat");
+		ArchiveTreeWriter.getArchiveTreeWriter(archive).write();
+		TreeRoot.getTreeRoot().set(null);
+		destination = workingDir.resolve("destination");
+		pool = new ForkJoinPool(threads);
+	}
+
+	@Setup(Level.Iteration)
+	public void buildTree() throws IOException {
+		Files.createDirectory(destination);
+		ArchiveTreeBuilder.getArchiveTreeBuilder(archive).build();
+	}
+
+	@TearDown(Level.Iteration)
+	public void deleteDestination() throws IOException {
+		TreeRoot.getTreeRoot().set(null);
+		delete(destination);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		pool.shutdown();
+		delete(workingDir);
+	}
+
+	@Benchmark
+	public SizeAwareScheduler.Metrics write() throws IOException {
+		FSTreeWriter writer = FSTreeWriter.getFSTreeWriter(destination);
+		if (mode.equals("fifo")) {
+			writer.setExecutor(pool);
+			writer.write();
+			return null;
+		}
+		SizeAwareScheduler scheduler = new SizeAwareScheduler(pool, 16 * 1024 * 1024);
+		writer.setScheduler(scheduler);
+		writer.write();
+		return scheduler.getMetrics();
+	}
+
+	private static void delete(Path path) throws IOException {
+		try (Stream<Path> paths = Files.walk(path)) {
+			for (Path p: paths.sorted(Comparator.reverseOrder()).toList()) Files.delete(p);
+		}
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ardat.tree.writer;
+
+import ardat.tree.FileEntityDecorator;
+import ardat.tree.PrettyEntityConfigurator;
+import ardat.tree.builder.ArchiveTreeBuilder;
+import ardat.tree.builder.FSTreeBuilder;
+import ardat.tree.builder.TreeBuilder;
+import ardat.tree.root.TreeRoot;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * WindowPolicyBenchmark measures the extraction of hex encoded files ( {@link ardat.tree.PrettyEntity} ) by
+ * {@link FSTreeWriter} depending on the {@link WindowPolicy}. The decoded content is copied through the windows, so
+ * the policy decides the number of writes per file. The distributions of the file sizes are:
+ * <ul>
+ *     <li>small: 2048 files from 64 bytes to 8 KiB</li>
+ *     <li>mixed: 256 files from 64 bytes to 2 MiB, the logarithm of the size is uniform</li>
+ *     <li>large: 4 files of 16 MiB</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class WindowPolicyBenchmark {
+
+	@Param({"fixed-8k", "fixed-64k", "adaptive"})
+	public String policy;
+
+	@Param({"small", "mixed", "large"})
+	public String distribution;
+
+	private Path workingDir;
+
+	private Path archive;
+
+	private Path destination;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		workingDir = Files.createTempDirectory("window-policy");
+		Path source = Files.createDirectory(workingDir.resolve("source"));
+		Random random = new Random(42);
+		long[] sizes = switch (distribution) {
+			case "small" -> random.longs(2048, 64, 8 * 1024 + 1).toArray();
+			case "mixed" -> random.doubles(256, Math.log(64), Math.log(2 * 1024 * 1024))
+				.mapToLong(log -> (long) Math.exp(log))
+				.toArray();
+			default -> new long[]{16 << 20, 16 << 20, 16 << 20, 16 << 20};
+		};
+		byte[] chunk = new byte[1024 * 1024];
+		for (int i = 0; i < sizes.length; i++) {
+			try (OutputStream output = Files.newOutputStream(source.resolve("file" + i))) {
+				for (long written = 0; written < sizes[i]; written += chunk.length) {
+					random.nextBytes(chunk);
+					output.write(chunk, 0, (int) Math.min(chunk.length, sizes[i] - written));
+				}
+			}
+		}
+		TreeBuilder builder = new FSTreeBuilder(source);
+		FileEntityDecorator decorator = new FileEntityDecorator();
+		decorator.getDecoratorList().add(new PrettyEntityConfigurator());
+		builder.setDecorator(decorator);
+		builder.build();
+		archive = workingDir.resolve("archive.ardat");
+		ArchiveTreeWriter.getArchiveTreeWriter(archive).write();
+		TreeRoot.getTreeRoot().set(null);
+		destination = workingDir.resolve("destination");
+	}
+
+	@Setup(Level.Iteration)
+	public void buildTree() throws IOException {
+		Files.createDirectory(destination);
+		ArchiveTreeBuilder.getArchiveTreeBuilder(archive).build();
+	}
+
+	@TearDown(Level.Iteration)
+	public void deleteDestination() throws IOException {
+		TreeRoot.getTreeRoot().set(null);
+		delete(destination);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		delete(workingDir);
+	}
+
+	@Benchmark
+	public void write() throws IOException {
+		FSTreeWriter writer = FSTreeWriter.getFSTreeWriter(destination);
+		writer.setWindowPolicy(switch (policy) {
+			case "fixed-8k" -> WindowPolicy.fixed(8 * 1024);
+			case "fixed-64k" -> WindowPolicy.fixed(64 * 1024);
+			default -> WindowPolicy.adaptive();
+		});
+		writer.write();
+	}
+
+	private static void delete(Path path) throws IOException {
+		try (Stream<Path> paths = Files.walk(path)) {
+			for (Path p: paths.sorted(Comparator.reverseOrder()).toList()) Files.delete(p);
+		}
+	}
+}
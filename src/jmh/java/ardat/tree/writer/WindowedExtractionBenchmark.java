@@ -0,0 +1,184 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ardat.tree.writer;
+
+import ardat.tree.ArchiveEntity;
+import ardat.tree.FileEntityDecorator;
+import ardat.tree.PrettyEntityConfigurator;
+import ardat.tree.builder.ArchiveTreeBuilder;
+import ardat.tree.builder.FSTreeBuilder;
+import ardat.tree.builder.TreeBuilder;
+import ardat.tree.root.TreeRoot;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * WindowedExtractionBenchmark measures the sequential read of the files restored from an archive with hex encoded
+ * content ( {@link ardat.tree.PrettyEntity} ). The windowed files are restored by {@link FSTreeWriter}, which writes
+ * the decoded content in 1 MiB windows. The grown files are restored as before, the file grows with every 8 KiB
+ * write. The benefit depends on the file system and is hidden if the files are read from the page cache, so the
+ * restored files are synced and the caches are dropped before every iteration. Dropping the caches requires the
+ * permission to write /proc/sys/vm/drop_caches, otherwise the files are read from the page cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class WindowedExtractionBenchmark {
+
+	@Param({"windowed", "grown"})
+	public String layout;
+
+	@Param({"8"})
+	public int files;
+
+	@Param({"33554432"})
+	public long fileSize;
+
+	private Path workingDir;
+
+	private Path archive;
+
+	private Path destination;
+
+	private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(1024 * 1024);
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		workingDir = Files.createTempDirectory("extension");
+		Path source = Files.createDirectory(workingDir.resolve("source"));
+		Random random = new Random(42);
+		byte[] chunk = new byte[1024 * 1024];
+		for (int i = 0; i < files; i++) {
+			try (OutputStream output = Files.newOutputStream(source.resolve("file" + i))) {
+				for (long written = 0; written < fileSize; written += chunk.length) {
+					random.nextBytes(chunk);
+					output.write(chunk, 0, (int) Math.min(chunk.length, fileSize - written));
+				}
+			}
+		}
+		TreeBuilder builder = new FSTreeBuilder(source);
+		FileEntityDecorator decorator = new FileEntityDecorator();
+		decorator.getDecoratorList().add(new PrettyEntityConfigurator());
+		builder.setDecorator(decorator);
+		builder.build();
+		archive = workingDir.resolve("archive.ardat");
+		ArchiveTreeWriter.getArchiveTreeWriter(archive).write();
+		TreeRoot.getTreeRoot().set(null);
+		delete(source);
+		destination = workingDir.resolve("destination");
+	}
+
+	@Setup(Level.Iteration)
+	public void restore() throws IOException {
+		Files.createDirectory(destination);
+		ArchiveTreeBuilder.getArchiveTreeBuilder(archive).build();
+		if (layout.equals("windowed")) {
+			FSTreeWriter.getFSTreeWriter(destination).write();
+		} else {
+			growFiles();
+		}
+		TreeRoot.getTreeRoot().set(null);
+		dropCaches();
+	}
+
+	@TearDown(Level.Iteration)
+	public void deleteDestination() throws IOException {
+		delete(destination);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		delete(workingDir);
+	}
+
+	@Benchmark
+	public long read() throws IOException {
+		long read = 0;
+		try (Stream<Path> paths = Files.walk(destination)) {
+			for (Path path: paths.filter(Files::isRegularFile).toList()) {
+				try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+					int n;
+					while ((n = channel.read(readBuffer.clear())) > 0) read += n;
+				}
+			}
+		}
+		return read;
+	}
+
+	private void growFiles() throws IOException {
+		ArrayDeque<ArchiveEntity> queue = new ArrayDeque<>();
+		queue.add(TreeRoot.getTreeRoot().get());
+		ByteBuffer byteBuffer = ByteBuffer.allocate(8 * 1024);
+		while (!queue.isEmpty()) {
+			ArchiveEntity entity = queue.poll();
+			Path path = Path.of(destination.toString(), entity.getName());
+			if (!entity.isLeaf()) {
+				Files.createDirectory(path);
+			} else {
+				try (
+					WritableByteChannel wbc =
+						Files.newByteChannel(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)
+				) {
+					while (entity.getContent(byteBuffer) > 0) {
+						byteBuffer.flip();
+						while (byteBuffer.hasRemaining()) wbc.write(byteBuffer);
+						byteBuffer.clear();
+					}
+				}
+			}
+			queue.addAll(Arrays.asList(entity.getChildren()));
+		}
+	}
+
+	private static void dropCaches() throws IOException {
+		Path dropCaches = Path.of("/proc/sys/vm/drop_caches");
+		if (!Files.isWritable(dropCaches)) return;
+		try {
+			new ProcessBuilder("sync").inheritIO().start().waitFor();
+		} catch (InterruptedException exception) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+		Files.writeString(dropCaches, "3");
+	}
+
+	private static void delete(Path path) throws IOException {
+		try (Stream<Path> paths = Files.walk(path)) {
+			for (Path p: paths.sorted(Comparator.reverseOrder()).toList()) Files.delete(p);
+		}
+	}
+}
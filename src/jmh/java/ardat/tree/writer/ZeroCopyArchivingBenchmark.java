@@ -0,0 +1,114 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ardat.tree.writer;
+
+import ardat.tree.ArchiveEntityDecorator;
+import ardat.tree.FileEntity;
+import ardat.tree.builder.FSTreeBuilder;
+import ardat.tree.builder.TreeBuilder;
+import ardat.tree.root.TreeRoot;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * ZeroCopyArchivingBenchmark measures archiving of a directory consisting of a few large files. The transfer variant
+ * archives the plain files, which are copied into the archive with {@link java.nio.channels.FileChannel#transferTo}.
+ * The heap variant wraps every file in a transparent decorator, so the content passes through the heap window as
+ * it did before. The archive size is files * fileSize, 2 GiB by default.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ZeroCopyArchivingBenchmark {
+
+	@Param({"transfer", "heap"})
+	public String copy;
+
+	@Param({"4"})
+	public int files;
+
+	@Param({"536870912"})
+	public long fileSize;
+
+	private Path workingDir;
+
+	private Path source;
+
+	private Path archive;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		workingDir = Files.createTempDirectory("archiving");
+		source = Files.createDirectory(workingDir.resolve("source"));
+		Random random = new Random(42);
+		byte[] chunk = new byte[1024 * 1024];
+		for (int i = 0; i < files; i++) {
+			try (OutputStream output = Files.newOutputStream(source.resolve("file" + i))) {
+				for (long written = 0; written < fileSize; written += chunk.length) {
+					random.nextBytes(chunk);
+					output.write(chunk, 0, (int) Math.min(chunk.length, fileSize - written));
+				}
+			}
+		}
+		archive = workingDir.resolve("archive.ardat");
+	}
+
+	@Setup(Level.Iteration)
+	public void buildTree() throws IOException {
+		TreeBuilder builder = new FSTreeBuilder(source);
+		if (copy.equals("heap")) {
+			builder.setDecorator(entity -> {
+				if (!(entity instanceof FileEntity)) return entity;
+				ArchiveEntityDecorator decorator = new ArchiveEntityDecorator() {};
+				decorator.setComponent(entity);
+				return decorator;
+			});
+		}
+		builder.build();
+	}
+
+	@TearDown(Level.Iteration)
+	public void deleteArchive() throws IOException {
+		TreeRoot.getTreeRoot().set(null);
+		Files.deleteIfExists(archive);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		try (Stream<Path> paths = Files.walk(workingDir)) {
+			for (Path path: paths.sorted(Comparator.reverseOrder()).toList()) Files.delete(path);
+		}
+	}
+
+	@Benchmark
+	public void write() throws IOException {
+		ArchiveTreeWriter.getArchiveTreeWriter(archive).write();
+	}
+}
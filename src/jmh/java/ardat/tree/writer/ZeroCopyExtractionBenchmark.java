@@ -0,0 +1,148 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ardat.tree.writer;
+
+import ardat.tree.ArchiveEntity;
+import ardat.tree.builder.ArchiveTreeBuilder;
+import ardat.tree.builder.FSTreeBuilder;
+import ardat.tree.root.TreeRoot;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * ZeroCopyExtractionBenchmark measures extraction of a plain archive consisting of a few large files. The transfer
+ * variant is {@link FSTreeWriter}, which copies the content with {@link java.nio.channels.FileChannel#transferTo}.
+ * The heap variant reproduces the former writer, which read the content into an 8 KiB heap buffer and wrote it again.
+ * The archive size is files * fileSize, 2 GiB by default.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ZeroCopyExtractionBenchmark {
+
+	@Param({"transfer", "heap"})
+	public String copy;
+
+	@Param({"4"})
+	public int files;
+
+	@Param({"536870912"})
+	public long fileSize;
+
+	private Path workingDir;
+
+	private Path archive;
+
+	private Path destination;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		workingDir = Files.createTempDirectory("extraction");
+		Path source = Files.createDirectory(workingDir.resolve("source"));
+		Random random = new Random(42);
+		byte[] chunk = new byte[1024 * 1024];
+		for (int i = 0; i < files; i++) {
+			try (OutputStream output = Files.newOutputStream(source.resolve("file" + i))) {
+				for (long written = 0; written < fileSize; written += chunk.length) {
+					random.nextBytes(chunk);
+					output.write(chunk, 0, (int) Math.min(chunk.length, fileSize - written));
+				}
+			}
+		}
+		new FSTreeBuilder(source).build();
+		archive = workingDir.resolve("archive.ardat");
+		ArchiveTreeWriter.getArchiveTreeWriter(archive).write();
+		TreeRoot.getTreeRoot().set(null);
+		delete(source);
+		destination = workingDir.resolve("destination");
+	}
+
+	@Setup(Level.Iteration)
+	public void buildTree() throws IOException {
+		Files.createDirectory(destination);
+		ArchiveTreeBuilder.getArchiveTreeBuilder(archive).build();
+	}
+
+	@TearDown(Level.Iteration)
+	public void deleteDestination() throws IOException {
+		TreeRoot.getTreeRoot().set(null);
+		delete(destination);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		delete(workingDir);
+	}
+
+	@Benchmark
+	public void write() throws IOException {
+		if (copy.equals("transfer")) {
+			FSTreeWriter.getFSTreeWriter(destination).write();
+		} else {
+			writeThroughHeap();
+		}
+	}
+
+	private void writeThroughHeap() throws IOException {
+		ArrayDeque<ArchiveEntity> queue = new ArrayDeque<>();
+		queue.add(TreeRoot.getTreeRoot().get());
+		ByteBuffer byteBuffer = ByteBuffer.allocate(8 * 1024);
+		while (!queue.isEmpty()) {
+			ArchiveEntity entity = queue.poll();
+			Path path = Path.of(destination.toString(), entity.getName());
+			if (!entity.isLeaf()) {
+				Files.createDirectory(path);
+			} else {
+				try (
+					WritableByteChannel wbc =
+						Files.newByteChannel(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)
+				) {
+					while (entity.getContent(byteBuffer) > 0) {
+						byteBuffer.flip();
+						while (byteBuffer.hasRemaining()) wbc.write(byteBuffer);
+						byteBuffer.clear();
+					}
+				}
+			}
+			queue.addAll(Arrays.asList(entity.getChildren()));
+		}
+	}
+
+	private static void delete(Path path) throws IOException {
+		try (Stream<Path> paths = Files.walk(path)) {
+			for (Path p: paths.sorted(Comparator.reverseOrder()).toList()) Files.delete(p);
+		}
+	}
+}
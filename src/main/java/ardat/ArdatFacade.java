@@ -23,6 +23,7 @@ import ardat.tree.FileEntityDecorator;
 import ardat.tree.builder.ArchiveTreeBuilder;
 import ardat.tree.builder.FSTreeBuilder;
 import ardat.tree.builder.TreeBuilder;
+import ardat.tree.builder.archive.ArchiveLister;
 import ardat.tree.writer.AbstractTreeWriter;
 import ardat.tree.writer.ArchiveTreeWriter;
 import ardat.tree.writer.FSTreeWriter;
@@ -30,7 +31,9 @@ import crypto.AESCBCStrategy;
 import io.GlobalKey;
 
 import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Path;
+import java.nio.file.PathMatcher;
 import java.security.Key;
 
 /**
@@ -38,15 +41,55 @@ import java.security.Key;
  */
 public class ArdatFacade {
 	/**
-	 * Archives the given file or directory.
+	 * Archives the given file or directory. The archive isn't indexed, so it can be read by the readers preceding
+	 * the index.
 	 * @param from the path to a file or directory to archive
 	 * @param to the path to the archive file
 	 */
 	public static void archive(Path from, Path to) {
+		archive(from, to, false);
+	}
+
+	/**
+	 * Archives the given file or directory, optionally appending the index, so the archive can be opened without
+	 * scanning. The indexed archive can't be read by the readers preceding the index.
+	 * @param from the path to a file or directory to archive
+	 * @param to the path to the archive file
+	 * @param indexed true if the archive is to be indexed
+	 */
+	public static void archive(Path from, Path to, boolean indexed) {
 		try {
 			TreeBuilder builder = new FSTreeBuilder(from);
 			builder.build();
-			AbstractTreeWriter writer = ArchiveTreeWriter.getArchiveTreeWriter(to);
+			AbstractTreeWriter writer = ArchiveTreeWriter.getArchiveTreeWriter(to, indexed);
+			writer.write();
+		} catch (IOException exception) {
+			throw new RuntimeException("Unexpected exception occurred: ", exception);
+		}
+	}
+
+	/**
+	 * Archives the given file or directory into the given channel, which needn't be seekable, e.g. a pipe or a socket.
+	 * The archive is produced in a single forward pass and isn't indexed. The channel isn't closed.
+	 * @param from the path to a file or directory to archive
+	 * @param to the channel to write the archive to
+	 */
+	public static void archive(Path from, WritableByteChannel to) {
+		archive(from, to, false);
+	}
+
+	/**
+	 * Archives the given file or directory into the given channel, which needn't be seekable, optionally appending
+	 * the index. The archive is produced in a single forward pass. The channel isn't closed.
+	 * @param from the path to a file or directory to archive
+	 * @param to the channel to write the archive to
+	 * @param indexed true if the archive is to be indexed
+	 */
+	public static void archive(Path from, WritableByteChannel to, boolean indexed) {
+		try {
+			TreeBuilder builder = new FSTreeBuilder(from);
+			builder.build();
+			AbstractTreeWriter writer = ArchiveTreeWriter.getArchiveTreeWriter(to, indexed);
 			writer.write();
 		} catch (IOException exception) {
 			throw new RuntimeException("Unexpected exception occurred: ", exception);
@@ -70,12 +113,62 @@ public class ArdatFacade {
 	}
 
 	/**
-	 * Archives the given file or directory and encrypts the content of every file
+	 * Extracts the entities of the given archive file matching the given matcher to a specified directory. The matcher
+	 * is applied to the relative paths of the archived entities starting with the root name, e.g.
+	 * {@code root/dir/file}. The ancestors of the matching entities and the content of the matching directories are
+	 * extracted as well. If nothing matches, nothing is extracted.
+	 * @param from the path to the archive file
+	 * @param to the directory to write the archived content to
+	 * @param matcher the path matcher
+	 */
+	public static void extract(Path from, Path to, PathMatcher matcher) {
+		assert matcher != null;
+
+		try {
+			ArchiveTreeBuilder builder = ArchiveTreeBuilder.getArchiveTreeBuilder(from);
+			builder.setSelection(matcher);
+			if (builder.getSelectedCount() == 0) return;
+			builder.build();
+			AbstractTreeWriter writer = FSTreeWriter.getFSTreeWriter(to);
+			writer.write();
+		} catch (IOException exception) {
+			throw new RuntimeException("Unexpected exception occurred: ", exception);
+		}
+	}
+
+	/**
+	 * Lists the entities of the given archive file. Only the headers are read, so the listing neither reads the content
+	 * nor needs a key for encrypted archives. The returned iterator is lazy and must be closed.
+	 * @param from the path to the archive file
+	 * @return the lazy iterator over the archived entities
+	 */
+	public static ArchiveLister list(Path from) {
+		try {
+			return new ArchiveLister(from);
+		} catch (IOException exception) {
+			throw new RuntimeException("Unexpected exception occurred: ", exception);
+		}
+	}
+
+	/**
+	 * Archives the given file or directory and encrypts the content of every file. The archive isn't indexed.
 	 * @param from the path to a file or directory to archive
 	 * @param to the path to the archive file
 	 * @param key the AES compatible key
 	 */
 	public static void archiveEncrypted(Path from, Path to, Key key) {
+		archiveEncrypted(from, to, key, false);
+	}
+
+	/**
+	 * Archives the given file or directory and encrypts the content of every file, optionally appending the index, so
+	 * the archive can be opened without scanning.
+	 * @param from the path to a file or directory to archive
+	 * @param to the path to the archive file
+	 * @param key the AES compatible key
+	 * @param indexed true if the archive is to be indexed
+	 */
+	public static void archiveEncrypted(Path from, Path to, Key key, boolean indexed) {
 		try {
 			GlobalKey.getGlobalKey().setKey(key);
 			TreeBuilder builder = new FSTreeBuilder(from);
@@ -83,7 +176,7 @@ public class ArdatFacade {
 			decorator.getDecoratorList().add(new AESEntityConfigurator(AESCBCStrategy.class));
 			builder.setDecorator(decorator);
 			builder.build();
-			AbstractTreeWriter writer = ArchiveTreeWriter.getArchiveTreeWriter(to);
+			AbstractTreeWriter writer = ArchiveTreeWriter.getArchiveTreeWriter(to, indexed);
 			writer.write();
 		} catch (IOException exception) {
 			throw new RuntimeException("Unexpected exception occurred: ", exception);
@@ -100,4 +193,17 @@ public class ArdatFacade {
 		GlobalKey.getGlobalKey().setKey(key);
 		extract(from, to);
 	}
+
+	/**
+	 * Extracts the entities of the given archive file with encrypted content matching the given matcher to a specified
+	 * directory. See {@link #extract(Path, Path, PathMatcher)}.
+	 * @param from the path to the archive file
+	 * @param to the directory to write the archived content to
+	 * @param key the same key that was used to encrypt the content
+	 * @param matcher the path matcher
+	 */
+	public static void extractEncrypted(Path from, Path to, Key key, PathMatcher matcher) {
+		GlobalKey.getGlobalKey().setKey(key);
+		extract(from, to, matcher);
+	}
 }
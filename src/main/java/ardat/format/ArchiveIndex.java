@@ -0,0 +1,277 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ardat.format;
+
+import ardat.exceptions.ArchiveCorruptedException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * ArchiveIndex is a class encapsulating the trailing index of an archive file. The index lists every entity of
+ * the archive in the order they are stored, so the archive can be opened without scanning all of its headers.<br>
+ * The index structure consists of:<br>
+ * the opening line containing the number of entries<br>
+ * an entry line per entity: the header offset, the content size, the number of children and the path<br>
+ * an empty line<br>
+ * the trailer line containing the offset of the opening line<br><br>
+ *
+ * The trailer line has a fixed length of {@link #TRAILER_LENGTH} bytes, so it's located by a single read at the end of
+ * the archive. The presence of the index is declared in {@link Metadata} using the {@link #METADATA_KEY} key.<br><br>
+ *
+ * Example:<br><br>
+ * index 0000000000000002<br>
+ * 000000000000001f 0000000000000000 1 dir<br>
+ * 0000000000000088 0000000000000006 0 dir/file<br>
+ * <br>
+ * index-offset 00000000000000f6
+ */
+public class ArchiveIndex {
+
+	/**
+	 * The metadata key declaring the presence of the index.
+	 */
+	public static final String METADATA_KEY = "index";
+
+	/**
+	 * The metadata value declaring the presence of the index.
+	 */
+	public static final String METADATA_VAL = "trailing";
+
+	/**
+	 * The length of the trailer line in bytes.
+	 */
+	public static final int TRAILER_LENGTH = "index-offset %016x\n".formatted(0).length();
+
+	private static final String OPENING_KEY = "index ";
+
+	private static final String TRAILER_KEY = "index-offset ";
+
+	/**
+	 * Entry is a record to store an index entry.
+	 * @param path the relative path of the entity
+	 * @param offset the offset of the entity header in the archive
+	 * @param size the size of the entity content
+	 * @param children the number of children of the entity
+	 */
+	public record Entry(String path, long offset, long size, int children) {}
+
+	/**
+	 * EntryConsumer is an interface to receive the entries of the index as they are read.
+	 */
+	@FunctionalInterface
+	public interface EntryConsumer {
+		/**
+		 * Accepts the next entry of the index.
+		 * @param entry the entry
+		 * @throws IOException if some I/O errors occur
+		 */
+		void accept(Entry entry) throws IOException;
+	}
+
+	/**
+	 * Returns the opening line of the index.
+	 * @param entries the number of entries
+	 * @return the opening line
+	 */
+	public static String encodeOpening(long entries) {
+		return OPENING_KEY + "%016x\n".formatted(entries);
+	}
+
+	/**
+	 * Returns the entry line of the index.
+	 * @param entry the entry
+	 * @return the entry line
+	 */
+	public static String encode(Entry entry) {
+		assert entry != null;
+
+		return "%016x %016x %d %s\n".formatted(entry.offset(), entry.size(), entry.children(), entry.path());
+	}
+
+	/**
+	 * Returns the trailer line of the index.
+	 * @param indexOffset the offset of the opening line
+	 * @return the trailer line
+	 */
+	public static String encodeTrailer(long indexOffset) {
+		return TRAILER_KEY + "%016x\n".formatted(indexOffset);
+	}
+
+	/**
+	 * Reads the trailer line at the end of the channel.
+	 * @param sbc the archive channel
+	 * @return the offset of the opening line of the index
+	 * @throws IOException if some I/O errors occur
+	 * @throws ArchiveCorruptedException if the trailer is absent or malformed
+	 */
+	public static long readTrailer(SeekableByteChannel sbc) throws IOException {
+		assert sbc != null;
+
+		long size = sbc.size();
+		if (size < TRAILER_LENGTH) throw new ArchiveCorruptedException("Index corrupted: the trailer is absent");
+		ByteBuffer trailer = ByteBuffer.allocate(TRAILER_LENGTH);
+		sbc.position(size - TRAILER_LENGTH);
+		while (trailer.hasRemaining() && sbc.read(trailer) > 0);
+		String line = new String(trailer.array(), 0, trailer.position(), StandardCharsets.US_ASCII);
+		if (!line.startsWith(TRAILER_KEY) || !line.endsWith("\n")) {
+			throw new ArchiveCorruptedException("Index corrupted: the trailer is absent");
+		}
+		long indexOffset = parseHex(line, TRAILER_KEY.length(), line.length() - 1);
+		if (indexOffset >= size - TRAILER_LENGTH) {
+			throw new ArchiveCorruptedException("Index corrupted: the trailer points beyond the index");
+		}
+		return indexOffset;
+	}
+
+	/**
+	 * Returns true if the opening line of the index is located at the given offset of the channel.
+	 * @param sbc the archive channel
+	 * @param offset the offset
+	 * @return true if the index starts at the offset, otherwise false
+	 * @throws IOException if some I/O errors occur
+	 */
+	public static boolean isOpening(SeekableByteChannel sbc, long offset) throws IOException {
+		assert sbc != null;
+
+		ByteBuffer buffer = ByteBuffer.allocate(OPENING_KEY.length());
+		sbc.position(offset);
+		while (buffer.hasRemaining() && sbc.read(buffer) > 0);
+		return OPENING_KEY.equals(new String(buffer.array(), 0, buffer.position(), StandardCharsets.US_ASCII));
+	}
+
+	/**
+	 * Reads the index located at the given offset and passes every entry to the consumer in the order they are
+	 * stored. The entries are checked to be stored in the ascending order within the region of the entities.
+	 * @param sbc the archive channel
+	 * @param indexOffset the offset of the opening line
+	 * @param entitiesOffset the offset of the first entity header
+	 * @param consumer the consumer of the entries
+	 * @return the number of entries
+	 * @throws IOException if some I/O errors occur
+	 * @throws ArchiveCorruptedException if the index is inconsistent
+	 */
+	public static long read(
+		SeekableByteChannel sbc,
+		long indexOffset,
+		long entitiesOffset,
+		EntryConsumer consumer
+	) throws IOException {
+		assert sbc != null && consumer != null;
+
+		long indexEnd = sbc.size() - TRAILER_LENGTH;
+		ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+		buffer.limit(0);
+		long bufferOffset = indexOffset;
+		long lineOffset = indexOffset;
+		long declaredEntries = -1;
+		long entries = 0;
+		long previousOffset = -1;
+
+		sbc.position(indexOffset);
+		while (true) {
+			int lineEnd = -1;
+			for (int i = buffer.position(); i < buffer.limit(); i++) {
+				if (buffer.get(i) == '\n') {
+					lineEnd = i;
+					break;
+				}
+			}
+			if (lineEnd < 0) {
+				if (buffer.position() == 0 && buffer.limit() == buffer.capacity()) {
+					throw new ArchiveCorruptedException("Index corrupted: the entry line is too long");
+				}
+				bufferOffset += buffer.position();
+				buffer.compact();
+				buffer.limit((int) Math.min(buffer.capacity(), indexEnd - bufferOffset));
+				int read = sbc.read(buffer);
+				buffer.flip();
+				if (read <= 0) throw new ArchiveCorruptedException("Index corrupted: the index isn't terminated");
+				continue;
+			}
+
+			String line = new String(
+				buffer.array(),
+				buffer.position(),
+				lineEnd - buffer.position(),
+				StandardCharsets.UTF_8
+			);
+			buffer.position(lineEnd + 1);
+			lineOffset = bufferOffset + buffer.position();
+
+			if (declaredEntries < 0) {
+				if (!line.startsWith(OPENING_KEY)) {
+					throw new ArchiveCorruptedException("Index corrupted: the opening line is absent");
+				}
+				declaredEntries = parseHex(line, OPENING_KEY.length(), line.length());
+			} else if (line.isEmpty()) {
+				break;
+			} else {
+				Entry entry = decode(line);
+				if (
+					entries == 0 && entry.offset() != entitiesOffset ||
+					entry.offset() <= previousOffset ||
+					entry.offset() + entry.size() > indexOffset
+				) {
+					throw new ArchiveCorruptedException("Index corrupted: the entry is misplaced: " + line);
+				}
+				previousOffset = entry.offset();
+				entries++;
+				consumer.accept(entry);
+			}
+		}
+
+		if (entries != declaredEntries || lineOffset != indexEnd) {
+			throw new ArchiveCorruptedException("Index corrupted: the number of entries doesn't match");
+		}
+		return entries;
+	}
+
+	private static Entry decode(String line) {
+		try {
+			int sizeStart = line.indexOf(' ') + 1;
+			int childrenStart = line.indexOf(' ', sizeStart) + 1;
+			int pathStart = line.indexOf(' ', childrenStart) + 1;
+			if (sizeStart == 0 || childrenStart == 0 || pathStart == 0 || pathStart == line.length()) {
+				throw new ArchiveCorruptedException("Index corrupted: the entry is malformed: " + line);
+			}
+			return new Entry(
+				line.substring(pathStart),
+				parseHex(line, 0, sizeStart - 1),
+				parseHex(line, sizeStart, childrenStart - 1),
+				Integer.parseInt(line, childrenStart, pathStart - 1, 10)
+			);
+		} catch (NumberFormatException exception) {
+			throw new ArchiveCorruptedException("Index corrupted: the entry is malformed: " + line, exception);
+		}
+	}
+
+	private static long parseHex(String line, int from, int to) {
+		try {
+			if (to - from != 16) throw new NumberFormatException("Expected 16 hexadecimal digits");
+			long val = Long.parseUnsignedLong(line, from, to, 16);
+			if (val < 0) throw new NumberFormatException("The value is out of range");
+			return val;
+		} catch (NumberFormatException | IndexOutOfBoundsException exception) {
+			throw new ArchiveCorruptedException("Index corrupted: malformed number: " + line, exception);
+		}
+	}
+}
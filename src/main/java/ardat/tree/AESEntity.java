@@ -115,7 +115,7 @@ public class AESEntity extends ArchiveEntityProcessor {
 		try {
 			if (getComponent().hasRemainingContent()) {
 				out.put(strat.encrypt(in).flip());
-				digest.update(in.array(), 0, in.limit());
+				digest.update(in.duplicate().rewind());
 			} else {
 				int padLength = aesBlockSize - in.remaining() % aesBlockSize;
 				byte[] padding = new byte[padLength];
@@ -145,7 +145,7 @@ public class AESEntity extends ArchiveEntityProcessor {
 
 			ByteBuffer encryptedData = encodedData.limit(encodedData.limit() - silentHeaderLength);
 			out.put(strat.decrypt(encryptedData).flip());
-			digest.update(out.array(), 0, out.position());
+			digest.update(out.duplicate().flip());
 		} catch (IndexOutOfBoundsException | GeneralSecurityException exception) {
 			throw new ArchiveCorruptedException(
 				"The content of the " + Path.of("", getName()) + " file corrupted: ",
@@ -166,6 +166,21 @@ public class AESEntity extends ArchiveEntityProcessor {
 		return out.position();
 	}
 
+	/**
+	 * The encoded content is padded to the next block boundary, and at least one byte of padding is always added, then
+	 * the digest follows. The length of the padding is unknown until the content is decoded, so the decoded length is
+	 * an upper bound assuming the shortest padding.
+	 */
+	@Override
+	protected ContentLength predictLength(ContentLength componentLength) {
+		long bytes = componentLength.bytes();
+		if (getEncoded()) {
+			long padded = (bytes / aesBlockSize + 1) * aesBlockSize;
+			return new ContentLength(padded + silentHeaderLength, componentLength.exact());
+		}
+		return ContentLength.atMost(Math.max(bytes - silentHeaderLength - 1, 0));
+	}
+
 	@Override
 	protected int getPreferredUnprocessedWindowSize() {
 		return aesBlockSize + silentHeaderLength;
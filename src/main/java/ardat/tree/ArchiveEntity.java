@@ -18,9 +18,12 @@
 
 package ardat.tree;
 
+import io.BufferPool;
+
 import java.io.Closeable;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 
 /**
  * ArchiveEntity is an abstract class, which stores information about a file descriptor.
@@ -86,6 +89,90 @@ public abstract class ArchiveEntity implements Closeable {
 		return 0;
 	}
 
+	/**
+	 * Returns a read-only view of the next bytes of the content and moves the position past them, so the caller reads
+	 * the content without copying it. The view is valid until the content is read again or the entity is closed.
+	 * The default implementation can't view the content.
+	 * @param length the number of bytes to view, the view is shorter only if the content ends earlier
+	 * @return the view, which is empty if the content has ended, or null if the content can't be viewed
+	 * @throws IOException if some I/O errors occur
+	 */
+	public ByteBuffer viewContent(int length) throws IOException {
+		return null;
+	}
+
+	/**
+	 * Writes the remaining content to the given channel. The default implementation reads the content through
+	 * {@link #getContent(ByteBuffer)} window by window into a buffer borrowed from {@link BufferPool}, the concrete
+	 * implementation can copy the content without passing it through the heap.
+	 * @param target the channel to write the content to
+	 * @return the number of written bytes
+	 * @throws IOException if some I/O errors occur
+	 */
+	public long transferContentTo(WritableByteChannel target) throws IOException {
+		assert target != null;
+
+		long transferred = 0;
+		ByteBuffer byteBuffer = BufferPool.getBufferPool().acquire(8 * 1024);
+		try {
+			while (getContent(byteBuffer) > 0) {
+				byteBuffer.flip();
+				while (byteBuffer.hasRemaining()) transferred += target.write(byteBuffer);
+				byteBuffer.clear();
+			}
+		} finally {
+			BufferPool.getBufferPool().release(byteBuffer);
+		}
+		return transferred;
+	}
+
+	/**
+	 * Returns true if the ranges of the content can be written independently of each other by
+	 * {@link #transferContentTo(WritableByteChannel, long, long)}. The content transformed by the decorators can only
+	 * be read sequentially.
+	 * @return true if the ranges of the content can be transferred, otherwise false
+	 */
+	public boolean isRangeTransferable() {
+		return false;
+	}
+
+	/**
+	 * Writes the given range of the content to the channel. The position of the content isn't changed, so different
+	 * threads can transfer different ranges at once.
+	 * @param target the channel to write the content to
+	 * @param offset the offset of the range from the beginning of the content
+	 * @param count the maximum number of bytes to write
+	 * @return the number of written bytes
+	 * @throws IOException if some I/O errors occur
+	 * @throws UnsupportedOperationException if the ranges of the content can't be transferred
+	 */
+	public long transferContentTo(WritableByteChannel target, long offset, long count) throws IOException {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Reads the upcoming content ahead of time into the given buffer without moving the position, so the subsequent
+	 * {@link #getContent(ByteBuffer)} finds it in the page cache. The bytes read are of no use to the caller.
+	 * The default implementation reads nothing.
+	 * @param byteBuffer the buffer to read the content into
+	 * @param offset the offset from the current position
+	 * @return the number of read bytes or -1 if the content ends before the offset
+	 * @throws IOException if some I/O errors occur
+	 */
+	public int prefetchContent(ByteBuffer byteBuffer, long offset) throws IOException {
+		return -1;
+	}
+
+	/**
+	 * Predicts the number of bytes {@link #getContent(ByteBuffer)} produces from now on until the content ends.
+	 * The prediction is either exact or an upper bound.
+	 * @return the predicted length or null if it can't be predicted
+	 * @throws IOException if some I/O errors occur
+	 */
+	public ContentLength getContentLength() throws IOException {
+		return null;
+	}
+
 	/**
 	 * Returns false if the underlying stream reached the end.
 	 * @return false if the underlying stream reached the end, otherwise true
@@ -102,6 +102,22 @@ public abstract class ArchiveEntityDecorator extends ArchiveEntity {
 		return getComponent().getContent(byteBuffer);
 	}
 
+	/**
+	 * Forwards the invocation to the component, the processors read ahead the unprocessed content.
+	 */
+	@Override
+	public int prefetchContent(ByteBuffer byteBuffer, long offset) throws IOException {
+		return getComponent().prefetchContent(byteBuffer, offset);
+	}
+
+	/**
+	 * Forwards the invocation to the component.
+	 */
+	@Override
+	public ContentLength getContentLength() throws IOException {
+		return getComponent().getContentLength();
+	}
+
 	/**
 	 * Forwards the invocation to the component.
 	 */
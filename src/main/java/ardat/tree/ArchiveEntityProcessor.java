@@ -19,6 +19,7 @@
 package ardat.tree;
 
 
+import io.BufferPool;
 import io.Buffers;
 
 import java.io.IOException;
@@ -31,10 +32,14 @@ import java.nio.ByteBuffer;
  * unbeknownst to the client via invocation of {@link #getContent(ByteBuffer)}, thus encapsulating the entire process.
  * The concrete implementation must implement the encoding and decoding methods, so that decode(encode(x)) == x.<br><br>
  *
- * ArchiveEntityProcessor initializes and stores two buffers: one containing the bytes read from
+ * ArchiveEntityProcessor borrows two buffers from {@link BufferPool}: one containing the bytes read from
  * getComponent().getContent(), the second one contains the bytes provided by {@link #encode(ByteBuffer, ByteBuffer)}
  * or {@link #decode(ByteBuffer, ByteBuffer)}, which were processed but not yet sent to the client via
- * {@link #getContent(ByteBuffer)} due to the buffer size difference.<br>
+ * {@link #getContent(ByteBuffer)} due to the buffer size difference. The buffers are borrowed when the content is
+ * read for the first time and returned when the content is drained or the entity is closed, so the entities waiting
+ * in the tree hold no buffers. The buffers are direct, so the concrete implementation mustn't access their arrays.
+ * If the underlying entity can view its content in place, see {@link ArchiveEntity#viewContent(int)}, the first buffer
+ * is replaced by the view, and the bytes aren't copied.<br>
  * The concrete implementation must specify the lengths of these two buffers through
  * {@link #getPreferredUnprocessedWindowSize()} and {@link #getPreferredProcessedWindowSize()}. ArchiveEntityProcessor
  * guarantees that the first buffer will be filled unless there is no data left in the underlying entity, but
@@ -60,9 +65,12 @@ public abstract class ArchiveEntityProcessor extends ArchiveEntityDecorator {
 
 	private boolean encode = true;
 
-	private final ByteBuffer read = ByteBuffer.allocate(getPreferredUnprocessedWindowSize());
+	private boolean started = false;
 
-	private final ByteBuffer processed = ByteBuffer.allocate(getPreferredProcessedWindowSize());
+	// null unless the content is being read
+	private ByteBuffer read;
+
+	private ByteBuffer processed;
 
 	/**
 	 * Encode the information passed through the input buffer and write it to the output buffer.<br>
@@ -89,15 +97,25 @@ public abstract class ArchiveEntityProcessor extends ArchiveEntityDecorator {
 	protected abstract int decode(ByteBuffer in, ByteBuffer out) throws IOException;
 
 	/**
-	 * The size of the first buffer passed to encode() and decode(). The size is accessed when ArchiveEntityProcessor is
-	 * initialized and doesn't change after.
+	 * Predicts the length of the encoded or decoded content given the length of the content of the underlying entity.
+	 * The default implementation can't predict the length.
+	 * @param componentLength the length of the content of the underlying entity
+	 * @return the predicted length or null if it can't be predicted
+	 */
+	protected ContentLength predictLength(ContentLength componentLength) {
+		return null;
+	}
+
+	/**
+	 * The size of the first buffer passed to encode() and decode(). The size mustn't change after the entity is
+	 * constructed.
 	 * @return the size of the first buffer passed to encode() and decode()
 	 */
 	protected abstract int getPreferredUnprocessedWindowSize();
 
 	/**
-	 * The size of the second buffer passed to encode() and decode(). The size is accessed when ArchiveEntityProcessor
-	 * is initialized and doesn't change after.
+	 * The size of the second buffer passed to encode() and decode(). The size mustn't change after the entity is
+	 * constructed.
 	 * @return the size of the second buffer passed to encode() and decode()
 	 */
 	protected abstract int getPreferredProcessedWindowSize();
@@ -118,10 +136,6 @@ public abstract class ArchiveEntityProcessor extends ArchiveEntityDecorator {
 		return encode;
 	}
 
-	protected ArchiveEntityProcessor() {
-		processed.flip();
-	}
-
 	private int process(ByteBuffer in, ByteBuffer out) throws IOException {
 		assert in != null && out != null;
 
@@ -139,6 +153,8 @@ public abstract class ArchiveEntityProcessor extends ArchiveEntityDecorator {
 	public int getContent(ByteBuffer byteBuffer) throws IOException {
 		assert byteBuffer != null;
 
+		started = true;
+		if (processed == null) borrowWindows();
 		int transferred = 0;
 		if (processed.hasRemaining()) {
 			transferred += Buffers.transfer(processed, byteBuffer);
@@ -147,22 +163,70 @@ public abstract class ArchiveEntityProcessor extends ArchiveEntityDecorator {
 			}
 		}
 
-		while (byteBuffer.hasRemaining() && super.getContent(read) > 0) {
-			processed.clear();
-			read.flip();
-			process(read, processed);
+		ByteBuffer in;
+		while (byteBuffer.hasRemaining() && (in = nextWindow()) != null) {
+			processed.clear().limit(getPreferredProcessedWindowSize());
+			process(in, processed);
 			processed.flip();
 			transferred += Buffers.transfer(processed, byteBuffer);
-			read.clear();
 		}
 
-		if (transferred == 0 && !hasRemainingContent()) return -1;
-		else return transferred;
+		if (transferred == 0 && !hasRemainingContent()) {
+			releaseWindows();
+			return -1;
+		}
+		return transferred;
+	}
+
+	// returns the next unprocessed bytes viewed in place if the component allows it, otherwise read into the window,
+	// or null if the component has no content left
+	private ByteBuffer nextWindow() throws IOException {
+		ByteBuffer view = getComponent().viewContent(getPreferredUnprocessedWindowSize());
+		if (view != null) return view.hasRemaining() ? view : null;
+
+		if (read == null) read = BufferPool.getBufferPool().acquire(getPreferredUnprocessedWindowSize());
+		read.clear().limit(getPreferredUnprocessedWindowSize());
+		return super.getContent(read) > 0 ? read.flip() : null;
+	}
+
+	// the pooled buffers can be larger than requested, so their limits are set to the preferred sizes
+	private void borrowWindows() {
+		processed = BufferPool.getBufferPool().acquire(getPreferredProcessedWindowSize()).limit(0);
+	}
+
+	private void releaseWindows() {
+		if (read != null) BufferPool.getBufferPool().release(read);
+		if (processed != null) BufferPool.getBufferPool().release(processed);
+		read = null;
+		processed = null;
+	}
+
+	/**
+	 * Predicts the length of the content using {@link #predictLength(ContentLength)}. The length can be predicted only
+	 * before the content is read for the first time.
+	 * @return the predicted length or null if it can't be predicted
+	 * @throws IOException if some I/O errors occur
+	 */
+	@Override
+	public ContentLength getContentLength() throws IOException {
+		if (started) return null;
+		ContentLength componentLength = super.getContentLength();
+		return componentLength == null ? null : predictLength(componentLength);
 	}
 
 	@Override
 	public boolean hasRemainingContent() throws IOException {
-		return super.hasRemainingContent() || processed.hasRemaining();
+		return super.hasRemainingContent() || processed != null && processed.hasRemaining();
+	}
+
+	/**
+	 * Returns the borrowed buffers to {@link BufferPool} and closes the underlying entity.
+	 * @throws IOException if some I/O errors occur
+	 */
+	@Override
+	public void close() throws IOException {
+		releaseWindows();
+		super.close();
 	}
 
 	/**
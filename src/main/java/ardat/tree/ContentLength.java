@@ -0,0 +1,53 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ardat.tree;
+
+/**
+ * ContentLength is a prediction of the number of bytes {@link ArchiveEntity#getContent(java.nio.ByteBuffer)} produces
+ * until the content ends.
+ * @param bytes the number of bytes
+ * @param exact true if the number is exact, false if it's an upper bound
+ */
+public record ContentLength(long bytes, boolean exact) {
+
+	/**
+	 * Forbids negative lengths.
+	 */
+	public ContentLength {
+		assert bytes >= 0;
+	}
+
+	/**
+	 * Constructs an exact ContentLength.
+	 * @param bytes the number of bytes
+	 * @return a new ContentLength
+	 */
+	public static ContentLength exactly(long bytes) {
+		return new ContentLength(bytes, true);
+	}
+
+	/**
+	 * Constructs ContentLength being an upper bound.
+	 * @param bytes the maximum number of bytes
+	 * @return a new ContentLength
+	 */
+	public static ContentLength atMost(long bytes) {
+		return new ContentLength(bytes, false);
+	}
+}
@@ -0,0 +1,157 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ardat.tree;
+
+import io.BufferPool;
+import io.GlobalGovernor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * DirectFileEntity is a {@link FileEntity} that reads a file opened for the direct I/O, see
+ * {@link com.sun.nio.file.ExtendedOpenOption#DIRECT}, so the content bypasses the page cache. The direct reads must
+ * start at the block boundaries and fill the block aligned buffers, so the file is read in aligned 1 MiB windows
+ * borrowed from {@link BufferPool}, and the content is copied from the window to the client. The last block is read
+ * partially.<br><br>
+ *
+ * The window is borrowed when the content is read for the first time and returned when the content is drained or
+ * the entity is closed. The content can't be transferred in ranges nor read ahead, since both would go through
+ * the page cache. The size of the file is fixed when the entity is constructed.
+ */
+public class DirectFileEntity extends FileEntity {
+
+	private static final int WINDOW_SIZE = 1024 * 1024;
+
+	private final FileChannel channel;
+
+	private final int blockSize;
+
+	private final long size;
+
+	private long position;
+
+	// null unless the content is being read
+	private ByteBuffer pooled;
+
+	// the aligned part of the pooled buffer containing the bytes of the file from the window offset
+	private ByteBuffer window;
+
+	private long windowOffset;
+
+	/**
+	 * Constructs a DirectFileEntity object given the local name, the channel of the file opened for the direct I/O,
+	 * the block size the reads are aligned to and the associated properties. The content starts at the current position
+	 * of the channel.
+	 * @param name the local name
+	 * @param channel the channel of the file opened for the direct I/O
+	 * @param blockSize the block size of the file store
+	 * @param properties the associated properties
+	 * @throws IOException if some I/O errors occur
+	 */
+	public DirectFileEntity(
+		String name,
+		FileChannel channel,
+		int blockSize,
+		ArchiveEntityProperty[] properties
+	) throws IOException {
+		super(name, channel, properties);
+		assert blockSize > 0 && Integer.bitCount(blockSize) == 1 && blockSize <= WINDOW_SIZE / 2;
+
+		this.channel = channel;
+		this.blockSize = blockSize;
+		size = channel.size();
+		position = Math.min(channel.position(), size);
+	}
+
+	@Override
+	public int getContent(ByteBuffer byteBuffer) throws IOException {
+		assert byteBuffer != null;
+
+		if (position >= size) {
+			releaseWindow();
+			return -1;
+		}
+		if (window == null || position >= windowOffset + window.limit()) {
+			fillWindow();
+			// the file was truncated after the entity was constructed
+			if (position >= windowOffset + window.limit()) return -1;
+		}
+		// the file may have grown after the entity was constructed, the content ends at the fixed size anyway
+		long available = Math.min(windowOffset + window.limit(), size) - position;
+		int read = (int) Math.min(byteBuffer.remaining(), available);
+		byteBuffer.put(window.slice((int) (position - windowOffset), read));
+		position += read;
+		return read;
+	}
+
+	// the window starts at the block containing the position, the read stops at the first partial block
+	private void fillWindow() throws IOException {
+		if (pooled == null) {
+			pooled = BufferPool.getBufferPool().acquire(WINDOW_SIZE);
+			window = pooled.clear().alignedSlice(blockSize);
+		}
+		windowOffset = position - position % blockSize;
+		window.clear().limit(window.capacity() - window.capacity() % blockSize);
+		while (window.hasRemaining()) {
+			int read = channel.read(window, windowOffset + window.position());
+			if (read <= 0 || window.position() % blockSize != 0) break;
+		}
+		window.flip();
+		GlobalGovernor.getGlobalGovernor().acquire(window.limit(), 1);
+	}
+
+	@Override
+	public boolean isRangeTransferable() {
+		return false;
+	}
+
+	@Override
+	public int prefetchContent(ByteBuffer byteBuffer, long offset) {
+		return -1;
+	}
+
+	@Override
+	public ContentLength getContentLength() {
+		return ContentLength.exactly(size - position);
+	}
+
+	@Override
+	public boolean hasRemainingContent() {
+		return position < size;
+	}
+
+	/**
+	 * Returns the borrowed window and closes the channel associated with this entity.
+	 * @throws IOException If some I/O error occurs
+	 */
+	@Override
+	public void close() throws IOException {
+		releaseWindow();
+		super.close();
+	}
+
+	private void releaseWindow() {
+		if (pooled == null) return;
+		BufferPool.getBufferPool().release(pooled);
+		pooled = null;
+		window = null;
+	}
+}
@@ -89,6 +89,11 @@ public class DirectoryEntity extends ArchiveEntity {
 		return name;
 	}
 
+	@Override
+	public ContentLength getContentLength() {
+		return ContentLength.exactly(0);
+	}
+
 	@Override
 	public boolean isLeaf() {
 		return false;
@@ -18,14 +18,21 @@
 
 package ardat.tree;
 
+import io.GlobalGovernor;
+import io.IOGovernor;
+import io.SharedSeekableByteChannel;
+
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.Arrays;
 
 /**
  * FileEntity is a concrete implementation of {@link ArchiveEntity} that doesn't support children related operations.
- * FileEntity is a Leaf participant of the Composite pattern.
+ * FileEntity is a Leaf participant of the Composite pattern. The content ends where the file ended when its length
+ * was predicted or it was read for the first time, so the bytes appended to the file afterwards are not read.
  */
 public class FileEntity extends ArchiveEntity{
 
@@ -35,6 +42,9 @@ public class FileEntity extends ArchiveEntity{
 
 	private final ArchiveEntityProperty[] pts;
 
+	// the size of the content when its length was predicted or it was read for the first time, -1 until then
+	private long contentEnd = -1;
+
 	/**
 	 * Constructs a FileEntity object given the local name, the channel containing the file content and the
 	 * associated properties.
@@ -48,7 +58,8 @@ public class FileEntity extends ArchiveEntity{
 		localName = name;
 		content = channel;
 		pts = new ArchiveEntityProperty[properties.length + 1];
-		pts[0] = new ArchiveEntityProperty("class", getClass().getSimpleName());
+		// the subclasses only read the file differently, so their entities are restored as FileEntity
+		pts[0] = new ArchiveEntityProperty("class", FileEntity.class.getSimpleName());
 		System.arraycopy(properties, 0, pts, 1, properties.length);
 	}
 
@@ -79,12 +90,107 @@ public class FileEntity extends ArchiveEntity{
 	public int getContent(ByteBuffer byteBuffer) throws IOException {
 		assert byteBuffer != null;
 
-		return content.read(byteBuffer);
+		long remaining = getContentEnd() - content.position();
+		if (remaining <= 0) return byteBuffer.hasRemaining() ? -1 : 0;
+		int limit = byteBuffer.limit();
+		if (byteBuffer.remaining() > remaining) byteBuffer.limit(byteBuffer.position() + (int) remaining);
+		int read;
+		try {
+			read = content.read(byteBuffer);
+		} finally {
+			byteBuffer.limit(limit);
+		}
+		if (read > 0) GlobalGovernor.getGlobalGovernor().acquire(read, 1);
+		return read;
+	}
+
+	/**
+	 * Writes the remaining content to the given channel. If the content is stored in a file, the bytes are copied by
+	 * {@link FileChannel#transferTo(long, long, WritableByteChannel)}, which lets the operating system copy them
+	 * without passing them through the heap.
+	 * @param target the channel to write the content to
+	 * @return the number of written bytes
+	 * @throws IOException if some I/O errors occur
+	 */
+	@Override
+	public long transferContentTo(WritableByteChannel target) throws IOException {
+		assert target != null;
+
+		if (!isRangeTransferable()) return super.transferContentTo(target);
+		long position = content.position();
+		long transferred = transferContentTo(target, position, Math.max(getContentEnd() - position, 0));
+		content.position(position + transferred);
+		return transferred;
+	}
+
+	@Override
+	public boolean isRangeTransferable() {
+		return content instanceof SharedSeekableByteChannel || content instanceof FileChannel;
+	}
+
+	/**
+	 * Writes the given range of the content to the channel. If an {@link IOGovernor} is set, the range is transferred
+	 * in chunks, and every chunk is accounted as read and written.
+	 * @param target the channel to write the content to
+	 * @param offset the offset of the range from the beginning of the content
+	 * @param count the maximum number of bytes to write
+	 * @return the number of written bytes
+	 * @throws IOException if some I/O errors occur
+	 */
+	@Override
+	public long transferContentTo(WritableByteChannel target, long offset, long count) throws IOException {
+		assert target != null && offset >= 0 && count >= 0;
+		if (!isRangeTransferable()) throw new UnsupportedOperationException();
+
+		IOGovernor governor = GlobalGovernor.getGlobalGovernor().getGovernor();
+		long chunkSize = governor == null ? count : governor.getChunkSize();
+		long transferred = 0;
+		while (transferred < count) {
+			long chunk = Math.min(chunkSize, count - transferred);
+			if (governor != null) governor.acquire(2 * chunk, 2);
+			long n = transferRange(target, offset + transferred, chunk);
+			transferred += n;
+			if (n < chunk) break;
+		}
+		return transferred;
+	}
+
+	private long transferRange(WritableByteChannel target, long offset, long count) throws IOException {
+		if (content instanceof SharedSeekableByteChannel shared) return shared.transferTo(offset, count, target);
+		FileChannel fileChannel = (FileChannel) content;
+		long end = Math.min(fileChannel.size(), offset + count);
+		long transferred = 0;
+		while (offset + transferred < end) {
+			long n = fileChannel.transferTo(offset + transferred, end - offset - transferred, target);
+			if (n <= 0) break;
+			transferred += n;
+		}
+		return transferred;
+	}
+
+	@Override
+	public int prefetchContent(ByteBuffer byteBuffer, long offset) throws IOException {
+		assert byteBuffer != null && offset >= 0;
+
+		long position = content.position() + offset;
+		if (content instanceof SharedSeekableByteChannel shared) return shared.read(byteBuffer, position);
+		if (content instanceof FileChannel fileChannel) return fileChannel.read(byteBuffer, position);
+		return -1;
+	}
+
+	@Override
+	public ContentLength getContentLength() throws IOException {
+		return ContentLength.exactly(Math.max(Math.min(getContentEnd(), content.size()) - content.position(), 0));
 	}
 
 	@Override
 	public boolean hasRemainingContent() throws IOException {
-		return content.position() < content.size();
+		return content.position() < Math.min(getContentEnd(), content.size());
+	}
+
+	private long getContentEnd() throws IOException {
+		if (contentEnd < 0) contentEnd = content.size();
+		return contentEnd;
 	}
 
 	@Override
@@ -0,0 +1,162 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ardat.tree;
+
+import io.Buffers;
+import io.GlobalGovernor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * MappedFileEntity is a {@link FileEntity} that reads the content of a file through a memory mapping instead of
+ * the channel reads. The content is viewed in place by {@link #viewContent(int)}, so the processors encode the mapped
+ * bytes without copying them into their windows first.<br><br>
+ *
+ * The file is mapped in regions of 64 MiB when the content is read for the first time, so the entities waiting in
+ * the tree hold no mappings. A region is released as soon as the next region is mapped, the content is drained or
+ * the entity is closed. The size of the file is fixed when the entity is constructed. MappedFileEntity is stored in
+ * the archive as an ordinary FileEntity.
+ */
+public class MappedFileEntity extends FileEntity {
+
+	private static final long DEFAULT_REGION_SIZE = 64 * 1024 * 1024;
+
+	private final FileChannel channel;
+
+	private final long size;
+
+	private final long regionSize;
+
+	private long position;
+
+	// null unless the content is being read
+	private MappedByteBuffer region;
+
+	private long regionOffset;
+
+	/**
+	 * Constructs a MappedFileEntity object given the local name, the channel of the file and the associated
+	 * properties. The content starts at the current position of the channel.
+	 * @param name the local name
+	 * @param channel the channel of the file
+	 * @param properties the associated properties
+	 * @throws IOException if some I/O errors occur
+	 */
+	public MappedFileEntity(String name, FileChannel channel, ArchiveEntityProperty[] properties) throws IOException {
+		this(name, channel, properties, DEFAULT_REGION_SIZE);
+	}
+
+	MappedFileEntity(
+		String name,
+		FileChannel channel,
+		ArchiveEntityProperty[] properties,
+		long regionSize
+	) throws IOException {
+		super(name, channel, properties);
+		assert regionSize > 0;
+
+		this.channel = channel;
+		this.regionSize = regionSize;
+		size = channel.size();
+		position = Math.min(channel.position(), size);
+	}
+
+	@Override
+	public int getContent(ByteBuffer byteBuffer) throws IOException {
+		assert byteBuffer != null;
+
+		ByteBuffer view = viewContent((int) Math.min(byteBuffer.remaining(), regionSize));
+		if (!view.hasRemaining()) return byteBuffer.hasRemaining() ? -1 : 0;
+		int read = view.remaining();
+		byteBuffer.put(view);
+		return read;
+	}
+
+	/**
+	 * Returns a read-only view of the mapped content. The view is never longer than the region.
+	 * @param length the number of bytes to view, the view is shorter only if the content ends earlier
+	 * @return the view, which is empty if the content has ended
+	 * @throws IOException if some I/O errors occur
+	 */
+	@Override
+	public ByteBuffer viewContent(int length) throws IOException {
+		assert length >= 0 && length <= regionSize;
+
+		if (position >= size) {
+			unmap();
+			return ByteBuffer.allocate(0);
+		}
+		int viewed = (int) Math.min(length, size - position);
+		if (region == null || position + viewed > regionOffset + region.capacity()) {
+			unmap();
+			regionOffset = position;
+			region = channel.map(FileChannel.MapMode.READ_ONLY, regionOffset, Math.min(regionSize, size - position));
+		}
+		GlobalGovernor.getGlobalGovernor().acquire(viewed, 1);
+		ByteBuffer view = region.slice((int) (position - regionOffset), viewed).asReadOnlyBuffer();
+		position += viewed;
+		return view;
+	}
+
+	@Override
+	public long transferContentTo(WritableByteChannel target) throws IOException {
+		assert target != null;
+
+		long transferred = transferContentTo(target, position, size - position);
+		position += transferred;
+		return transferred;
+	}
+
+	@Override
+	public int prefetchContent(ByteBuffer byteBuffer, long offset) throws IOException {
+		assert byteBuffer != null && offset >= 0;
+
+		return channel.read(byteBuffer, position + offset);
+	}
+
+	@Override
+	public ContentLength getContentLength() {
+		return ContentLength.exactly(size - position);
+	}
+
+	@Override
+	public boolean hasRemainingContent() {
+		return position < size;
+	}
+
+	/**
+	 * Releases the mapped region and closes the channel associated with this entity.
+	 * @throws IOException If some I/O error occurs
+	 */
+	@Override
+	public void close() throws IOException {
+		unmap();
+		super.close();
+	}
+
+	private void unmap() {
+		if (region == null) return;
+		Buffers.unmap(region);
+		region = null;
+	}
+}
@@ -89,6 +89,15 @@ public class PrettyEntity extends ArchiveEntityProcessor {
 		return out.position() - oldOutPos;
 	}
 
+	/**
+	 * Every byte is encoded as 2 characters, so the encoded content is twice as long as the decoded one.
+	 */
+	@Override
+	protected ContentLength predictLength(ContentLength componentLength) {
+		long bytes = getEncoded() ? componentLength.bytes() * 2 : componentLength.bytes() / 2;
+		return new ContentLength(bytes, componentLength.exact());
+	}
+
 	@Override
 	protected int getPreferredUnprocessedWindowSize() {
 		return 1024;
@@ -20,18 +20,25 @@ package ardat.tree.builder;
 
 import ardat.exceptions.ArchiveCorruptedException;
 import ardat.tree.ArchiveEntity;
+import ardat.tree.builder.archive.ArchiveHeader;
 import ardat.tree.builder.archive.ArchivedEntityConstructor;
+import ardat.tree.builder.archive.EntryIndex;
+import ardat.tree.builder.archive.HeaderReader;
 import ardat.tree.builder.archive.Headers;
+import ardat.format.ArchiveIndex;
 import ardat.format.Metadata;
+import ardat.tree.root.TreeRoot;
 import io.Channels;
 
 import java.io.IOException;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Files;
-import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
+import java.nio.file.PathMatcher;
 import java.nio.file.StandardOpenOption;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
 
 /**
  * ArchiveTreeBuilder is a concrete implementation of {@link TreeBuilder}, that constructs an entity tree out of
@@ -44,22 +51,40 @@ public class ArchiveTreeBuilder extends TreeBuilder {
 	 * @param offset the offset
 	 * @param header the header
 	 */
-	public record ArchEntityInfo(long offset, String header) {}
+	public record ArchEntityInfo(long offset, ArchiveHeader header) {
+
+		/**
+		 * Constructs ArchEntityInfo parsing the given header.
+		 * @param offset the offset
+		 * @param header the unparsed header
+		 */
+		public ArchEntityInfo(long offset, String header) {
+			this(offset, Headers.parse(header));
+		}
+	}
 
 	private final Path archPath;
 
 	private final ArchivedEntityConstructor constructor;
 
-	private final FileHierarchy hierarchy = new FileHierarchy(1024);
+	private final boolean offHeapIndex;
+
+	private long metadataSize;
 
-	private Path root;
+	private EntryIndex index;
 
-	private final HashMap<Path, ArchEntityInfo> cachedInfo = new HashMap<>();
+	private BitSet selection;
 
-	private ArchiveTreeBuilder(Path archive) throws IOException {
+	private final IdentityHashMap<ArchiveEntity, Integer> pendingIds = new IdentityHashMap<>();
+
+	// reads the headers from the channel kept open while the tree is being built, null otherwise
+	private HeaderReader reader;
+
+	private ArchiveTreeBuilder(Path archive, boolean offHeap) throws IOException {
 		assert archive != null;
 
 		archPath = archive;
+		offHeapIndex = offHeap;
 		constructor = new ArchivedEntityConstructor(archPath);
 		extractMetadataHeader();
 		cacheEntities();
@@ -74,27 +99,117 @@ public class ArchiveTreeBuilder extends TreeBuilder {
 	public static ArchiveTreeBuilder getArchiveTreeBuilder(Path archive) throws IOException {
 		assert archive != null;
 
-		return new ArchiveTreeBuilder(archive);
+		return new ArchiveTreeBuilder(archive, false);
+	}
+
+	/**
+	 * Constructs a new instance of ArchiveTreeBuilder, which optionally keeps its {@link EntryIndex} off the heap.
+	 * @param archive the path to the archive file
+	 * @param offHeapIndex true if the entry index is to be allocated off the heap
+	 * @return an instance of ArchiveTreeBuilder
+	 * @throws IOException if some I/O errors occur
+	 */
+	public static ArchiveTreeBuilder getArchiveTreeBuilder(Path archive, boolean offHeapIndex) throws IOException {
+		assert archive != null;
+
+		return new ArchiveTreeBuilder(archive, offHeapIndex);
+	}
+
+	/**
+	 * Returns the index of the entities stored in the archive.
+	 * @return the entry index
+	 */
+	public EntryIndex getEntryIndex() {
+		return index;
+	}
+
+	/**
+	 * Restricts the tree to the entities matching the given matcher. The matcher is applied to the relative paths of
+	 * the entities starting with the root name, e.g. {@code root/dir/file}. The tree consists of the matching entities,
+	 * their ancestors and all entities nested in the matching directories. Only the index is consulted, the entities
+	 * which aren't selected are never constructed.
+	 * @param matcher the path matcher or null to select all entities
+	 */
+	public void setSelection(PathMatcher matcher) {
+		if (matcher == null) {
+			selection = null;
+			return;
+		}
+
+		// the ids are wide-wise, so the parent of every entity is visited before the entity itself
+		BitSet matched = new BitSet(index.size());
+		for (int id = 0; id < index.size(); id++) {
+			int parent = index.getParent(id);
+			if ((parent >= 0 && matched.get(parent)) || matcher.matches(Path.of(index.getPath(id)))) matched.set(id);
+		}
+		selection = (BitSet) matched.clone();
+		for (int id = matched.nextSetBit(0); id >= 0; id = matched.nextSetBit(id + 1)) {
+			int parent = index.getParent(id);
+			while (parent >= 0 && !selection.get(parent)) {
+				selection.set(parent);
+				parent = index.getParent(parent);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of entities the tree will consist of.
+	 * @return the number of selected entities
+	 */
+	public int getSelectedCount() {
+		return selection == null ? index.size() : selection.cardinality();
+	}
+
+	/**
+	 * Constructs a new entity tree as by {@link TreeBuilder#build()}. The archive is opened once for the whole build,
+	 * the headers of all the constructed entities are read through the same channel.
+	 * @return the {@link TreeRoot} global object
+	 * @throws IOException if some I/O errors occur
+	 */
+	@Override
+	public TreeRoot build() throws IOException {
+		try (SeekableByteChannel sbc = Files.newByteChannel(archPath, StandardOpenOption.READ)) {
+			reader = new HeaderReader(sbc);
+			return super.build();
+		} finally {
+			reader = null;
+		}
 	}
 
 	@Override
 	protected ArchiveEntity getRoot() throws IOException {
-		ArchEntityInfo info = cachedInfo.get(root);
-		return constructor.construct(info);
+		pendingIds.clear();
+		return constructEntity(0);
 	}
 
 	@Override
 	protected ArchiveEntity[] getChildren(ArchiveEntity entity) throws IOException {
-		String relativeName = String.join("/", entity.getName());
-		Path[] childrenPaths = hierarchy.getChildren(Path.of(relativeName));
-		ArchiveEntity[] children = new ArchiveEntity[childrenPaths.length];
-		int childrenIndex = 0;
-		for (Path p: childrenPaths) {
-			ArchEntityInfo childInfo = cachedInfo.get(p);
-			children[childrenIndex++] = constructor.construct(childInfo);
+		Integer id = pendingIds.remove(entity);
+		if (id == null) return new ArchiveEntity[0];
+
+		FileHierarchy hierarchy = index.getHierarchy();
+		ArrayList<ArchiveEntity> children = new ArrayList<>(hierarchy.getChildCount(id));
+		for (int child = hierarchy.getFirstChild(id); child >= 0; child = hierarchy.getNextSibling(child)) {
+			if (selection == null || selection.get(child)) children.add(constructEntity(child));
 		}
 
-		return children;
+		return children.toArray(new ArchiveEntity[0]);
+	}
+
+	// the headers aren't kept in memory, they are read again when the entity is actually constructed
+	private ArchiveEntity constructEntity(int id) throws IOException {
+		long offset = index.getOffset(id);
+		ArchiveHeader header = reader.read(offset);
+		if (
+			header.size() != index.getSize(id) ||
+			header.children() != index.getChildCount(id) ||
+			!header.getName().equals(index.getName(id))
+		) {
+			throw new ArchiveCorruptedException("File header corrupted: the header has changed: " + header.path());
+		}
+		ArchiveEntity entity = constructor.construct(new ArchEntityInfo(offset, header));
+		if (header.children() > 0) pendingIds.put(entity, id);
+		return entity;
 	}
 
 	private void extractMetadataHeader() throws IOException {
@@ -102,32 +217,71 @@ public class ArchiveTreeBuilder extends TreeBuilder {
 			Metadata.MetadataBuilder builder = Metadata.getBuilder();
 			while (builder.feedPropertyLine(Channels.readLine(sbc)));
 			builder.build();
+			metadataSize = sbc.position();
 		}
 	}
 
+	private boolean isIndexed() {
+		return ArchiveIndex.METADATA_VAL.equals(Metadata.getMetadata().getProperty(ArchiveIndex.METADATA_KEY));
+	}
+
 	private void cacheEntities() throws IOException {
 		try(SeekableByteChannel sbc = Files.newByteChannel(archPath, StandardOpenOption.READ)) {
-			sbc.position(getArchiveMetadataSize());
-			while (sbc.position() < sbc.size()) {
-				String header = Headers.retrieve(sbc);
-				long fileSize = Headers.getFileSize(header);
-				ArchEntityInfo info = new ArchEntityInfo(sbc.position(), header);
-				Path p = Path.of(Headers.getRelativePath(header));
-				cachedInfo.put(p, info);
-				hierarchy.addChild(p);
-				if (p.getNameCount() == 1) root = p;
-				sbc.position(sbc.position() + header.length() + fileSize);
+			if (isIndexed()) {
+				try {
+					loadIndex(sbc, ArchiveIndex.readTrailer(sbc));
+					return;
+				} catch (ArchiveCorruptedException exception) {
+					index = null;
+				}
 			}
-		} catch (InvalidPathException exception) {
-			throw new ArchiveCorruptedException(
-				"File header corrupted: the path is unresolved: " + exception.getMessage(),
-				exception
-			);
+			// the trailer isn't trusted either, the scan stops at the opening line of the index
+			scanEntities(sbc, sbc.size());
 		}
 	}
 
+	// the index is trusted only if it's consistent, and its first and last entries match the actual headers
+	private void loadIndex(SeekableByteChannel sbc, long indexOffset) throws IOException {
+		index = new EntryIndex(1024, offHeapIndex);
+		ArchiveIndex.Entry[] bounds = new ArchiveIndex.Entry[2];
+		ArchiveIndex.read(sbc, indexOffset, metadataSize, entry -> {
+			if (bounds[0] == null) bounds[0] = entry;
+			bounds[1] = entry;
+			index.add(entry.path(), entry.offset(), entry.size(), entry.children());
+		});
+		index.validate();
 
-	private int getArchiveMetadataSize() {
-		return (Metadata.getMetadata().toString() + "\n").length();
+		HeaderReader reader = new HeaderReader(sbc);
+		for (ArchiveIndex.Entry entry: bounds) {
+			ArchiveHeader header = reader.read(entry.offset());
+			if (
+				!header.path().equals(entry.path()) ||
+				header.size() != entry.size() ||
+				header.children() != entry.children()
+			) {
+				throw new ArchiveCorruptedException("Index corrupted: the entry doesn't match the header");
+			}
+		}
+		if (bounds[1].offset() + reader.read(bounds[1].offset()).length() + bounds[1].size() != indexOffset) {
+			throw new ArchiveCorruptedException("Index corrupted: the index doesn't follow the last entry");
+		}
+	}
+
+	private void scanEntities(SeekableByteChannel sbc, long entitiesEnd) throws IOException {
+		index = new EntryIndex(1024, offHeapIndex);
+		HeaderReader reader = new HeaderReader(sbc);
+		long offset = metadataSize;
+		while (offset < entitiesEnd) {
+			ArchiveHeader header;
+			try {
+				header = reader.read(offset);
+			} catch (ArchiveCorruptedException exception) {
+				if (isIndexed() && ArchiveIndex.isOpening(sbc, offset)) break;
+				throw exception;
+			}
+			index.add(header.path(), offset, header.size(), header.children());
+			offset += header.length() + header.size();
+		}
+		index.validate();
 	}
 }
@@ -19,26 +19,64 @@
 package ardat.tree.builder;
 
 import ardat.tree.*;
+import ardat.tree.root.TreeRoot;
+import com.sun.nio.file.ExtendedOpenOption;
 
 import java.io.IOException;
+import java.io.Serial;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitOption;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * FSTreeBuilder is a concrete implementation of {@link TreeBuilder}, that constructs a new entity tree out of stored
  * files and directories. Every {@link ArchiveEntity} instantiated by this class is passed through
- * getDecorator().construct() to add additional functionality to the entity.
+ * getDecorator().construct() to add additional functionality to the entity.<br><br>
+ *
+ * The files are read through their channels. If the mapping threshold is set, see {@link #setMappingThreshold(long)},
+ * the files at least as large as the threshold are read through memory mappings by {@link MappedFileEntity}. If
+ * the direct reads are set, see {@link #setDirectReads(boolean)}, the files are read by {@link DirectFileEntity}
+ * bypassing the page cache instead.<br><br>
+ *
+ * Every directory is listed once, and the entities of its children are built from the attributes read by the listing,
+ * so every file is examined by one call to the file system. If a pool is set, see {@link #setPool(ForkJoinPool)},
+ * the directories are listed in parallel, every directory by its own task, which pays off on the network file systems
+ * and the large trees. The tree is the same as the one built sequentially.
  */
 public class FSTreeBuilder extends TreeBuilder{
 
 	private final Path rootPath;
 
+	private long mappingThreshold = Long.MAX_VALUE;
+
+	private boolean directReads = false;
+
+	// the block sizes of the file stores of the directories containing the files opened for the direct reads; the mount
+	// points are directories, so all the files of a directory share its file store
+	private final ConcurrentHashMap<Path, Long> blockSizes = new ConcurrentHashMap<>();
+
+	private ForkJoinPool pool;
+
+	// the paths of the directory entities whose children haven't been built yet
+	private final IdentityHashMap<ArchiveEntity, Path> directories = new IdentityHashMap<>();
+
+	// the decorators aren't required to be thread-safe, so the parallel tasks decorate the entities one by one
+	private final Object decoratorLock = new Object();
+
 	/**
 	 * Constructs a new instance of FSTreeBuilder.
 	 * @param root the path to the file or directory
@@ -48,32 +86,152 @@ public class FSTreeBuilder extends TreeBuilder{
 
 		rootPath = root;
 	}
+
+	/**
+	 * Sets the size from which the files are read through memory mappings. The mapping pays off for large files only,
+	 * the small ones stay on the channel reads. No file is mapped by default.
+	 * @param bytes the minimum size of a mapped file or {@link Long#MAX_VALUE} to map no file
+	 */
+	public void setMappingThreshold(long bytes) {
+		assert bytes > 0;
+
+		mappingThreshold = bytes;
+	}
+
+	/**
+	 * Sets the files to be read with the direct I/O bypassing the page cache, so a large backup doesn't evict
+	 * the page cache of the other processes. The direct reads replace the mappings. If the file system doesn't support
+	 * the direct I/O, the files are read as usual. The files are read through the page cache by default.
+	 * @param direct true if the files are to be read with the direct I/O
+	 */
+	public void setDirectReads(boolean direct) {
+		directReads = direct;
+	}
+
+	/**
+	 * Sets the pool to list the directories in parallel. The pool isn't shut down by the builder.
+	 * @param pool the pool or null to list the directories sequentially on the calling thread
+	 */
+	public void setPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Constructs a new entity tree. If a pool is set, the directories are listed in parallel, otherwise the tree is
+	 * built wide-wise as by {@link TreeBuilder#build()}.
+	 * @return the {@link TreeRoot} global object
+	 * @throws IOException if some I/O errors occur
+	 */
+	@Override
+	public TreeRoot build() throws IOException {
+		try {
+			if (pool == null) return super.build();
+
+			ArchiveEntity root = getRoot();
+			Path path = directories.remove(root);
+			if (path != null) {
+				AtomicReference<Throwable> failure = new AtomicReference<>();
+				pool.invoke(new ScanTask(root, path, failure));
+				Throwable cause = failure.get();
+				if (cause instanceof IOException ioException) throw ioException;
+				if (cause instanceof RuntimeException runtimeException) throw runtimeException;
+				if (cause instanceof Error error) throw error;
+			}
+			TreeRoot.getTreeRoot().set(root);
+			return TreeRoot.getTreeRoot();
+		} finally {
+			directories.clear();
+			blockSizes.clear();
+		}
+	}
+
 	@Override
 	protected ArchiveEntity getRoot() throws IOException {
-		return getDecorator().construct(buildArchiveEntity(rootPath));
+		BasicFileAttributes attributes = Files.readAttributes(rootPath, BasicFileAttributes.class);
+		ArchiveEntity root = getDecorator().construct(buildArchiveEntity(rootPath, attributes));
+		if (attributes.isDirectory()) directories.put(root, rootPath);
+		return root;
 	}
 
 	@Override
 	protected ArchiveEntity[] getChildren(ArchiveEntity entity) throws IOException {
 		assert entity != null;
 
-		Path concretePath = Path.of(rootPath.getParent().toString(), entity.getName());
-		if (!Files.isDirectory(concretePath)) return new ArchiveEntity[0];
+		Path path = directories.remove(entity);
+		if (path == null) return new ArchiveEntity[0];
 
 		LinkedList<ArchiveEntity> children = new LinkedList<>();
-		Files.walkFileTree(concretePath, Set.of(), 1, new SimpleFileVisitor<>(){
+		listDirectory(path, (child, attributes) -> {
+			ArchiveEntity childEntity = getDecorator().construct(buildArchiveEntity(child, attributes));
+			if (attributes.isDirectory()) directories.put(childEntity, child);
+			children.add(childEntity);
+		});
+		return children.toArray(ArchiveEntity[]::new);
+	}
+
+	/**
+	 * Visitor receives the children of a listed directory.
+	 */
+	@FunctionalInterface
+	private interface Visitor {
+		void visit(Path path, BasicFileAttributes attributes) throws IOException;
+	}
+
+	// the links are followed, so the attributes are the same as the ones of Files.readAttributes(Path, Class)
+	private static void listDirectory(Path path, Visitor visitor) throws IOException {
+		Files.walkFileTree(path, Set.of(FileVisitOption.FOLLOW_LINKS), 1, new SimpleFileVisitor<>(){
 			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-				children.add(getDecorator().construct(buildArchiveEntity(file)));
+				visitor.visit(file, attrs);
 				return FileVisitResult.CONTINUE;
 			}
 		});
-		return children.toArray(ArchiveEntity[]::new);
 	}
 
-	private ArchiveEntity buildArchiveEntity(Path path) throws IOException {
+	// lists a directory, builds its children and forks the tasks listing the child directories; the remaining tasks
+	// are skipped as soon as some task fails, the first failure is reported by build()
+	private class ScanTask extends RecursiveAction {
+
+		@Serial
+		private static final long serialVersionUID = 1L;
+
+		private final ArchiveEntity entity;
+
+		private final Path path;
+
+		private final AtomicReference<Throwable> failure;
+
+		ScanTask(ArchiveEntity entity, Path path, AtomicReference<Throwable> failure) {
+			this.entity = entity;
+			this.path = path;
+			this.failure = failure;
+		}
+
+		@Override
+		protected void compute() {
+			if (failure.get() != null) return;
+			ArrayList<ArchiveEntity> children = new ArrayList<>();
+			ArrayList<ScanTask> subtasks = new ArrayList<>();
+			try {
+				listDirectory(path, (child, attributes) -> {
+					ArchiveEntity childEntity = buildArchiveEntity(child, attributes);
+					synchronized (decoratorLock) {
+						childEntity = getDecorator().construct(childEntity);
+					}
+					if (attributes.isDirectory()) subtasks.add(new ScanTask(childEntity, child, failure));
+					children.add(childEntity);
+				});
+			} catch (IOException | RuntimeException | Error exception) {
+				failure.compareAndSet(null, exception);
+				return;
+			}
+			entity.addChildren(children.toArray(ArchiveEntity[]::new));
+			ForkJoinTask.invokeAll(subtasks);
+		}
+	}
+
+	private ArchiveEntity buildArchiveEntity(Path path, BasicFileAttributes attributes) throws IOException {
 		String localName = path.getName(path.getNameCount() - 1).toString();
 
-		BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
 		ArrayList<ArchiveEntityProperty> properties = new ArrayList<>();
 
 		long create = attributes.creationTime().toMillis();
@@ -86,9 +244,48 @@ public class FSTreeBuilder extends TreeBuilder{
 		properties.add(new ArchiveEntityProperty("access-time", Long.toString(access)));
 
 		ArchiveEntityProperty[] ptsArr = properties.toArray(new ArchiveEntityProperty[0]);
-		if (Files.isDirectory(path))
+		if (attributes.isDirectory())
 			return new DirectoryEntity(localName, ptsArr);
+		else if (directReads)
+			return openDirect(localName, path, ptsArr);
+		else if (attributes.size() >= mappingThreshold)
+			return mapFile(localName, path, ptsArr);
 		else
 			return new FileEntity(localName, Files.newByteChannel(path), ptsArr);
 	}
+
+	// falls back to the channel reads if the direct I/O isn't supported
+	private ArchiveEntity openDirect(String localName, Path path, ArchiveEntityProperty[] pts) throws IOException {
+		Path directory = path.toAbsolutePath().getParent();
+		Long cached = directory == null ? null : blockSizes.get(directory);
+		long blockSize = cached != null ? cached : Files.getFileStore(path).getBlockSize();
+		if (cached == null && directory != null) blockSizes.put(directory, blockSize);
+		if (Long.bitCount(blockSize) == 1 && blockSize <= 64 * 1024) {
+			FileChannel channel;
+			try {
+				channel = FileChannel.open(path, StandardOpenOption.READ, ExtendedOpenOption.DIRECT);
+			} catch (IOException | UnsupportedOperationException exception) {
+				channel = null;
+			}
+			if (channel != null) {
+				try {
+					return new DirectFileEntity(localName, channel, (int) blockSize, pts);
+				} catch (IOException | RuntimeException exception) {
+					channel.close();
+					throw exception;
+				}
+			}
+		}
+		return new FileEntity(localName, Files.newByteChannel(path), pts);
+	}
+
+	private static ArchiveEntity mapFile(String localName, Path path, ArchiveEntityProperty[] pts) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			return new MappedFileEntity(localName, channel, pts);
+		} catch (IOException | RuntimeException exception) {
+			channel.close();
+			throw exception;
+		}
+	}
 }
@@ -18,73 +18,179 @@
 
 package ardat.tree.builder;
 
-import java.nio.file.Path;
-import java.util.Arrays;
-import java.util.HashMap;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
 
 /**
  * FileHierarchy is a class to provide instantaneous access to the child entities of the parent entity. All entities are
- * path objects. FileHierarchy uses a hash map to store the entities.<br><br>
+ * int ids assigned in the order the entities are added, starting with 0. FileHierarchy stores the relations in an arena
+ * of int columns: every entity refers to its parent, its first and last children and its next sibling, so the children
+ * of an entity form a linked list.<br><br>
  *
- * The access complexity is O(1).
- * The amortized insert complexity is O(1). The worst case insert complexity is O(n).<br><br>
+ * The append complexity is O(1) regardless of the number of children the parent already has.
+ * The amortized complexity of growing the arena is O(1).
+ * The iteration over the children of an entity is O(n), where n is the number of its children.<br><br>
  *
- * For example for given paths: /a, /a/b, /a/b/c; parent /a has a child /a/b and parent /a/b has a child /a/b/c.<br>
- * The time and result of adding those three paths will be the same as adding just /a/b/c because this will create
- * /a and /a/b recursively because they are parent directories of /a/b/c.
+ * For example for given entities: a, a/b, a/c; a is added as a root and gets the id 0, b and c are added as children of
+ * 0 and get the ids 1 and 2. The first child of 0 is 1, the next sibling of 1 is 2 and the next sibling of 2 is -1.
  */
 public class FileHierarchy {
 
-	private final HashMap<Path, Path[]> hierarchy;
+	private final boolean offHeap;
+
+	private IntBuffer parents;
+
+	private IntBuffer firstChildren;
+
+	private IntBuffer lastChildren;
+
+	private IntBuffer nextSiblings;
+
+	private IntBuffer childCounts;
+
+	private int capacity;
+
+	private int size = 0;
 
 	/**
-	 * Constructs FileHierarchy with the initial capacity of {@link HashMap#HashMap()}.
+	 * Constructs FileHierarchy with the initial capacity of 16 entities.
 	 */
 	public FileHierarchy() {
-		hierarchy = new HashMap<>();
+		this(16);
 	}
 
 	/**
 	 * Constructs FileHierarchy with the given capacity.
-	 * @param capacity the capacity of the underlying HashMap
+	 * @param capacity the initial number of entities
 	 */
 	public FileHierarchy(int capacity) {
-		assert capacity >= 0;
+		this(capacity, false);
+	}
+
+	/**
+	 * Constructs FileHierarchy with the given capacity, which optionally keeps its arena off the heap.
+	 * @param capacity the initial number of entities
+	 * @param offHeap true if the arena is to be allocated off the heap
+	 */
+	public FileHierarchy(int capacity, boolean offHeap) {
+		assert capacity > 0;
 
-		hierarchy = new HashMap<>(capacity);
+		this.offHeap = offHeap;
+		this.capacity = capacity;
+		parents = allocate(capacity);
+		firstChildren = allocate(capacity);
+		lastChildren = allocate(capacity);
+		nextSiblings = allocate(capacity);
+		childCounts = allocate(capacity);
 	}
 
 	/**
-	 * Adds a new path entity. If the entity isn't a root and the parent entities haven't been added yet, adds them
-	 * recursively. If the entity was already added does nothing.
-	 * @param child a new entity to add
+	 * Adds a new entity. The parent must be added beforehand.
+	 * @param parent the id of the parent entity or -1 if the new entity is a root
+	 * @return the id of the new entity
 	 */
-	public void addChild(Path child) {
-		assert child != null;
+	public int addChild(int parent) {
+		assert parent >= -1 && parent < size;
 
-		if (hierarchy.containsKey(child)) return;
-		if (child.getNameCount() == 1 && !hierarchy.containsKey(child)) {
-			hierarchy.put(child, new Path[0]);
-			return;
-		}
-		if (!hierarchy.containsKey(child.getParent())) {
-			addChild(child.getParent());
+		if (size == capacity) grow();
+		int child = size++;
+		parents.put(child, parent);
+		firstChildren.put(child, -1);
+		lastChildren.put(child, -1);
+		nextSiblings.put(child, -1);
+		childCounts.put(child, 0);
+		if (parent >= 0) {
+			int lastChild = lastChildren.get(parent);
+			if (lastChild < 0) firstChildren.put(parent, child);
+			else nextSiblings.put(lastChild, child);
+			lastChildren.put(parent, child);
+			childCounts.put(parent, childCounts.get(parent) + 1);
 		}
-		Path[] oldChildren = hierarchy.get(child.getParent());
-		Path[] newChildren = Arrays.copyOf(oldChildren, oldChildren.length + 1);
-		newChildren[newChildren.length - 1] = child;
-		hierarchy.replace(child.getParent(), newChildren);
-		hierarchy.put(child, new Path[0]);
+		return child;
+	}
+
+	/**
+	 * Returns the number of entities.
+	 * @return the number of entities
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the parent of the entity.
+	 * @param id the id of the entity
+	 * @return the id of the parent or -1 if the entity is a root
+	 */
+	public int getParent(int id) {
+		return parents.get(checkId(id));
 	}
 
 	/**
-	 * Returns the child entities of the given parent entity.
-	 * @param parent the parent entity
-	 * @return the child entities if the parent entity was added, otherwise returns null
+	 * Returns the first child of the entity.
+	 * @param id the id of the entity
+	 * @return the id of the first child or -1 if the entity has no children
 	 */
-	public Path[] getChildren(Path parent) {
-		assert parent != null;
+	public int getFirstChild(int id) {
+		return firstChildren.get(checkId(id));
+	}
+
+	/**
+	 * Returns the next sibling of the entity.
+	 * @param id the id of the entity
+	 * @return the id of the next sibling or -1 if the entity is the last child of its parent
+	 */
+	public int getNextSibling(int id) {
+		return nextSiblings.get(checkId(id));
+	}
+
+	/**
+	 * Returns the number of children of the entity.
+	 * @param id the id of the entity
+	 * @return the number of children
+	 */
+	public int getChildCount(int id) {
+		return childCounts.get(checkId(id));
+	}
+
+	/**
+	 * Returns the child entities of the given parent entity in the order they were added.
+	 * @param parent the id of the parent entity
+	 * @return the ids of the child entities
+	 */
+	public int[] getChildren(int parent) {
+		int[] children = new int[getChildCount(parent)];
+		int child = getFirstChild(parent);
+		for (int i = 0; i < children.length; i++) {
+			children[i] = child;
+			child = getNextSibling(child);
+		}
+		return children;
+	}
+
+	private int checkId(int id) {
+		if (id < 0 || id >= size) throw new IndexOutOfBoundsException(id);
+		return id;
+	}
+
+	private void grow() {
+		int newCapacity = (int) Math.min((long) capacity * 2, Integer.MAX_VALUE / 4);
+		if (newCapacity == capacity) throw new IllegalStateException("FileHierarchy has reached its maximum capacity");
+		parents = copy(parents, newCapacity);
+		firstChildren = copy(firstChildren, newCapacity);
+		lastChildren = copy(lastChildren, newCapacity);
+		nextSiblings = copy(nextSiblings, newCapacity);
+		childCounts = copy(childCounts, newCapacity);
+		capacity = newCapacity;
+	}
+
+	private IntBuffer copy(IntBuffer column, int newCapacity) {
+		IntBuffer newColumn = allocate(newCapacity);
+		newColumn.put(0, column, 0, size);
+		return newColumn;
+	}
 
-		return hierarchy.get(parent);
+	private IntBuffer allocate(int length) {
+		return offHeap ? ByteBuffer.allocateDirect(length * 4).asIntBuffer() : IntBuffer.allocate(length);
 	}
 }
@@ -0,0 +1,43 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ardat.tree.builder.archive;
+
+/**
+ * ArchiveHeader is a record to store a parsed archive entity header.<br><br>
+ *
+ * The layers are stored in the same order they are listed in the header: the first one is the layer of the concrete
+ * entity ( {@link ardat.tree.FileEntity} or {@link ardat.tree.DirectoryEntity} ), the following ones are
+ * the decorators in the order they were applied. The closing "class none" layer isn't stored, its properties are
+ * available through {@link #path()}, {@link #children()} and {@link #size()}.
+ * @param path the relative path of the entity
+ * @param size the size of the content following the header in bytes
+ * @param children the number of children of the entity
+ * @param layers the class layers of the header
+ * @param length the length of the header in bytes including the terminating empty line
+ */
+public record ArchiveHeader(String path, long size, int children, HeaderLayer[] layers, int length) {
+
+	/**
+	 * Returns the local name of the entity, which is the last element of its path.
+	 * @return the local name of the entity
+	 */
+	public String getName() {
+		return path.substring(path.lastIndexOf('/') + 1);
+	}
+}
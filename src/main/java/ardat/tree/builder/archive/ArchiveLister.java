@@ -0,0 +1,159 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ardat.tree.builder.archive;
+
+import ardat.exceptions.ArchiveCorruptedException;
+import ardat.format.Metadata;
+import ardat.tree.ArchiveEntityProperty;
+import ardat.tree.DirectoryEntity;
+import io.Channels;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * ArchiveLister is a lazy iterator over the entities stored in an archive. Only the headers are parsed: no entities
+ * are constructed, the content is skipped, and the decorators are reported by their names, so listing an encrypted
+ * archive doesn't need a key. The headers are read sequentially in the order they are stored, i.e. wide-wise starting
+ * with the root.<br><br>
+ *
+ * ArchiveLister owns the archive channel, so it must be closed.
+ */
+public class ArchiveLister implements Iterator<ArchiveLister.ListedEntity>, Closeable {
+
+	/**
+	 * ListedEntity is a summary of an archived entity.
+	 * @param path the relative path of the entity starting with the root name
+	 * @param size the size of the archived content
+	 * @param directory true if the entity is a directory
+	 * @param createTime the creation time or null if it isn't stored
+	 * @param modifyTime the last modification time or null if it isn't stored
+	 * @param accessTime the last access time or null if it isn't stored
+	 * @param decorators the names of the decorators in the order they were applied to the content
+	 */
+	public record ListedEntity(
+		String path,
+		long size,
+		boolean directory,
+		FileTime createTime,
+		FileTime modifyTime,
+		FileTime accessTime,
+		String[] decorators
+	) {}
+
+	private final SeekableByteChannel channel;
+
+	private final HeaderReader reader;
+
+	private long offset;
+
+	// the root is the only entity known beforehand, the rest is declared by the children numbers of the parents
+	private long entitiesLeft = 1;
+
+	/**
+	 * Opens the given archive and reads its metadata header.
+	 * @param archive the path to the archive file
+	 * @throws IOException if some I/O errors occur
+	 * @throws ArchiveCorruptedException if the metadata header is malformed
+	 */
+	public ArchiveLister(Path archive) throws IOException {
+		assert archive != null;
+
+		channel = Files.newByteChannel(archive, StandardOpenOption.READ);
+		try {
+			Metadata.MetadataBuilder builder = Metadata.getBuilder();
+			while (builder.feedPropertyLine(Channels.readLine(channel)));
+			offset = channel.position();
+		} catch (IOException | RuntimeException exception) {
+			channel.close();
+			throw exception;
+		}
+		reader = new HeaderReader(channel);
+	}
+
+	@Override
+	public boolean hasNext() {
+		return entitiesLeft > 0;
+	}
+
+	/**
+	 * Reads the next header.
+	 * @return the summary of the next entity
+	 * @throws NoSuchElementException if all entities have been listed
+	 * @throws UncheckedIOException if some I/O errors occur
+	 * @throws ArchiveCorruptedException if the header is malformed
+	 */
+	@Override
+	public ListedEntity next() {
+		if (!hasNext()) throw new NoSuchElementException();
+
+		ArchiveHeader header;
+		try {
+			header = reader.read(offset);
+		} catch (IOException exception) {
+			throw new UncheckedIOException(exception);
+		}
+		entitiesLeft += header.children() - 1;
+		offset += header.length() + header.size();
+
+		HeaderLayer[] layers = header.layers();
+		String[] decorators = new String[layers.length - 1];
+		for (int i = 1; i < layers.length; i++) {
+			decorators[i - 1] = layers[i].entityClass();
+		}
+		ArchiveEntityProperty[] pts = layers[0].pts();
+		return new ListedEntity(
+			header.path(),
+			header.size(),
+			layers[0].entityClass().equals(DirectoryEntity.class.getSimpleName()),
+			getTime("create-time", pts, header),
+			getTime("modify-time", pts, header),
+			getTime("access-time", pts, header),
+			decorators
+		);
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	private static FileTime getTime(String key, ArchiveEntityProperty[] pts, ArchiveHeader header) {
+		for (ArchiveEntityProperty property: pts) {
+			if (!property.key().equals(key)) continue;
+			try {
+				return FileTime.fromMillis(Long.parseLong(property.val()));
+			} catch (NumberFormatException exception) {
+				throw new ArchiveCorruptedException(
+					"File header corrupted: the " + key + " is malformed: " + header.path(),
+					exception
+				);
+			}
+		}
+		return null;
+	}
+}
@@ -28,7 +28,6 @@ import io.SharedSeekableByteChannel;
 
 import java.io.IOException;
 import java.nio.file.Path;
-import java.util.concurrent.LinkedBlockingDeque;
 
 /**
  * ArchivedEntityConstructor is an implementation of {@link ArchiveEntityConstructorInterface} that constructs
@@ -36,8 +35,6 @@ import java.util.concurrent.LinkedBlockingDeque;
  */
 public class ArchivedEntityConstructor implements ArchiveEntityConstructorInterface<ArchiveTreeBuilder.ArchEntityInfo> {
 
-	private record HeaderLayer(String entityClass, ArchiveEntityProperty[] pts) {}
-
 	private final Path arch;
 
 	/**
@@ -61,20 +58,21 @@ public class ArchivedEntityConstructor implements ArchiveEntityConstructorInterf
 		assert input != null;
 
 		try {
-			HeaderLayer[] layers = parseHeader(input.header());
-			ArchiveEntity entity = constructArchiveEntity(layers, input);
+			ArchiveEntity entity = constructArchiveEntity(input.header().layers(), input);
 			if (entity == null) {
-				throw new ArchiveCorruptedException("File header corrupted: missing ArchiveEntity: " + input.header());
+				throw new ArchiveCorruptedException(
+					"File header corrupted: missing ArchiveEntity: " + input.header().path()
+				);
 			}
 			return entity;
 		} catch (NullPointerException exception) {
 			throw new ArchiveCorruptedException(
-				"File header corrupted: missing/mis-ordered FileEntity: " + input.header(),
+				"File header corrupted: missing/mis-ordered FileEntity: " + input.header().path(),
 				exception
 			);
 		} catch (IllegalArgumentException exception) {
 			throw new ArchiveCorruptedException(
-				"File header corrupted: the path is unresolved: " + input.header(),
+				"File header corrupted: the path is unresolved: " + input.header().path(),
 				exception
 			);
 		} catch (IOException exception) {
@@ -82,41 +80,12 @@ public class ArchivedEntityConstructor implements ArchiveEntityConstructorInterf
 		}
 	}
 
-	private HeaderLayer[] parseHeader(String header) {
-		try {
-			header = header.trim();
-			int charsLeft = header.length();
-			LinkedBlockingDeque<HeaderLayer> layers = new LinkedBlockingDeque<>();
-			LinkedBlockingDeque<ArchiveEntityProperty> pts = new LinkedBlockingDeque<>();
-			while (charsLeft > 0) {
-				int nextLineSepIndex = header.lastIndexOf('\n', charsLeft - 1);
-				String headerLine = header.substring(nextLineSepIndex + 1, charsLeft);
-				charsLeft -= headerLine.length() + 1;
-				if (headerLine.startsWith("class ")) {
-					String className = headerLine.substring(headerLine.indexOf(' ') + 1);
-					layers.push(new HeaderLayer(className, pts.toArray(new ArchiveEntityProperty[0])));
-					pts = new LinkedBlockingDeque<>();
-				} else {
-					String key = headerLine.substring(0, headerLine.indexOf(' '));
-					String val = headerLine.substring(headerLine.indexOf(' ') + 1);
-					pts.push(new ArchiveEntityProperty(key, val));
-				}
-			}
-			return layers.toArray(new HeaderLayer[0]);
-		} catch (IndexOutOfBoundsException exception) {
-			throw new ArchiveCorruptedException(
-				"File header corrupted: header structure is corrupted: " + header,
-				exception
-			);
-		}
-	}
-
-	// removes the last metaheader none and flips the decorators if any present
+	// flips the decorators if any present
 	private HeaderLayer[] headerArranger(HeaderLayer[] layers) {
-		HeaderLayer[] arrangedLayers = new HeaderLayer[layers.length - 1];
+		HeaderLayer[] arrangedLayers = new HeaderLayer[layers.length];
 		arrangedLayers[0] = layers[0];
 		for (int i = 1; i < arrangedLayers.length; i++) {
-			arrangedLayers[i] = layers[layers.length - 1 - i];
+			arrangedLayers[i] = layers[layers.length - i];
 		}
 
 		return arrangedLayers;
@@ -127,14 +96,13 @@ public class ArchivedEntityConstructor implements ArchiveEntityConstructorInterf
 		ArchiveTreeBuilder.ArchEntityInfo info
 	) throws IOException {
 		ArchiveEntity entity = null;
-		Path entityPath = Path.of(Headers.getRelativePath(info.header()));
-		String entityName = entityPath.getName(entityPath.getNameCount() - 1).toString();
+		String entityName = info.header().getName();
 		for (HeaderLayer layer: headerArranger(layers)) {
 			String entityClass = layer.entityClass();
 			if (entityClass.equals(DirectoryEntity.class.getSimpleName())) {
 				entity = new DirectoryEntity(entityName, layer.pts());
 			} else if (entityClass.equals(FileEntity.class.getSimpleName())) {
-				long fileSize = Headers.getFileSize(info.header());
+				long fileSize = info.header().size();
 				int headerLength = info.header().length();
 				SharedSeekableByteChannel content =
 					SharedChannelFactory
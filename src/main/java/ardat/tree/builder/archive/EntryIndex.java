@@ -0,0 +1,300 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ardat.tree.builder.archive;
+
+import ardat.exceptions.ArchiveCorruptedException;
+import ardat.tree.builder.FileHierarchy;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+/**
+ * EntryIndex is a compact index of the entities stored in an archive. Instead of keeping an object per entity, every
+ * attribute is stored in its own column, and the entities are referred to by their int ids, which are the positions of
+ * the entities in the archive. The local names are kept in a name pool as UTF-8 bytes. The columns are allocated
+ * either on the heap or off the heap using direct buffers, so huge archives needn't occupy the heap at all.<br><br>
+ *
+ * The index relies on the layout produced by {@link ardat.tree.writer.ArchiveTreeWriter}: the entities are stored
+ * wide-wise starting with the root, so the parent of every entity is known from the children numbers of
+ * the preceding entities. The relations between the entities are kept in a {@link FileHierarchy} sharing the ids with
+ * the index. While the index is filled, only the entities still waiting for their children are queued with the number
+ * of children they declared.<br><br>
+ *
+ * An entity takes 50 bytes plus the length of its local name in UTF-8: 28 bytes of the columns, 20 bytes of
+ * the hierarchy and 2 bytes prefixing the name in the pool.
+ */
+public class EntryIndex {
+
+	private static final int MIN_NAME_CHUNK_SIZE = 64 * 1024;
+
+	private static final int MAX_NAME_CHUNK_SIZE = 64 * 1024 * 1024;
+
+	private static final int MAX_NAME_LENGTH = 0xffff;
+
+	private final boolean offHeap;
+
+	private ByteBuffer offsets;
+
+	private ByteBuffer sizes;
+
+	private ByteBuffer pathLengths;
+
+	private ByteBuffer nameRefs;
+
+	private final ArrayList<ByteBuffer> names = new ArrayList<>();
+
+	private final FileHierarchy hierarchy;
+
+	// the ids of the entities waiting for their children in the high halves, the declared numbers in the low halves
+	private final ArrayDeque<Long> waitingParents = new ArrayDeque<>();
+
+	private int capacity;
+
+	private int size = 0;
+
+	private int parentCursor = -1;
+
+	private int childrenLeft = 0;
+
+	private long declaredChildren = 0;
+
+	/**
+	 * Constructs EntryIndex with the given initial capacity.
+	 * @param capacity the initial number of entities
+	 * @param offHeap true if the columns are to be allocated off the heap
+	 */
+	public EntryIndex(int capacity, boolean offHeap) {
+		assert capacity > 0;
+
+		this.offHeap = offHeap;
+		this.capacity = capacity;
+		offsets = allocate(capacity * 8);
+		sizes = allocate(capacity * 8);
+		pathLengths = allocate(capacity * 4);
+		nameRefs = allocate(capacity * 8);
+		hierarchy = new FileHierarchy(capacity, offHeap);
+	}
+
+	/**
+	 * Adds a new entity to the index. The entities must be added in the order they are stored in the archive.
+	 * @param path the relative path of the entity
+	 * @param offset the offset of the entity header
+	 * @param contentSize the size of the entity content
+	 * @param children the number of children of the entity
+	 * @return the id of the entity
+	 * @throws ArchiveCorruptedException if the entity doesn't fit the wide-wise layout
+	 */
+	public int add(String path, long offset, long contentSize, int children) {
+		assert path != null && offset >= 0 && contentSize >= 0 && children >= 0;
+
+		int separator = path.lastIndexOf('/');
+		int parent = -1;
+		if (size == 0) {
+			if (separator >= 0) throw new ArchiveCorruptedException("Archive corrupted: the root is absent: " + path);
+		} else {
+			if (childrenLeft == 0) {
+				Long waiting = waitingParents.poll();
+				if (waiting == null) {
+					throw new ArchiveCorruptedException("Archive corrupted: the entity has no parent: " + path);
+				}
+				parentCursor = (int) (waiting >>> 32);
+				childrenLeft = (int) (long) waiting;
+			}
+			parent = parentCursor;
+			childrenLeft--;
+			if (separator != pathLengths.getInt(parent * 4)) {
+				throw new ArchiveCorruptedException("Archive corrupted: the entity is misplaced: " + path);
+			}
+		}
+
+		if (size == capacity) grow();
+		int id = size++;
+		hierarchy.addChild(parent);
+		offsets.putLong(id * 8, offset);
+		sizes.putLong(id * 8, contentSize);
+		pathLengths.putInt(id * 4, path.length());
+		nameRefs.putLong(id * 8, addName(path.substring(separator + 1)));
+		if (children > 0) waitingParents.add((long) id << 32 | children);
+		declaredChildren += children;
+		return id;
+	}
+
+	/**
+	 * Checks that every entity declared as a child was added.
+	 * @throws ArchiveCorruptedException if some children are missing
+	 */
+	public void validate() {
+		if (size == 0) throw new ArchiveCorruptedException("Archive corrupted: the archive has no entities");
+		if (declaredChildren != size - 1) {
+			throw new ArchiveCorruptedException(
+				"Archive corrupted: " + (declaredChildren - size + 1) + " declared entities are missing"
+			);
+		}
+	}
+
+	/**
+	 * Returns the number of entities.
+	 * @return the number of entities
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns true if the columns are allocated off the heap.
+	 * @return true if the columns are allocated off the heap, otherwise false
+	 */
+	public boolean isOffHeap() {
+		return offHeap;
+	}
+
+	/**
+	 * Returns the hierarchy of the entities.
+	 * @return the file hierarchy
+	 */
+	public FileHierarchy getHierarchy() {
+		return hierarchy;
+	}
+
+	/**
+	 * Returns the offset of the entity header.
+	 * @param id the id of the entity
+	 * @return the offset of the entity header
+	 */
+	public long getOffset(int id) {
+		return offsets.getLong(checkId(id) * 8);
+	}
+
+	/**
+	 * Returns the size of the entity content.
+	 * @param id the id of the entity
+	 * @return the size of the entity content
+	 */
+	public long getSize(int id) {
+		return sizes.getLong(checkId(id) * 8);
+	}
+
+	/**
+	 * Returns the id of the parent entity.
+	 * @param id the id of the entity
+	 * @return the id of the parent entity or -1 if the entity is the root
+	 */
+	public int getParent(int id) {
+		return hierarchy.getParent(checkId(id));
+	}
+
+	/**
+	 * Returns the number of children of the entity.
+	 * @param id the id of the entity
+	 * @return the number of children
+	 */
+	public int getChildCount(int id) {
+		return hierarchy.getChildCount(checkId(id));
+	}
+
+	/**
+	 * Returns the id of the first child of the entity.
+	 * @param id the id of the entity
+	 * @return the id of the first child or -1 if the entity has no children
+	 */
+	public int getFirstChild(int id) {
+		return hierarchy.getFirstChild(checkId(id));
+	}
+
+	/**
+	 * Returns the id of the next sibling of the entity.
+	 * @param id the id of the entity
+	 * @return the id of the next sibling or -1 if the entity is the last child of its parent
+	 */
+	public int getNextSibling(int id) {
+		return hierarchy.getNextSibling(checkId(id));
+	}
+
+	/**
+	 * Returns the local name of the entity.
+	 * @param id the id of the entity
+	 * @return the local name
+	 */
+	public String getName(int id) {
+		long ref = nameRefs.getLong(checkId(id) * 8);
+		ByteBuffer chunk = names.get((int) (ref >>> 32));
+		int position = (int) ref;
+		int length = chunk.getShort(position) & 0xffff;
+		byte[] name = new byte[length];
+		chunk.get(position + 2, name);
+		return new String(name, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Returns the relative path of the entity.
+	 * @param id the id of the entity
+	 * @return the relative path
+	 */
+	public String getPath(int id) {
+		StringBuilder path = new StringBuilder(pathLengths.getInt(checkId(id) * 4));
+		path.append(getName(id));
+		for (int parent = getParent(id); parent >= 0; parent = getParent(parent)) {
+			path.insert(0, '/').insert(0, getName(parent));
+		}
+		return path.toString();
+	}
+
+	private int checkId(int id) {
+		if (id < 0 || id >= size) throw new IndexOutOfBoundsException(id);
+		return id;
+	}
+
+	private long addName(String name) {
+		byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+		if (bytes.length > MAX_NAME_LENGTH) {
+			throw new ArchiveCorruptedException("Archive corrupted: the name is too long: " + name);
+		}
+		ByteBuffer chunk = names.isEmpty() ? null : names.get(names.size() - 1);
+		if (chunk == null || chunk.remaining() < bytes.length + 2) {
+			int chunkSize = chunk == null ? MIN_NAME_CHUNK_SIZE : Math.min(chunk.capacity() * 2, MAX_NAME_CHUNK_SIZE);
+			chunk = allocate(Math.max(chunkSize, bytes.length + 2));
+			names.add(chunk);
+		}
+		long ref = (long) (names.size() - 1) << 32 | chunk.position();
+		chunk.putShort((short) bytes.length).put(bytes);
+		return ref;
+	}
+
+	private void grow() {
+		int newCapacity = (int) Math.min((long) capacity * 2, Integer.MAX_VALUE / 8);
+		if (newCapacity == capacity) throw new ArchiveCorruptedException("Archive has too many entities");
+		offsets = copy(offsets, newCapacity * 8);
+		sizes = copy(sizes, newCapacity * 8);
+		pathLengths = copy(pathLengths, newCapacity * 4);
+		nameRefs = copy(nameRefs, newCapacity * 8);
+		capacity = newCapacity;
+	}
+
+	private ByteBuffer copy(ByteBuffer column, int newLength) {
+		ByteBuffer newColumn = allocate(newLength);
+		newColumn.put(0, column, 0, column.capacity());
+		return newColumn;
+	}
+
+	private ByteBuffer allocate(int length) {
+		return offHeap ? ByteBuffer.allocateDirect(length) : ByteBuffer.allocate(length);
+	}
+}
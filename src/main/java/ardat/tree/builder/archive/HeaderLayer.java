@@ -0,0 +1,29 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ardat.tree.builder.archive;
+
+import ardat.tree.ArchiveEntityProperty;
+
+/**
+ * HeaderLayer is a record to store a single class layer of an archive header: the class name of the entity and
+ * the properties listed beneath it.
+ * @param entityClass the simple class name of the entity
+ * @param pts the properties of the layer
+ */
+public record HeaderLayer(String entityClass, ArchiveEntityProperty[] pts) {}
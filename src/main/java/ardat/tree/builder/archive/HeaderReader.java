@@ -0,0 +1,85 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ardat.tree.builder.archive;
+
+import ardat.exceptions.ArchiveCorruptedException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * HeaderReader is a class to read consecutive headers from an archive channel. It keeps the bytes read from
+ * the channel in a buffer, so the headers of small entities, which usually share the same read window, are parsed
+ * without additional I/O operations.<br><br>
+ *
+ * HeaderReader doesn't own the channel and doesn't restore its position.
+ */
+public class HeaderReader {
+
+	private final SeekableByteChannel channel;
+
+	private final ByteBuffer buffer = ByteBuffer.allocate(Headers.MAX_HEADER_LENGTH * 2);
+
+	private long bufferOffset = 0;
+
+	/**
+	 * Constructs HeaderReader using the given channel.
+	 * @param sbc the channel to read the headers from
+	 */
+	public HeaderReader(SeekableByteChannel sbc) {
+		assert sbc != null;
+
+		channel = sbc;
+		buffer.limit(0);
+	}
+
+	/**
+	 * Reads the header located at the given offset of the channel.
+	 * @param offset the offset of the header
+	 * @return the header
+	 * @throws IOException if some I/O errors occur
+	 * @throws ArchiveCorruptedException if the header is malformed or the end of the channel is reached before
+	 * the header ends
+	 */
+	public ArchiveHeader read(long offset) throws IOException {
+		assert offset >= 0;
+
+		if (offset < bufferOffset || offset > bufferOffset + buffer.limit()) {
+			bufferOffset = offset;
+			buffer.limit(0);
+		}
+		buffer.position((int) (offset - bufferOffset));
+
+		ArchiveHeader header;
+		while ((header = Headers.parse(buffer)) == null) {
+			bufferOffset += buffer.position();
+			buffer.compact();
+			channel.position(bufferOffset + buffer.position());
+			int read = channel.read(buffer);
+			buffer.flip();
+			if (read <= 0) {
+				throw new ArchiveCorruptedException(
+					"End of file had been reached before the header at " + offset + " ended"
+				);
+			}
+		}
+		return header;
+	}
+}
@@ -19,77 +19,246 @@
 package ardat.tree.builder.archive;
 
 import ardat.exceptions.ArchiveCorruptedException;
-import io.Channels;
+import ardat.tree.ArchiveEntityProperty;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.SeekableByteChannel;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 
 /**
- * Headers is a class containing static methods related to header processing.
+ * Headers is a class containing static methods related to header processing.<br><br>
+ *
+ * The header is parsed in a single pass over its bytes. Only the keys and the values of the properties are decoded
+ * as UTF-8, so the lengths and the offsets are always accounted in bytes regardless of the characters used in the
+ * entity names.
  */
 public class Headers {
 
 	/**
-	 * Returns the path of the entity.
-	 * @param header the header
-	 * @return the path of the entity
+	 * The maximum length of a header in bytes.
 	 */
-	public static String getRelativePath(String header) {
-		assert header != null;
+	public static final int MAX_HEADER_LENGTH = 8 * 1024;
+
+	private static final byte[] CLASS_KEY = "class".getBytes(StandardCharsets.US_ASCII);
+
+	private static final byte[] NONE_CLASS = "none".getBytes(StandardCharsets.US_ASCII);
+
+	private static final byte[] FILEPATH_KEY = "filepath".getBytes(StandardCharsets.US_ASCII);
+
+	private static final byte[] CHILDREN_KEY = "children".getBytes(StandardCharsets.US_ASCII);
+
+	private static final byte[] SIZE_KEY = "size".getBytes(StandardCharsets.US_ASCII);
+
+	private static final int SIZE_DIGITS = 16;
+
+	/**
+	 * Parses the header starting at the current position of the buffer. If the buffer contains the entire header,
+	 * the position of the buffer is moved right after the terminating empty line, otherwise the position is left
+	 * unchanged.
+	 * @param buffer the buffer containing the header
+	 * @return the parsed header or null if the buffer doesn't contain the entire header
+	 * @throws ArchiveCorruptedException if the header is malformed or exceeds {@link #MAX_HEADER_LENGTH}
+	 */
+	public static ArchiveHeader parse(ByteBuffer buffer) {
+		assert buffer != null;
+
+		int start = buffer.position();
+		int end = Math.min(buffer.limit(), start + MAX_HEADER_LENGTH);
+		ArrayList<HeaderLayer> layers = new ArrayList<>(4);
+		ArrayList<ArchiveEntityProperty> pts = new ArrayList<>(4);
+		String layerClass = null;
+		boolean closed = false;
+		String path = null;
+		long size = -1;
+		int children = -1;
+
+		int lineStart = start;
+		while (true) {
+			int lineEnd = indexOf(buffer, (byte) '\n', lineStart, end);
+			if (lineEnd < 0) {
+				if (end - start == MAX_HEADER_LENGTH) {
+					throw new ArchiveCorruptedException(
+						"The header exceeded the maximum length of " + MAX_HEADER_LENGTH
+					);
+				}
+				return null;
+			}
+			if (lineEnd == lineStart) break;
 
-		Matcher matcher = Pattern.compile("filepath [^\n]+").matcher(header);
-		if (!matcher.find()) {
-			throw new ArchiveCorruptedException("File header corrupted: the filepath property is absent: " + header);
+			int separator = indexOf(buffer, (byte) ' ', lineStart, lineEnd);
+			if (separator < 0) {
+				throw new ArchiveCorruptedException(
+					"File header corrupted: header structure is corrupted: " + decode(buffer, lineStart, lineEnd)
+				);
+			}
+			int valueStart = separator + 1;
+			if (equals(buffer, lineStart, separator, CLASS_KEY)) {
+				if (closed) {
+					throw new ArchiveCorruptedException(
+						"File header corrupted: a class follows the closing layer: " + decode(buffer, start, lineEnd)
+					);
+				}
+				if (layerClass != null) {
+					layers.add(new HeaderLayer(layerClass, pts.toArray(new ArchiveEntityProperty[0])));
+					pts.clear();
+				}
+				if (equals(buffer, valueStart, lineEnd, NONE_CLASS)) {
+					closed = true;
+					layerClass = null;
+				} else {
+					layerClass = decode(buffer, valueStart, lineEnd);
+				}
+			} else if (closed) {
+				if (equals(buffer, lineStart, separator, FILEPATH_KEY)) {
+					path = decode(buffer, valueStart, lineEnd);
+				} else if (equals(buffer, lineStart, separator, CHILDREN_KEY)) {
+					children = parseDecimal(buffer, valueStart, lineEnd);
+				} else if (equals(buffer, lineStart, separator, SIZE_KEY)) {
+					size = parseHex(buffer, valueStart, lineEnd);
+				}
+			} else if (layerClass != null) {
+				String key = decode(buffer, lineStart, separator);
+				pts.add(new ArchiveEntityProperty(key, decode(buffer, valueStart, lineEnd)));
+			} else {
+				throw new ArchiveCorruptedException(
+					"File header corrupted: a property precedes the first class: " + decode(buffer, lineStart, lineEnd)
+				);
+			}
+			lineStart = lineEnd + 1;
+		}
+
+		int length = lineStart + 1 - start;
+		if (path == null || path.isEmpty()) {
+			throw new ArchiveCorruptedException(
+				"File header corrupted: the filepath property is absent: " + decode(buffer, start, lineStart)
+			);
+		}
+		if (size < 0) {
+			throw new ArchiveCorruptedException(
+				"File header corrupted: the size property is absent: " + decode(buffer, start, lineStart)
+			);
+		}
+		if (children < 0) {
+			throw new ArchiveCorruptedException(
+				"File header corrupted: the children property is absent: " + decode(buffer, start, lineStart)
+			);
+		}
+		if (layers.isEmpty()) {
+			throw new ArchiveCorruptedException(
+				"File header corrupted: missing ArchiveEntity: " + decode(buffer, start, lineStart)
+			);
 		}
-		String filename = matcher.group();
-		return filename.substring(filename.indexOf(' ') + 1);
+
+		buffer.position(start + length);
+		return new ArchiveHeader(path, size, children, layers.toArray(new HeaderLayer[0]), length);
 	}
 
 	/**
-	 * Returns the size of the file descriptor associated with this header.
+	 * Parses the given header.
 	 * @param header the header
-	 * @return the size of the file descriptor
+	 * @return the parsed header
+	 * @throws ArchiveCorruptedException if the header is malformed or incomplete
 	 */
-	public static long getFileSize(String header) {
+	public static ArchiveHeader parse(String header) {
 		assert header != null;
 
-		Matcher matcher = Pattern.compile("size [\\da-f]{16}").matcher(header);
-		if (!matcher.find()) {
-			throw new ArchiveCorruptedException("File header corrupted: the size property is absent: " + header);
+		ArchiveHeader parsed = parse(ByteBuffer.wrap(header.getBytes(StandardCharsets.UTF_8)));
+		if (parsed == null) {
+			throw new ArchiveCorruptedException("File header corrupted: the header isn't terminated: " + header);
 		}
-		String sizeString = matcher.group();
-		return Long.parseLong(sizeString.substring(sizeString.indexOf(' ') + 1), 16);
+		return parsed;
 	}
 
 	/**
-	 * Returns the header starting from the current channel position and stops when reaches an empty line.
-	 * @param sbc the channel to retrieve the header from
+	 * Reads the header starting from the current channel position. The position of the channel is moved right after
+	 * the terminating empty line, i.e. to the first byte of the content of the entity.
+	 * @param sbc the channel to read the header from
 	 * @return the header
 	 * @throws IOException if some I/O errors occur
 	 */
-	public static String retrieve(SeekableByteChannel sbc) throws IOException {
+	public static ArchiveHeader read(SeekableByteChannel sbc) throws IOException {
 		assert sbc != null;
 
-		try {
-			long pos = sbc.position();
-			int maxHeaderSize = 5 * 1024;
-			int maxHeaderLineSize = 1024;
-			StringBuilder header = new StringBuilder(maxHeaderSize);
-			String headerLine;
-			while (!(headerLine = Channels.readLine(sbc, maxHeaderLineSize)).isBlank()) {
-				header.append(headerLine).append('\n');
-				if (header.length() > maxHeaderSize) {
-					throw new ArchiveCorruptedException("The header exceeded the maximum length of " + maxHeaderSize);
-				}
+		long offset = sbc.position();
+		ArchiveHeader header = new HeaderReader(sbc).read(offset);
+		sbc.position(offset + header.length());
+		return header;
+	}
+
+	private static int indexOf(ByteBuffer buffer, byte b, int from, int to) {
+		for (int i = from; i < to; i++) {
+			if (buffer.get(i) == b) return i;
+		}
+		return -1;
+	}
+
+	private static boolean equals(ByteBuffer buffer, int from, int to, byte[] literal) {
+		if (to - from != literal.length) return false;
+		for (int i = 0; i < literal.length; i++) {
+			if (buffer.get(from + i) != literal[i]) return false;
+		}
+		return true;
+	}
+
+	private static String decode(ByteBuffer buffer, int from, int to) {
+		if (buffer.hasArray()) {
+			return new String(buffer.array(), buffer.arrayOffset() + from, to - from, StandardCharsets.UTF_8);
+		}
+		byte[] bytes = new byte[to - from];
+		buffer.get(from, bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static int parseDecimal(ByteBuffer buffer, int from, int to) {
+		if (from == to || to - from > 10) {
+			throw new ArchiveCorruptedException(
+				"File header corrupted: the children property is malformed: " + decode(buffer, from, to)
+			);
+		}
+		long val = 0;
+		for (int i = from; i < to; i++) {
+			int digit = buffer.get(i) - '0';
+			if (digit < 0 || digit > 9) {
+				throw new ArchiveCorruptedException(
+					"File header corrupted: the children property is malformed: " + decode(buffer, from, to)
+				);
 			}
-			sbc.position(pos);
-			return header.append('\n').toString();
-		} catch (NullPointerException exception) {
+			val = val * 10 + digit;
+		}
+		if (val > Integer.MAX_VALUE) {
+			throw new ArchiveCorruptedException(
+				"File header corrupted: the children property is malformed: " + decode(buffer, from, to)
+			);
+		}
+		return (int) val;
+	}
+
+	private static long parseHex(ByteBuffer buffer, int from, int to) {
+		if (to - from != SIZE_DIGITS) {
+			throw new ArchiveCorruptedException(
+				"File header corrupted: the size property is malformed: " + decode(buffer, from, to)
+			);
+		}
+		long val = 0;
+		for (int i = from; i < to; i++) {
+			int b = buffer.get(i);
+			int digit;
+			if (b >= '0' && b <= '9') digit = b - '0';
+			else if (b >= 'a' && b <= 'f') digit = b - 'a' + 10;
+			else {
+				throw new ArchiveCorruptedException(
+					"File header corrupted: the size property is malformed: " + decode(buffer, from, to)
+				);
+			}
+			val = (val << 4) | digit;
+		}
+		if (val < 0) {
 			throw new ArchiveCorruptedException(
-				"End of file had been reached before attempting to read the header"
+				"File header corrupted: the size property is malformed: " + decode(buffer, from, to)
 			);
 		}
+		return val;
 	}
 }
@@ -20,20 +20,55 @@ package ardat.tree.writer;
 
 import ardat.tree.ArchiveEntity;
 import ardat.tree.root.TreeRoot;
+import io.BufferPool;
+import io.GlobalGovernor;
+import io.IOGovernor;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 
 /**
  * AbstractTreeWriter is an abstract class for performing the output operation on the entity tree.<br>
  * {@link FSTreeWriter} performs the output operation into the file system.<br>
- * {@link ArchiveEntity} performs the output operation into the archive file.
+ * {@link ArchiveEntity} performs the output operation into the archive file.<br><br>
+ *
+ * If the read-ahead is set, see {@link #setReadAhead(int, long)}, a background thread reads the beginning of
+ * the content of the next entities in the queue, so the source I/O overlaps with the processing of the current entity.
+ * <br><br>
+ *
+ * The content that can't be transferred directly is copied through windows sized by {@link WindowPolicy}, which is
+ * adaptive by default, see {@link #setWindowPolicy(WindowPolicy)}.
  */
 public abstract class AbstractTreeWriter {
 
+	private static final int READ_AHEAD_WINDOW = 256 * 1024;
+
 	private final LinkedBlockingQueue<ArchiveEntity> queue = new LinkedBlockingQueue<>();
 
+	private int readAheadEntities = 0;
+
+	private long readAheadBytes = 0;
+
+	private ExecutorService readAhead;
+
+	private volatile boolean readingAhead = false;
+
+	// the number of entities taken from the queue and the number of entities submitted to the read-ahead thread
+	private long polled = 0;
+
+	private long prefetched = 0;
+
+	private WindowPolicy windowPolicy = WindowPolicy.adaptive();
+
 	/**
 	 * Passes the entity to the concrete file to perform the output operation.
 	 * @param entity the passed entity
@@ -41,6 +76,78 @@ public abstract class AbstractTreeWriter {
 	 */
 	protected abstract void writeArchiveEntity(ArchiveEntity entity) throws IOException;
 
+	/**
+	 * Invoked before the first entity is processed. The concrete implementation can use it to acquire the resources it
+	 * holds for the whole output operation.
+	 * @throws IOException if some I/O errors occur
+	 */
+	protected void startWriting() throws IOException {}
+
+	/**
+	 * Invoked after the last entity was processed or the output operation was interrupted by an exception. The concrete
+	 * implementation can use it to complete the output and to free the resources it holds.
+	 * @param completed true if all the entities were processed, otherwise false
+	 * @throws IOException if some I/O errors occur
+	 */
+	protected void finishWriting(boolean completed) throws IOException {}
+
+	/**
+	 * Sets the read-ahead of the source content. The read-ahead only warms the page cache, the content is read again
+	 * by the writer, so it's useful if the sources are on a device, and the processing of the content takes time.
+	 * The read-ahead is disabled while an {@link IOGovernor} is set, since its reads would double the I/O the governor
+	 * doesn't account for.
+	 * @param entities the number of the next entities to read ahead or 0 to disable the read-ahead
+	 * @param bytes the maximum number of bytes to read ahead from every entity
+	 */
+	public void setReadAhead(int entities, long bytes) {
+		assert entities >= 0 && bytes >= 0;
+
+		readAheadEntities = entities;
+		readAheadBytes = bytes;
+	}
+
+	/**
+	 * Sets the policy choosing the size of the windows the content is copied through.
+	 * @param policy the window policy
+	 */
+	public void setWindowPolicy(WindowPolicy policy) {
+		assert policy != null;
+
+		windowPolicy = policy;
+	}
+
+	/**
+	 * Returns the policy choosing the size of the windows the content is copied through.
+	 * @return the window policy
+	 */
+	public WindowPolicy getWindowPolicy() {
+		return windowPolicy;
+	}
+
+	/**
+	 * Waits for the task submitted by the concrete implementation to an executor and rethrows its failure.
+	 * @param task the submitted task
+	 * @return the result of the task
+	 * @param <T> the type of the result
+	 * @throws IOException if the task failed with an IOException, was cancelled or the thread was interrupted
+	 */
+	protected static <T> T await(Future<T> task) throws IOException {
+		try {
+			return task.get();
+		} catch (InterruptedException exception) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the task");
+		} catch (CancellationException exception) {
+			throw new IOException("The task was cancelled", exception);
+		} catch (ExecutionException exception) {
+			Throwable cause = exception.getCause();
+			if (cause instanceof IOException ioException) throw ioException;
+			if (cause instanceof RuntimeException runtimeException) throw runtimeException;
+			if (cause instanceof Error error) throw error;
+			throw new IOException(cause);
+		}
+	}
+
 	/**
 	 * Performs the output operation on the tree received from {@link TreeRoot}. The starting point is the root of the
 	 * tree. After the root is processed, the methods processes the remaining tree elements wide-wise.
@@ -50,11 +157,71 @@ public abstract class AbstractTreeWriter {
 		ArchiveEntity root = TreeRoot.getTreeRoot().get();
 		assert root != null;
 
-		queue.add(root);
-		while (!queue.isEmpty()) {
-			ArchiveEntity currentEntity = queue.poll();
-			writeArchiveEntity(currentEntity);
-			queue.addAll(Arrays.stream(currentEntity.getChildren()).toList());
+		Throwable failure = null;
+		if (readAheadEntities > 0 && readAheadBytes > 0 && GlobalGovernor.getGlobalGovernor().getGovernor() == null) {
+			readAhead = Executors.newSingleThreadExecutor(task -> {
+				Thread thread = new Thread(task, "ardat-read-ahead");
+				thread.setDaemon(true);
+				return thread;
+			});
+			readingAhead = true;
+		}
+		try {
+			startWriting();
+			queue.add(root);
+			while (!queue.isEmpty()) {
+				ArchiveEntity currentEntity = queue.poll();
+				polled++;
+				if (readAhead != null) submitReadAhead();
+				writeArchiveEntity(currentEntity);
+				queue.addAll(Arrays.stream(currentEntity.getChildren()).toList());
+			}
+		} catch (Throwable throwable) {
+			failure = throwable;
+			throw throwable;
+		} finally {
+			queue.clear();
+			// the thread isn't interrupted, since an interrupted read closes the channel shared with the writer
+			readingAhead = false;
+			if (readAhead != null) readAhead.shutdown();
+			readAhead = null;
+			polled = 0;
+			prefetched = 0;
+			// the failure of the output operation isn't hidden by the failure to finish it
+			try {
+				finishWriting(failure == null);
+			} catch (Throwable finishFailure) {
+				if (failure == null) throw finishFailure;
+				failure.addSuppressed(finishFailure);
+			}
+		}
+	}
+
+	// the queue is in the writing order, so the entity at the index i is the (polled + i)-th entity written
+	private void submitReadAhead() {
+		Iterator<ArchiveEntity> upcoming = queue.iterator();
+		for (long index = polled; index < polled + readAheadEntities && upcoming.hasNext(); index++) {
+			ArchiveEntity entity = upcoming.next();
+			if (index < prefetched) continue;
+			readAhead.execute(() -> prefetch(entity));
+			prefetched = index + 1;
+		}
+	}
+
+	// the read-ahead is a hint, so its failures are ignored, the writer reports them when it reads the content
+	private void prefetch(ArchiveEntity entity) {
+		ByteBuffer window = BufferPool.getBufferPool().acquire(READ_AHEAD_WINDOW);
+		try {
+			long offset = 0;
+			while (offset < readAheadBytes && readingAhead) {
+				window.clear().limit((int) Math.min(READ_AHEAD_WINDOW, readAheadBytes - offset));
+				int read = entity.prefetchContent(window, offset);
+				if (read <= 0) break;
+				offset += read;
+			}
+		} catch (IOException | RuntimeException ignored) {
+		} finally {
+			BufferPool.getBufferPool().release(window);
 		}
 	}
 }
@@ -20,29 +20,182 @@ package ardat.tree.writer;
 
 import ardat.tree.ArchiveEntity;
 import ardat.tree.ArchiveEntityProperty;
+import ardat.tree.ContentLength;
+import ardat.tree.FileEntity;
+import ardat.format.ArchiveIndex;
 import ardat.format.Metadata;
+import io.AsyncOutputChannel;
+import io.BufferPool;
+import io.DirectOutputChannel;
+import io.Durability;
+import io.Flusher;
+import io.GlobalGovernor;
+import io.MappedOutputChannel;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.channels.ByteChannel;
-import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * ArchiveTreeWriter is a concrete implementation of {@link AbstractTreeWriter}, that performs the output operation on
- * the given entity tree into an archive file.
+ * the given entity tree into an archive file.<br><br>
+ *
+ * The archive is kept open for the whole output operation. Every header is encoded into one reusable buffer and
+ * written together with the first window of the content using a gathering write. If the content fits in the window,
+ * its size is known before the header is written, otherwise the size field is patched in place afterwards.
+ * The windows are direct buffers borrowed from {@link BufferPool} for the output operation.<br><br>
+ *
+ * ArchiveTreeWriter can also write to a non-seekable channel, e.g. a pipe or a socket. The archive is produced in
+ * a single forward pass: the content that doesn't fit in the window is spooled ( in memory up to 8 MiB, then into
+ * a temporary file ) until its size is known, and only then the header and the content are written.<br><br>
+ *
+ * If an entity predicts the exact length of its content, see {@link ArchiveEntity#getContentLength()}, the size is
+ * written in the header beforehand, so neither the patch nor the spool is needed. The content of an undecorated
+ * {@link FileEntity} exceeding the window is copied straight from the source file into the archive by
+ * {@link ArchiveEntity#transferContentTo(WritableByteChannel)}, without passing it through the heap.<br><br>
+ *
+ * If an executor is set, see {@link #setExecutor(ExecutorService, long)}, the content of the entities is read, encoded
+ * and encrypted by the executor threads into separate spools, while the calling thread appends the completed spools
+ * in the same wide-wise order, so the archive is identical to the one written sequentially. The memory of the spools
+ * is bounded by the in-flight byte budget, the content exceeding the budget is spilled to temporary files. The large
+ * undecorated files aren't spooled at all, they are transferred by the calling thread when their turn comes, so they
+ * neither occupy the executor threads nor the budget.<br><br>
+ *
+ * If the mapped output is set, see {@link #setMappedOutput(boolean)}, the archive is appended through memory mappings
+ * by {@link MappedOutputChannel}. The content of an entity predicting its exact length is then read by
+ * {@link ArchiveEntity#getContent(ByteBuffer)} straight into the mapping.<br><br>
+ *
+ * If the direct output is set instead, see {@link #setDirectOutput(boolean)}, the archive is appended with the direct
+ * I/O by {@link DirectOutputChannel}, so it doesn't evict the page cache of the other processes. The file system
+ * must support the direct I/O, otherwise the archive is written as usual.<br><br>
+ *
+ * If the asynchronous output is set, see {@link #setAsyncOutput(int)}, the archive is written behind the writer by
+ * {@link AsyncOutputChannel} on a dedicated I/O thread, so the next window is read, encoded and encrypted while
+ * the previous one is being written. The writer waits for the written bytes only before it patches a size field,
+ * transfers the content of an undecorated file or reports an entity to a {@link Flusher}, which may force it before
+ * the end.<br><br>
+ *
+ * The archive isn't forced to the storage device unless the durability is set, see {@link #setDurability(Durability)}.
+ * The written entities are then reported to a {@link Flusher}, the index is forced together with the last group.
  */
 public class ArchiveTreeWriter extends AbstractTreeWriter {
 
+	private static final long SPOOL_MEMORY_LIMIT = 8 * 1024 * 1024;
+
+	// the exact content longer than this is transferred by an undecorated file instead of being copied through a window
+	private static final long TRANSFER_THRESHOLD = 64 * 1024;
+
+	// the part of the budget reserved for an entity that can't predict the length of its content
+	private static final long DEFAULT_RESERVATION = 1024 * 1024;
+
+	private static final int ASYNC_BUFFER_SIZE = 1024 * 1024;
+
+	/**
+	 * PendingEntity is an entity, whose content is being spooled by the executor, waiting to be appended.
+	 * @param name the relative path of the entity
+	 * @param pts the properties of the entity
+	 * @param children the number of children
+	 * @param reservation the part of the in-flight byte budget reserved for the entity
+	 * @param content the future spool of the content
+	 * @param transferred the entity whose content is transferred when it's appended instead of being spooled, or null
+	 * @param size the size of the transferred content
+	 */
+	private record PendingEntity(
+		String name,
+		ArchiveEntityProperty[] pts,
+		int children,
+		long reservation,
+		Future<ContentSpool> content,
+		ArchiveEntity transferred,
+		long size
+	) {}
+
 	private final Path archPath;
 
-	private ArchiveTreeWriter(Path archive) throws IOException {
+	private final boolean indexed;
+
+	private Path indexSpool;
+
+	private BufferedWriter indexWriter;
+
+	private long indexEntries = 0;
+
+	private final HeaderEncoder headerEncoder = new HeaderEncoder();
+
+	// the windows are borrowed from the pool and exchanged when the policy chooses a different size class
+	private ByteBuffer content;
+
+	private long blockSize = WindowPolicy.DEFAULT_BLOCK_SIZE;
+
+	private WritableByteChannel channel;
+
+	// null if the output isn't seekable
+	private FileChannel file;
+
+	private boolean mappedOutput = false;
+
+	// null unless the archive is appended through the mappings
+	private MappedOutputChannel mapped;
+
+	private boolean directOutput = false;
+
+	// null unless the archive is appended with the direct I/O
+	private DirectOutputChannel direct;
+
+	private int asyncBuffers = 0;
+
+	// null unless the archive is written behind the writer
+	private AsyncOutputChannel async;
+
+	private ContentSpool spool;
+
+	private ByteBuffer spoolWindow;
+
+	private long position;
+
+	private Durability durability = Durability.none();
+
+	private Flusher flusher;
+
+	private ExecutorService executor;
+
+	private long inFlightLimit;
+
+	private long inFlightBytes = 0;
+
+	private final ArrayDeque<PendingEntity> pending = new ArrayDeque<>();
+
+	private ArchiveTreeWriter(Path archive, boolean index) throws IOException {
 		assert archive != null;
 
 		archPath = archive;
-		writeArchiveMetadata();
+		indexed = index;
+		try (
+			WritableByteChannel wbc =
+				Files.newByteChannel(archPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)
+		) {
+			writeArchiveMetadata(wbc);
+		}
+	}
+
+	private ArchiveTreeWriter(WritableByteChannel output, boolean index) throws IOException {
+		assert output != null;
+
+		archPath = null;
+		indexed = index;
+		channel = output;
+		position = writeArchiveMetadata(output);
 	}
 
 	/**
@@ -55,50 +208,516 @@ public class ArchiveTreeWriter extends AbstractTreeWriter {
 		assert archive != null;
 		if (Files.exists(archive)) throw new IOException("The file " + archive + " already exists");
 
-		return new ArchiveTreeWriter(archive);
+		return new ArchiveTreeWriter(archive, false);
+	}
+
+	/**
+	 * Constructs a new instance of ArchiveTreeWriter, which optionally appends {@link ArchiveIndex} to the end of
+	 * the archive. Throws an IOException if the given path to a file already exists.
+	 * @param archive the path to a resulted archive
+	 * @param indexed true if the archive is to be indexed
+	 * @return a new instance of ArchiveTreeWriter
+	 * @throws IOException if the file already exists
+	 */
+	public static ArchiveTreeWriter getArchiveTreeWriter(Path archive, boolean indexed) throws IOException {
+		assert archive != null;
+		if (Files.exists(archive)) throw new IOException("The file " + archive + " already exists");
+
+		return new ArchiveTreeWriter(archive, indexed);
+	}
+
+	/**
+	 * Constructs a new instance of ArchiveTreeWriter writing the archive to the given channel, which needn't be
+	 * seekable. The metadata is written immediately. The channel isn't closed by the writer.
+	 * @param output the channel to write the archive to
+	 * @param indexed true if the archive is to be indexed
+	 * @return a new instance of ArchiveTreeWriter
+	 * @throws IOException if some I/O errors occur
+	 */
+	public static ArchiveTreeWriter getArchiveTreeWriter(
+		WritableByteChannel output,
+		boolean indexed
+	) throws IOException {
+		assert output != null;
+
+		return new ArchiveTreeWriter(output, indexed);
+	}
+
+	/**
+	 * Returns true if the archive is to be indexed.
+	 * @return true if the archive is to be indexed, otherwise false
+	 */
+	public boolean isIndexed() {
+		return indexed;
+	}
+
+	/**
+	 * Sets the executor to read, encode and encrypt the content of the entities in parallel. The archive is identical
+	 * to the one written sequentially. The executor isn't shut down by the writer.
+	 * @param executor the executor or null to write the entities sequentially on the calling thread
+	 * @param inFlightBytes the maximum number of bytes kept in memory by the entities, which have been submitted to
+	 * the executor but haven't been appended yet
+	 */
+	public void setExecutor(ExecutorService executor, long inFlightBytes) {
+		assert inFlightBytes > 0;
+
+		this.executor = executor;
+		inFlightLimit = inFlightBytes;
+	}
+
+	/**
+	 * Sets the moment the archive is forced to the storage device. The durability applies only to the archives written
+	 * to a path, the archive is never forced by default.
+	 * @param durability the durability
+	 */
+	public void setDurability(Durability durability) {
+		assert durability != null;
+
+		this.durability = durability;
+	}
+
+	/**
+	 * Sets the archive to be appended through memory mappings instead of the channel writes. The mapped output applies
+	 * only to the archives written to a path, it isn't used by default.
+	 * @param mapped true if the archive is to be appended through the mappings
+	 */
+	public void setMappedOutput(boolean mapped) {
+		mappedOutput = mapped;
+	}
+
+	/**
+	 * Sets the archive to be appended with the direct I/O bypassing the page cache. The direct output applies only to
+	 * the archives written to a path and replaces the mapped output. If the file system doesn't support the direct I/O,
+	 * the archive is written as usual. The direct output isn't used by default.
+	 * @param direct true if the archive is to be appended with the direct I/O
+	 */
+	public void setDirectOutput(boolean direct) {
+		directOutput = direct;
+	}
+
+	/**
+	 * Sets the archive to be written behind the writer on a dedicated I/O thread through the given number of 1 MiB
+	 * buffers, so the output overlaps with the reading and the encoding of the content. Two buffers are enough if
+	 * the writes and the encoding take about the same time, more buffers absorb the stalls of the storage device.
+	 * The asynchronous output doesn't apply to the mapped output, it isn't used by default.
+	 * @param buffers the number of buffers, at least 2, or 0 to write the archive on the calling thread
+	 */
+	public void setAsyncOutput(int buffers) {
+		assert buffers == 0 || buffers >= 2;
+
+		asyncBuffers = buffers;
+	}
+
+	@Override
+	protected void startWriting() throws IOException {
+		if (archPath != null) openArchive();
+		if (asyncBuffers > 0 && mapped == null) {
+			async = new AsyncOutputChannel(channel, asyncBuffers, ASYNC_BUFFER_SIZE);
+			channel = async;
+		}
+	}
+
+	private void openArchive() throws IOException {
+		blockSize = WindowPolicy.getBlockSize(archPath);
+		file = mappedOutput || directOutput ?
+			FileChannel.open(archPath, StandardOpenOption.READ, StandardOpenOption.WRITE) :
+			FileChannel.open(archPath, StandardOpenOption.WRITE);
+		if (durability.mode() != Durability.Mode.NONE) flusher = new Flusher(durability);
+		position = file.size();
+		file.position(position);
+		channel = file;
+		if (directOutput) {
+			direct = openDirect();
+			if (direct != null) channel = direct;
+			// the staged bytes are written through the page cache only right before they are forced
+			if (direct != null && flusher != null) flusher.setPreparation(direct::writeStaged);
+		} else if (mappedOutput) {
+			mapped = new MappedOutputChannel(file, position);
+			channel = mapped;
+		}
+	}
+
+	// returns null if the file system doesn't support the direct I/O
+	private DirectOutputChannel openDirect() {
+		if (Long.bitCount(blockSize) != 1 || blockSize > 64 * 1024) return null;
+		try {
+			return new DirectOutputChannel(archPath, file, position, (int) blockSize);
+		} catch (IOException | UnsupportedOperationException exception) {
+			// the file has been opened already, so the failure is caused by the direct I/O
+			return null;
+		}
 	}
 
+	// the size is known beforehand if the content fits in the buffer or its exact length is predicted, otherwise
+	// the size is patched in place after the content is written; undecorated files are transferred directly
 	@Override
 	protected void writeArchiveEntity(ArchiveEntity entity) throws IOException {
-		try (SeekableByteChannel sbc = Files.newByteChannel(archPath, StandardOpenOption.WRITE)) {
-			sbc.position(sbc.size());
-			ArchiveEntityProperty[] pts = entity.getProperties();
-			for (ArchiveEntityProperty property: pts) {
-				String ptLine = property.key() + " " + property.val() + "\n";
-				sbc.write(ByteBuffer.wrap(ptLine.getBytes()));
+		if (executor != null) {
+			submitEntity(entity);
+			return;
+		}
+
+		long headerOffset = position;
+		String relativeName = String.join("/", entity.getName());
+		int children = entity.getChildren().length;
+		ContentLength length = entity.getContentLength();
+		ContentLength predicted = length != null && length.exact() ? length : null;
+
+		if (mapped != null && predicted != null) {
+			mapEntity(entity, relativeName, entity.getProperties(), children, predicted);
+			return;
+		}
+		if (isTransferable(entity, predicted)) {
+			transferEntity(entity, relativeName, entity.getProperties(), children, predicted.bytes());
+			return;
+		}
+
+		content = fitWindow(content, getWindowPolicy().getWindowSize(length, blockSize));
+		content.clear();
+		boolean exhausted = fillContent(entity, content);
+		long size = content.position();
+		content.flip();
+		if (!exhausted && predicted == null && file == null) {
+			size += spoolContent(entity);
+			exhausted = true;
+		}
+		long headerSize = exhausted || predicted == null ? size : predicted.bytes();
+		ByteBuffer header = headerEncoder.encode(entity.getProperties(), relativeName, children, headerSize);
+		int sizeFieldOffset = headerEncoder.getSizeFieldOffset();
+		writeFully(header, content);
+		if (spool != null && spool.size() > 0) {
+			position += spool.size();
+			spool.transferTo(channel);
+		}
+
+		if (!exhausted) {
+			do {
+				content.clear();
+				exhausted = fillContent(entity, content);
+				size += content.position();
+				content.flip();
+				writeFully(content);
+			} while (!exhausted);
+			if (predicted == null) {
+				ByteBuffer sizeField = headerEncoder.encodeSize(size);
+				long sizeFieldPosition = headerOffset + sizeFieldOffset;
+				GlobalGovernor.getGlobalGovernor().acquire(sizeField.remaining(), 1);
+				if (async != null) async.drain();
+				while (sizeField.hasRemaining()) {
+					if (direct != null) sizeFieldPosition += direct.write(sizeField, sizeFieldPosition);
+					else sizeFieldPosition += file.write(sizeField, sizeFieldPosition);
+				}
+			} else if (size != predicted.bytes()) {
+				throw new IOException(
+					"The content of " + relativeName + " doesn't match its predicted length: " + size
+				);
+			}
+		}
+
+		entityWritten(new ArchiveIndex.Entry(relativeName, headerOffset, size, children));
+	}
+
+	@Override
+	protected void finishWriting(boolean completed) throws IOException {
+		boolean written = false;
+		try {
+			while (completed && !pending.isEmpty()) appendPending();
+			written = completed;
+		} finally {
+			try {
+				discardPending();
+				if (indexed) finishIndex(written);
+				// the file is truncated to the archive and the staged bytes are written before it's forced
+				if (async != null) async.close();
+				if (mapped != null) mapped.close();
+				if (direct != null) direct.close();
+				if (written && flusher != null) flusher.finish();
+				if (spool != null) spool.close();
+			} finally {
+				if (async != null) {
+					channel = async.getTarget();
+					try {
+						async.close();
+					} catch (IOException | RuntimeException exception) {
+						// the output has already failed, so the bytes written behind are of no use
+					}
+				}
+				async = null;
+				if (flusher != null) flusher.close();
+				flusher = null;
+				spool = null;
+				if (mapped != null) mapped.close();
+				mapped = null;
+				if (direct != null) direct.close();
+				direct = null;
+				if (content != null) BufferPool.getBufferPool().release(content);
+				if (spoolWindow != null) BufferPool.getBufferPool().release(spoolWindow);
+				content = null;
+				spoolWindow = null;
+				if (file != null) file.close();
+				file = null;
+				if (archPath != null) channel = null;
+			}
+		}
+	}
+
+	// the completed spools are appended as soon as possible, the calling thread waits only if the budget is exhausted;
+	// the transferred entities are appended only when the budget is exhausted, so the executor is kept busy meanwhile
+	private void submitEntity(ArchiveEntity entity) throws IOException {
+		ContentLength predicted = entity.getContentLength();
+		boolean transferable = isTransferable(entity, predicted);
+		long reservation = transferable ? 0 :
+			Math.min(predicted == null ? DEFAULT_RESERVATION : predicted.bytes(), inFlightLimit);
+		while (!pending.isEmpty()) {
+			Future<ContentSpool> head = pending.peek().content();
+			if ((head == null || !head.isDone()) && inFlightBytes + reservation <= inFlightLimit) break;
+			appendPending();
+		}
+
+		if (transferable) {
+			pending.add(new PendingEntity(
+				String.join("/", entity.getName()),
+				entity.getProperties(),
+				entity.getChildren().length,
+				0,
+				null,
+				entity,
+				predicted.bytes()
+			));
+			return;
+		}
+
+		Future<ContentSpool> content;
+		if (predicted != null && predicted.exact() && predicted.bytes() == 0) {
+			content = CompletableFuture.completedFuture(new ContentSpool(0));
+		} else {
+			int windowSize = getWindowPolicy().getWindowSize(predicted, blockSize);
+			content = executor.submit(() -> readContent(entity, reservation, windowSize));
+		}
+		inFlightBytes += reservation;
+		pending.add(new PendingEntity(
+			String.join("/", entity.getName()),
+			entity.getProperties(),
+			entity.getChildren().length,
+			reservation,
+			content,
+			null,
+			0
+		));
+	}
+
+	// invoked by the executor threads
+	private ContentSpool readContent(ArchiveEntity entity, long memoryLimit, int windowSize) throws IOException {
+		ContentSpool spool = new ContentSpool(memoryLimit);
+		ByteBuffer window = BufferPool.getBufferPool().acquire(windowSize);
+		try {
+			boolean exhausted;
+			do {
+				window.clear();
+				exhausted = fillContent(entity, window);
+				spool.write(window.flip());
+			} while (!exhausted);
+			return spool;
+		} catch (IOException | RuntimeException exception) {
+			spool.close();
+			throw exception;
+		} finally {
+			BufferPool.getBufferPool().release(window);
+		}
+	}
+
+	private void appendPending() throws IOException {
+		PendingEntity entity = pending.poll();
+		if (entity.transferred() != null) {
+			transferEntity(entity.transferred(), entity.name(), entity.pts(), entity.children(), entity.size());
+			return;
+		}
+		try (ContentSpool spool = await(entity.content())) {
+			long headerOffset = position;
+			long size = spool.size();
+			writeFully(headerEncoder.encode(entity.pts(), entity.name(), entity.children(), size));
+			spool.transferTo(channel);
+			position += size;
+			entityWritten(new ArchiveIndex.Entry(entity.name(), headerOffset, size, entity.children()));
+		} finally {
+			inFlightBytes -= entity.reservation();
+		}
+	}
+
+	// waits for the submitted entities to free their spools
+	private void discardPending() throws IOException {
+		while (!pending.isEmpty()) {
+			PendingEntity entity = pending.poll();
+			inFlightBytes -= entity.reservation();
+			if (entity.content() == null) continue;
+			try {
+				await(entity.content()).close();
+			} catch (IOException | RuntimeException exception) {
+				// the cause has been reported by the entity which failed first
+			}
+		}
+	}
+
+	private boolean isTransferable(ArchiveEntity entity, ContentLength predicted) {
+		return predicted != null && predicted.exact() && predicted.bytes() > TRANSFER_THRESHOLD &&
+			entity instanceof FileEntity;
+	}
+
+	// the size is known beforehand, so the content is transferred right after the header
+	private void transferEntity(
+		ArchiveEntity entity,
+		String name,
+		ArchiveEntityProperty[] pts,
+		int children,
+		long size
+	) throws IOException {
+		if (mapped != null) {
+			mapEntity(entity, name, pts, children, ContentLength.exactly(size));
+			return;
+		}
+		// the content is read up to the predicted length, so only a file which got shorter meanwhile can't fill it
+		ContentLength remaining = entity.getContentLength();
+		if (remaining == null || remaining.bytes() < size) {
+			throw new IOException("The content of " + name + " is shorter than its predicted length: " + size);
+		}
+		long headerOffset = position;
+		writeFully(headerEncoder.encode(pts, name, children, size));
+		// the content bypasses the buffers written behind, so they are written first
+		WritableByteChannel target = channel;
+		if (async != null) {
+			async.drain();
+			target = async.getTarget();
+		}
+		long transferred = entity.transferContentTo(target);
+		position += transferred;
+		if (transferred != size) {
+			throw new IOException("The content of " + name + " doesn't match its predicted length: " + transferred);
+		}
+		entityWritten(new ArchiveIndex.Entry(name, headerOffset, size, children));
+	}
+
+	// the size is known beforehand, so the content is read into the mapping right after the header in windows chosen by
+	// the policy
+	private void mapEntity(
+		ArchiveEntity entity,
+		String name,
+		ArchiveEntityProperty[] pts,
+		int children,
+		ContentLength predicted
+	) throws IOException {
+		long headerOffset = position;
+		long size = predicted.bytes();
+		writeFully(headerEncoder.encode(pts, name, children, size));
+		int windowSize = getWindowPolicy().getWindowSize(predicted, blockSize);
+		long written = 0;
+		boolean exhausted = false;
+		while (written < size && !exhausted) {
+			ByteBuffer view = mapped.view((int) Math.min(windowSize, size - written));
+			exhausted = fillContent(entity, view);
+			GlobalGovernor.getGlobalGovernor().acquire(view.position(), 1);
+			mapped.skip(view.position());
+			written += view.position();
+		}
+		position += written;
+		if (written != size || entity.hasRemainingContent()) {
+			throw new IOException("The content of " + name + " doesn't match its predicted length: " + written);
+		}
+		entityWritten(new ArchiveIndex.Entry(name, headerOffset, size, children));
+	}
+
+	// returns true if the entity has no content left
+	private boolean fillContent(ArchiveEntity entity, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (entity.getContent(buffer) <= 0) return true;
+		}
+		return false;
+	}
+
+	// reads the remaining content into the spool, returns the number of spooled bytes
+	private long spoolContent(ArchiveEntity entity) throws IOException {
+		if (spool == null) spool = new ContentSpool(SPOOL_MEMORY_LIMIT);
+		spoolWindow = fitWindow(spoolWindow, content.capacity());
+		boolean exhausted;
+		do {
+			spoolWindow.clear();
+			exhausted = fillContent(entity, spoolWindow);
+			spool.write(spoolWindow.flip());
+		} while (!exhausted);
+		return spool.size();
+	}
+
+	// the window is kept if its capacity is in the size class of the requested size, otherwise it's exchanged
+	private static ByteBuffer fitWindow(ByteBuffer window, int size) {
+		if (window != null && window.capacity() >= size && window.capacity() / 2 < size) return window;
+		if (window != null) BufferPool.getBufferPool().release(window);
+		return BufferPool.getBufferPool().acquire(size);
+	}
+
+	private void writeFully(ByteBuffer... buffers) throws IOException {
+		long length = 0;
+		for (ByteBuffer buffer: buffers) length += buffer.remaining();
+		GlobalGovernor.getGlobalGovernor().acquire(length, 1);
+		for (ByteBuffer buffer: buffers) {
+			while (buffer.hasRemaining()) {
+				if (channel instanceof GatheringByteChannel gbc) position += gbc.write(buffers);
+				else position += channel.write(buffer);
 			}
+		}
+	}
+
+	private void entityWritten(ArchiveIndex.Entry entry) throws IOException {
+		if (indexed) addIndexEntry(entry);
+		if (flusher == null) return;
+		// the archive is forced before the end only by the group commit and per entity
+		if (async != null && durability.mode() != Durability.Mode.END_OF_JOB) async.drain();
+		flusher.written(file, position - entry.offset());
+	}
 
-			sbc.write(ByteBuffer.wrap("class none\n".getBytes()));
-			String relativeName = String.join("/", entity.getName());
-			sbc.write(ByteBuffer.wrap(("filepath %s\n".formatted(relativeName)).getBytes()));
-			sbc.write(ByteBuffer.wrap(("children %d\n".formatted(entity.getChildren().length)).getBytes()));
-
-			long sizePos = sbc.position();
-			sbc.write(ByteBuffer.wrap("size %016x\n".formatted(10).getBytes()));
-			sbc.write(ByteBuffer.wrap(new byte[] {'\n'}));
-
-			long size = 0;
-			ByteBuffer buffer = ByteBuffer.allocate(8 * 1024);
-			while (entity.getContent(buffer) > 0) {
-				buffer.flip();
-				size += sbc.write(buffer);
-				buffer.clear();
+	private void finishIndex(boolean completed) throws IOException {
+		try {
+			if (indexWriter != null) indexWriter.close();
+			if (!completed) return;
+			long indexOffset = position;
+			writeFully(ByteBuffer.wrap(ArchiveIndex.encodeOpening(indexEntries).getBytes(StandardCharsets.UTF_8)));
+			if (indexSpool != null) {
+				try (FileChannel spool = FileChannel.open(indexSpool, StandardOpenOption.READ)) {
+					long transferred = 0;
+					while (transferred < spool.size()) {
+						transferred += spool.transferTo(transferred, spool.size() - transferred, channel);
+					}
+					position += transferred;
+				}
 			}
-			sbc.position(sizePos);
-			sbc.write(ByteBuffer.wrap("size %016x".formatted(size).getBytes()));
+			writeFully(
+				ByteBuffer.wrap(new byte[] {'\n'}),
+				ByteBuffer.wrap(ArchiveIndex.encodeTrailer(indexOffset).getBytes(StandardCharsets.UTF_8))
+			);
+		} finally {
+			indexWriter = null;
+			if (indexSpool != null) Files.deleteIfExists(indexSpool);
+			indexSpool = null;
+			indexEntries = 0;
 		}
 	}
 
-	private void writeArchiveMetadata() throws IOException {
+	private void addIndexEntry(ArchiveIndex.Entry entry) throws IOException {
+		if (indexWriter == null) {
+			indexSpool = Files.createTempFile("ardat-index", null);
+			indexWriter = Files.newBufferedWriter(indexSpool, StandardCharsets.UTF_8);
+		}
+		indexWriter.write(ArchiveIndex.encode(entry));
+		indexEntries++;
+	}
+
+	// returns the length of the metadata in bytes
+	private long writeArchiveMetadata(WritableByteChannel wbc) throws IOException {
 		Metadata.MetadataBuilder builder = Metadata.getBuilder();
 		builder.addProperty("version", "0.1");
 		builder.addProperty("origins", System.getProperty("os.name"));
+		if (indexed) builder.addProperty(ArchiveIndex.METADATA_KEY, ArchiveIndex.METADATA_VAL);
 		String meta = builder.build().toString() + "\n";
-		try(ByteChannel bc = Files.newByteChannel(archPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
-			ByteBuffer buffer = ByteBuffer.allocate(meta.length());
-			buffer.put(meta.getBytes());
-			buffer.flip();
-			bc.write(buffer);
-		}
+		ByteBuffer buffer = ByteBuffer.wrap(meta.getBytes(StandardCharsets.UTF_8));
+		while (buffer.hasRemaining()) wbc.write(buffer);
+		return buffer.capacity();
 	}
 }
@@ -0,0 +1,154 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ardat.tree.writer;
+
+import io.GlobalGovernor;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/**
+ * ContentSpool is a temporary storage for the content of an entity whose size isn't known until the content is read
+ * entirely. The content is kept in memory chunks up to the memory limit, the rest is spilled to a temporary file.
+ * The chunks and the file are reused by the subsequent entities and released on close. The last chunk is shortened
+ * so the chunks never exceed the memory limit, hence small limits don't waste memory.
+ */
+class ContentSpool implements Closeable {
+
+	private static final int CHUNK_SIZE = 64 * 1024;
+
+	private final long memoryLimit;
+
+	private final ArrayList<ByteBuffer> chunks = new ArrayList<>();
+
+	private int chunksUsed = 0;
+
+	private long memoryUsed = 0;
+
+	private Path spillPath;
+
+	private FileChannel spill;
+
+	private long size = 0;
+
+	/**
+	 * Constructs ContentSpool with the given memory limit.
+	 * @param memoryLimit the maximum number of bytes kept in memory
+	 */
+	ContentSpool(long memoryLimit) {
+		assert memoryLimit >= 0;
+
+		this.memoryLimit = memoryLimit;
+	}
+
+	/**
+	 * Appends the remaining bytes of the buffer.
+	 * @param src the buffer to append
+	 * @throws IOException if some I/O errors occur
+	 */
+	void write(ByteBuffer src) throws IOException {
+		while (src.hasRemaining()) {
+			ByteBuffer chunk = chunksUsed > 0 ? chunks.get(chunksUsed - 1) : null;
+			if (chunk == null || !chunk.hasRemaining()) {
+				if (memoryUsed >= memoryLimit) break;
+				if (chunksUsed == chunks.size()) {
+					chunks.add(ByteBuffer.allocate((int) Math.min(CHUNK_SIZE, memoryLimit - memoryUsed)));
+				}
+				chunk = chunks.get(chunksUsed++).clear();
+				memoryUsed += chunk.capacity();
+			}
+			int length = Math.min(chunk.remaining(), src.remaining());
+			chunk.put(chunk.position(), src, src.position(), length);
+			chunk.position(chunk.position() + length);
+			src.position(src.position() + length);
+			size += length;
+		}
+		if (!src.hasRemaining()) return;
+
+		if (spill == null) {
+			spillPath = Files.createTempFile("ardat-spool", null);
+			spill = FileChannel.open(spillPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		}
+		GlobalGovernor.getGlobalGovernor().acquire(src.remaining(), 1);
+		while (src.hasRemaining()) {
+			size += spill.write(src);
+		}
+	}
+
+	/**
+	 * Returns the number of spooled bytes.
+	 * @return the number of spooled bytes
+	 */
+	long size() {
+		return size;
+	}
+
+	/**
+	 * Writes all the spooled bytes to the target and empties the spool.
+	 * @param target the channel to write the bytes to
+	 * @throws IOException if some I/O errors occur
+	 */
+	void transferTo(WritableByteChannel target) throws IOException {
+		assert target != null;
+
+		GlobalGovernor governor = GlobalGovernor.getGlobalGovernor();
+		for (int i = 0; i < chunksUsed; i++) {
+			ByteBuffer chunk = chunks.get(i).flip();
+			governor.acquire(chunk.remaining(), 1);
+			while (chunk.hasRemaining()) target.write(chunk);
+		}
+		if (spill != null) {
+			long spilled = spill.position();
+			long transferred = 0;
+			while (transferred < spilled) {
+				// the spilled bytes are read and written, every transfer is at most one chunk
+				long count = Math.min(spilled - transferred, CHUNK_SIZE * 16);
+				governor.acquire(2 * count, 2);
+				transferred += spill.transferTo(transferred, count, target);
+			}
+			spill.truncate(0);
+			spill.position(0);
+		}
+		chunksUsed = 0;
+		memoryUsed = 0;
+		size = 0;
+	}
+
+	@Override
+	public void close() throws IOException {
+		chunks.clear();
+		chunksUsed = 0;
+		memoryUsed = 0;
+		size = 0;
+		try {
+			if (spill != null) spill.close();
+		} finally {
+			spill = null;
+			if (spillPath != null) Files.deleteIfExists(spillPath);
+			spillPath = null;
+		}
+	}
+}
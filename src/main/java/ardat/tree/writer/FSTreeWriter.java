@@ -21,28 +21,69 @@ package ardat.tree.writer;
 import ardat.tree.ArchiveEntity;
 import ardat.tree.ArchiveEntityProperty;
 
+import ardat.tree.ContentLength;
+import io.BufferPool;
+import io.Durability;
+import io.Flusher;
+import io.GlobalGovernor;
+
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributeView;
 import java.nio.file.attribute.FileTime;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingDeque;
 
 /**
  * FSTreeWriter is a concrete implementation of {@link AbstractTreeWriter} that performs the output operation on
- * the given tree into the file system.
+ * the given tree into the file system.<br><br>
+ *
+ * If an executor is set, see {@link #setExecutor(ExecutorService)}, the directories are created on the calling thread,
+ * while the files are decoded and written by the executor threads. The timestamps of the directories are applied
+ * after all the files are written.<br><br>
+ *
+ * If a scheduler is set instead, see {@link #setScheduler(SizeAwareScheduler)}, the files are collected until the whole
+ * tree is traversed and then written by the scheduler, the largest files first. The undecorated files larger than
+ * the split size are written in ranges by several workers at once.<br><br>
+ *
+ * The content of undecorated entities is copied from the archive by
+ * {@link ArchiveEntity#transferContentTo(WritableByteChannel)} without passing it through the heap, the decoded content
+ * is written in direct windows borrowed from {@link BufferPool} and sized by the window policy given the length of
+ * the file and the block size of the destination, see {@link #setWindowPolicy(WindowPolicy)}.<br><br>
+ *
+ * The files aren't forced to the storage device unless the durability is set, see {@link #setDurability(Durability)}.
+ * The directories aren't forced.
  */
 public class FSTreeWriter extends AbstractTreeWriter{
 
+	// bounds the number of the files submitted to the executor but not yet written
+	private static final int MAX_PENDING_FILES = 4096;
+
 	private final Path dst;
 
 	private final LinkedBlockingDeque<ArchiveEntity> branchEntities = new LinkedBlockingDeque<>();
 
 	private long entitiesLeft = 1;
 
+	private ExecutorService executor;
+
+	private final ArrayDeque<Future<?>> pendingFiles = new ArrayDeque<>();
+
+	private SizeAwareScheduler scheduler;
+
+	private Durability durability = Durability.none();
+
+	private Flusher flusher;
+
+	private long blockSize = WindowPolicy.DEFAULT_BLOCK_SIZE;
+
 	private FSTreeWriter(Path destination) {
 		assert destination != null;
 
@@ -62,37 +103,54 @@ public class FSTreeWriter extends AbstractTreeWriter{
 		return new FSTreeWriter(destination);
 	}
 
+	/**
+	 * Sets the executor to decode and write the files in parallel. The executor isn't shut down by the writer.
+	 * @param executor the executor or null to write the entities sequentially on the calling thread
+	 */
+	public void setExecutor(ExecutorService executor) {
+		this.executor = executor;
+		if (executor != null) scheduler = null;
+	}
+
+	/**
+	 * Sets the scheduler to write the files in parallel ordered by their sizes. The scheduler replaces the executor.
+	 * @param scheduler the scheduler or null to write the entities sequentially on the calling thread
+	 */
+	public void setScheduler(SizeAwareScheduler scheduler) {
+		this.scheduler = scheduler;
+		if (scheduler != null) executor = null;
+	}
+
+	/**
+	 * Sets the moment the written files are forced to the storage device. The files are never forced by default.
+	 * @param durability the durability
+	 */
+	public void setDurability(Durability durability) {
+		assert durability != null;
+
+		this.durability = durability;
+	}
+
 	@Override
 	protected void writeArchiveEntity(ArchiveEntity entity) throws IOException {
 		assert entity != null;
 
+		if (executor != null || scheduler != null) {
+			submitEntity(entity);
+			return;
+		}
+
 		entitiesLeft -= 1;
 		Path entityPath = Path.of(dst.toString(), entity.getName());
 		if (!entity.isLeaf()) {
 			Files.createDirectory(entityPath);
 		} else {
-			try(
-				WritableByteChannel wbc =
-					Files.newByteChannel(entityPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)
-			) {
-				ByteBuffer byteBuffer = ByteBuffer.allocate(8 * 1024);
-				while (entity.getContent(byteBuffer) > 0) {
-					byteBuffer.flip();
-					wbc.write(byteBuffer);
-					byteBuffer.clear();
-				}
-			}
+			writeFile(entityPath, entity);
 		}
 
 		if (entity.getChildren().length == 0) {
 			try {
-				ArchiveEntityProperty[] pts = entity.getProperties();
-				BasicFileAttributeView bfav = Files.getFileAttributeView(entityPath, BasicFileAttributeView.class);
-				bfav.setTimes(
-					FileTime.fromMillis(Long.parseLong(pts[find("modify-time", pts)].val())),
-					FileTime.fromMillis(Long.parseLong(pts[find("access-time", pts)].val())),
-					FileTime.fromMillis(Long.parseLong(pts[find("create-time", pts)].val()))
-				);
+				setTimes(entityPath, entity.getProperties());
 				if (entitiesLeft == 0) {
 					processBranches();
 				}
@@ -104,6 +162,143 @@ public class FSTreeWriter extends AbstractTreeWriter{
 		}
 	}
 
+	@Override
+	protected void startWriting() {
+		blockSize = WindowPolicy.getBlockSize(dst);
+		if (durability.mode() != Durability.Mode.NONE) flusher = new Flusher(durability);
+	}
+
+	@Override
+	protected void finishWriting(boolean completed) throws IOException {
+		try {
+			while (!pendingFiles.isEmpty()) await(pendingFiles.poll());
+			if (completed && scheduler != null) scheduler.run();
+			if (completed && (executor != null || scheduler != null)) {
+				try {
+					processBranches();
+				} catch (ArrayIndexOutOfBoundsException ignored) {
+				}
+				branchEntities.clear();
+			}
+			if (completed && flusher != null) flusher.finish();
+		} finally {
+			if (scheduler != null) scheduler.clear();
+			while (!pendingFiles.isEmpty()) {
+				try {
+					await(pendingFiles.poll());
+				} catch (IOException | RuntimeException ignored) {
+					// the failure of the first file has been reported
+				}
+			}
+			if (flusher != null) flusher.close();
+			flusher = null;
+		}
+	}
+
+	// the parents are created beforehand, because the entities are submitted wide-wise
+	private void submitEntity(ArchiveEntity entity) throws IOException {
+		Path entityPath = Path.of(dst.toString(), entity.getName());
+		if (!entity.isLeaf()) {
+			Files.createDirectory(entityPath);
+			if (entity.getChildren().length > 0) {
+				branchEntities.push(entity);
+				return;
+			}
+			setEntityTimes(entityPath, entity);
+			return;
+		}
+
+		if (scheduler != null) {
+			scheduleFile(entityPath, entity);
+			return;
+		}
+
+		while (!pendingFiles.isEmpty() && (pendingFiles.size() >= MAX_PENDING_FILES || pendingFiles.peek().isDone())) {
+			await(pendingFiles.poll());
+		}
+		pendingFiles.add(executor.submit(() -> {
+			writeFile(entityPath, entity);
+			setEntityTimes(entityPath, entity);
+			return null;
+		}));
+	}
+
+	// the file of an undecorated entity is created beforehand, and its ranges are transferred at their positions
+	private void scheduleFile(Path path, ArchiveEntity entity) throws IOException {
+		ContentLength length = entity.getContentLength();
+		long size = length == null ? 0 : length.bytes();
+		if (length == null || !length.exact() || !entity.isRangeTransferable()) {
+			scheduler.add(size, () -> {
+				writeFile(path, entity);
+				setEntityTimes(path, entity);
+			});
+			return;
+		}
+
+		FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE).close();
+		scheduler.add(size, (offset, count) -> {
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+				channel.position(offset);
+				if (entity.transferContentTo(channel, offset, count) != count) {
+					throw new IOException("The content of " + path + " ended unexpectedly");
+				}
+				if (flusher != null) flusher.written(channel, path, count);
+			}
+		}, () -> setEntityTimes(path, entity));
+	}
+
+	private void writeFile(Path path, ArchiveEntity entity) throws IOException {
+		ContentLength length = entity.getContentLength();
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+			long written;
+			if (entity.isRangeTransferable()) {
+				written = entity.transferContentTo(channel);
+			} else {
+				written = 0;
+				// the adaptive windows are aligned to the block size, so every write but the last is aligned
+				int windowSize = getWindowPolicy().getWindowSize(length, blockSize);
+				ByteBuffer window = BufferPool.getBufferPool().acquire(windowSize);
+				try {
+					boolean exhausted;
+					do {
+						window.clear();
+						exhausted = fillWindow(entity, window);
+						window.flip();
+						GlobalGovernor.getGlobalGovernor().acquire(window.remaining(), 1);
+						while (window.hasRemaining()) written += channel.write(window);
+					} while (!exhausted);
+				} finally {
+					BufferPool.getBufferPool().release(window);
+				}
+			}
+			if (flusher != null) flusher.written(channel, path, written);
+		}
+	}
+
+	// returns true if the entity has no content left
+	private static boolean fillWindow(ArchiveEntity entity, ByteBuffer window) throws IOException {
+		while (window.hasRemaining()) {
+			if (entity.getContent(window) <= 0) return true;
+		}
+		return false;
+	}
+
+	private void setEntityTimes(Path path, ArchiveEntity entity) throws IOException {
+		try {
+			setTimes(path, entity.getProperties());
+		} catch (ArrayIndexOutOfBoundsException ignored) {
+		}
+	}
+
+	private void setTimes(Path path, ArchiveEntityProperty[] pts) throws IOException {
+		BasicFileAttributeView bfav = Files.getFileAttributeView(path, BasicFileAttributeView.class);
+		bfav.setTimes(
+			FileTime.fromMillis(Long.parseLong(pts[find("modify-time", pts)].val())),
+			FileTime.fromMillis(Long.parseLong(pts[find("access-time", pts)].val())),
+			FileTime.fromMillis(Long.parseLong(pts[find("create-time", pts)].val()))
+		);
+	}
+
 	private int find(String key, ArchiveEntityProperty[] pts) {
 		int index = 0;
 		while (!pts[index].key().equals(key) && ++index < pts.length);
@@ -113,14 +308,7 @@ public class FSTreeWriter extends AbstractTreeWriter{
 	
 	private void processBranches() throws IOException {
 		for (ArchiveEntity dir : branchEntities) {
-			Path dirPath = Path.of(dst.toString(), dir.getName());
-			ArchiveEntityProperty[] pts = dir.getProperties();
-			BasicFileAttributeView bfav = Files.getFileAttributeView(dirPath, BasicFileAttributeView.class);
-			bfav.setTimes(
-				FileTime.fromMillis(Long.parseLong(pts[find("modify-time", pts)].val())),
-				FileTime.fromMillis(Long.parseLong(pts[find("access-time", pts)].val())),
-				FileTime.fromMillis(Long.parseLong(pts[find("create-time", pts)].val()))
-			);
+			setTimes(Path.of(dst.toString(), dir.getName()), dir.getProperties());
 		}
 	}
 }
@@ -0,0 +1,121 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ardat.tree.writer;
+
+import ardat.tree.ArchiveEntityProperty;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * HeaderEncoder encodes the headers of archive entities into a single reusable buffer, so a header is written to
+ * the archive with one operation instead of one operation per line. The buffer grows if a header doesn't fit in it.
+ * The size field is encoded as 16 hex digits, so it can be patched in place once the size of the content is known.
+ */
+class HeaderEncoder {
+
+	private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+	private ByteBuffer buffer = ByteBuffer.allocate(1024);
+
+	private final ByteBuffer sizeField = ByteBuffer.allocate(16);
+
+	private int sizeFieldOffset;
+
+	/**
+	 * Encodes the header into the reusable buffer.
+	 * @param pts the properties of the entity, including the class lines of the entity and its decorators
+	 * @param path the relative path of the entity
+	 * @param children the number of children
+	 * @param size the size of the content, it can be patched later using {@link #encodeSize(long)}
+	 * @return the buffer containing the header ready to be written, valid until the next invocation
+	 */
+	ByteBuffer encode(ArchiveEntityProperty[] pts, String path, int children, long size) {
+		assert pts != null && path != null && children >= 0 && size >= 0;
+
+		buffer.clear();
+		for (ArchiveEntityProperty property: pts) {
+			put(property.key());
+			put(' ');
+			put(property.val());
+			put('\n');
+		}
+		put("class none\nfilepath ");
+		put(path);
+		put("\nchildren ");
+		put(Integer.toString(children));
+		put("\nsize ");
+		sizeFieldOffset = buffer.position();
+		ensureRemaining(18);
+		buffer.put(encodeSize(size));
+		put("\n\n");
+
+		return buffer.flip();
+	}
+
+	/**
+	 * Returns the offset of the size digits relative to the beginning of the last encoded header.
+	 * @return the offset of the size digits
+	 */
+	int getSizeFieldOffset() {
+		return sizeFieldOffset;
+	}
+
+	/**
+	 * Encodes the given size as 16 hex digits into the reusable buffer.
+	 * @param size the size of the content
+	 * @return the buffer containing the digits, valid until the next invocation
+	 */
+	ByteBuffer encodeSize(long size) {
+		sizeField.clear();
+		for (int shift = 60; shift >= 0; shift -= 4) {
+			sizeField.put(HEX_DIGITS[(int) (size >>> shift) & 0xf]);
+		}
+		return sizeField.flip();
+	}
+
+	private void put(char c) {
+		ensureRemaining(1);
+		buffer.put((byte) c);
+	}
+
+	// ASCII is put as it is, anything else is encoded with UTF-8
+	private void put(String s) {
+		int start = buffer.position();
+		ensureRemaining(s.length());
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c >= 0x80) {
+				buffer.position(start);
+				byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+				ensureRemaining(bytes.length);
+				buffer.put(bytes);
+				return;
+			}
+			buffer.put((byte) c);
+		}
+	}
+
+	private void ensureRemaining(int length) {
+		if (buffer.remaining() >= length) return;
+		ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + length));
+		buffer.flip();
+		buffer = grown.put(buffer);
+	}
+}
@@ -0,0 +1,238 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ardat.tree.writer;
+
+import java.io.IOException;
+import java.io.Serial;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SizeAwareScheduler runs the tasks of an output operation on a {@link ForkJoinPool}. The tasks are collected first and
+ * started in the descending order of their sizes, so a huge task isn't started last, leaving the other workers idle
+ * until it ends. A task consisting of independent ranges is split into parts of at most the split size, the parts are
+ * forked into the queue of the worker and stolen by the idle workers.<br><br>
+ *
+ * The scheduler measures the makespan of every run, i.e. the time between the start of the first task and the end of
+ * the last one, and the time the workers were busy, see {@link Metrics}.
+ */
+public class SizeAwareScheduler {
+
+	/**
+	 * Metrics is a summary of the last run of the scheduler.
+	 * @param tasks the number of the scheduled tasks
+	 * @param parts the number of the executed ranges and unsplit tasks, the completions of the split tasks aren't
+	 * counted
+	 * @param workers the parallelism of the pool
+	 * @param makespanNanos the time between the start of the first task and the end of the last one in nanoseconds
+	 * @param busyNanos the total time the workers were executing the parts in nanoseconds, the completions of the split
+	 * tasks aren't included
+	 */
+	public record Metrics(int tasks, int parts, int workers, long makespanNanos, long busyNanos) {
+
+		/**
+		 * Returns the total time the workers weren't executing the parts during the makespan.
+		 * @return the idle time in nanoseconds
+		 */
+		public long idleNanos() {
+			return Math.max(workers * makespanNanos - busyNanos, 0);
+		}
+	}
+
+	/**
+	 * Action is a task or a part of a task.
+	 */
+	@FunctionalInterface
+	interface Action {
+		void run() throws IOException;
+	}
+
+	/**
+	 * RangeAction is a task, whose ranges can be processed independently.
+	 */
+	@FunctionalInterface
+	interface RangeAction {
+		void run(long offset, long count) throws IOException;
+	}
+
+	private record Entry(long size, RecursiveAction task) {}
+
+	private final ForkJoinPool pool;
+
+	private final long splitSize;
+
+	private final ArrayList<Entry> entries = new ArrayList<>();
+
+	private final LongAdder busy = new LongAdder();
+
+	private final LongAdder parts = new LongAdder();
+
+	private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+	private Metrics metrics;
+
+	/**
+	 * Constructs SizeAwareScheduler.
+	 * @param pool the pool to run the tasks, it isn't shut down by the scheduler
+	 * @param splitSize the maximum size of a part of a task
+	 */
+	public SizeAwareScheduler(ForkJoinPool pool, long splitSize) {
+		assert pool != null && splitSize > 0;
+
+		this.pool = pool;
+		this.splitSize = splitSize;
+	}
+
+	/**
+	 * Returns the metrics of the last run.
+	 * @return the metrics or null if the scheduler hasn't run yet
+	 */
+	public Metrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Adds a task, which can't be split.
+	 * @param size the size of the task
+	 * @param action the task
+	 */
+	void add(long size, Action action) {
+		assert action != null;
+
+		entries.add(new Entry(size, new RecursiveAction() {
+			@Override
+			protected void compute() {
+				execute(action);
+			}
+		}));
+	}
+
+	/**
+	 * Adds a task consisting of independent ranges. The completion is executed after all the ranges are processed.
+	 * @param size the size of the task
+	 * @param action the action processing a range
+	 * @param completion the action completing the task
+	 */
+	void add(long size, RangeAction action, Action completion) {
+		assert size >= 0 && action != null && completion != null;
+
+		entries.add(new Entry(size, new RecursiveAction() {
+			@Override
+			protected void compute() {
+				new RangeTask(action, 0, size).compute();
+				finish(completion);
+			}
+		}));
+	}
+
+	/**
+	 * Runs the added tasks and waits for them to end. The scheduler is emptied afterwards.
+	 * @throws IOException if some task failed with an IOException
+	 */
+	void run() throws IOException {
+		entries.sort(Comparator.comparingLong(Entry::size).reversed());
+		long start = System.nanoTime();
+		try {
+			for (Entry entry: entries) pool.execute(entry.task());
+			for (Entry entry: entries) entry.task().quietlyJoin();
+			metrics = new Metrics(
+				entries.size(),
+				parts.intValue(),
+				pool.getParallelism(),
+				System.nanoTime() - start,
+				busy.sum()
+			);
+		} finally {
+			entries.clear();
+			busy.reset();
+			parts.reset();
+		}
+
+		Throwable cause = failure.getAndSet(null);
+		if (cause instanceof IOException ioException) throw ioException;
+		if (cause instanceof RuntimeException runtimeException) throw runtimeException;
+		if (cause instanceof Error error) throw error;
+	}
+
+	/**
+	 * Discards the added tasks.
+	 */
+	void clear() {
+		entries.clear();
+	}
+
+	// the parts are skipped as soon as some part fails, the first failure is reported by run()
+	private void execute(Action action) {
+		if (failure.get() != null) return;
+		long start = System.nanoTime();
+		try {
+			perform(action);
+		} finally {
+			busy.add(System.nanoTime() - start);
+			parts.increment();
+		}
+	}
+
+	// the completion isn't a part, so it's neither counted nor measured
+	private void finish(Action completion) {
+		if (failure.get() != null) return;
+		perform(completion);
+	}
+
+	private void perform(Action action) {
+		try {
+			action.run();
+		} catch (IOException | RuntimeException | Error exception) {
+			failure.compareAndSet(null, exception);
+		}
+	}
+
+	// splits the range in halves aligned to the split size until the halves fit in the split size
+	private class RangeTask extends RecursiveAction {
+
+		@Serial
+		private static final long serialVersionUID = 1L;
+
+		private final RangeAction action;
+
+		private final long offset;
+
+		private final long count;
+
+		private RangeTask(RangeAction action, long offset, long count) {
+			this.action = action;
+			this.offset = offset;
+			this.count = count;
+		}
+
+		@Override
+		protected void compute() {
+			if (count <= splitSize) {
+				execute(() -> action.run(offset, count));
+				return;
+			}
+			long half = (count / splitSize + 1) / 2 * splitSize;
+			invokeAll(new RangeTask(action, offset, half), new RangeTask(action, offset + half, count - half));
+		}
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ardat.tree.writer;
+
+import ardat.tree.ContentLength;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * WindowPolicy chooses the size of the window the writers copy the content of an entity through, see
+ * {@link AbstractTreeWriter#setWindowPolicy(WindowPolicy)}. The size is chosen for every entity given the predicted
+ * length of its content and the block size of the file store the writer writes to.<br><br>
+ *
+ * The adaptive policy reads the content of small entities in a single window and copies the large ones in windows of
+ * several MiB, every window is aligned to the block size. The fixed policy always uses the same size.
+ */
+public interface WindowPolicy {
+
+	/**
+	 * The block size assumed if the file store doesn't report one.
+	 */
+	long DEFAULT_BLOCK_SIZE = 4096;
+
+	/**
+	 * Returns the size of the window to copy the content of an entity through.
+	 * @param length the predicted length of the content or null if it can't be predicted
+	 * @param blockSize the block size of the file store the content is written to
+	 * @return the size of the window in bytes
+	 */
+	int getWindowSize(ContentLength length, long blockSize);
+
+	/**
+	 * Returns the policy choosing the window size by the length of the content. The content up to 1 MiB is read in
+	 * a single window one byte longer than the content, so its end is seen by the same read. The longer content is
+	 * copied in 1 MiB windows, and the content of 64 MiB and more in 4 MiB windows. The content of unknown length is
+	 * copied in 1 MiB windows.
+	 * @return the adaptive policy
+	 */
+	static WindowPolicy adaptive() {
+		return WindowPolicy::getAdaptiveWindowSize;
+	}
+
+	/**
+	 * Returns the policy choosing the same window size for every entity.
+	 * @param size the size of the window in bytes
+	 * @return the fixed policy
+	 */
+	static WindowPolicy fixed(int size) {
+		assert size > 0;
+
+		return (length, blockSize) -> size;
+	}
+
+	/**
+	 * Returns the block size of the file store the given file or directory is located in.
+	 * @param path the file or directory
+	 * @return the block size or {@link #DEFAULT_BLOCK_SIZE} if the file store doesn't report it
+	 */
+	static long getBlockSize(Path path) {
+		assert path != null;
+
+		try {
+			long blockSize = Files.getFileStore(path).getBlockSize();
+			return blockSize > 0 ? blockSize : DEFAULT_BLOCK_SIZE;
+		} catch (IOException | UnsupportedOperationException exception) {
+			return DEFAULT_BLOCK_SIZE;
+		}
+	}
+
+	private static int getAdaptiveWindowSize(ContentLength length, long blockSize) {
+		long window;
+		if (length == null) window = 1024 * 1024;
+		else if (length.bytes() < 1024 * 1024) window = length.bytes() + 1;
+		else if (length.bytes() < 64 * 1024 * 1024) window = 1024 * 1024;
+		else window = 4 * 1024 * 1024;
+
+		long block = blockSize > 0 && blockSize <= 1024 * 1024 ? blockSize : DEFAULT_BLOCK_SIZE;
+		return (int) ((window + block - 1) / block * block);
+	}
+}
@@ -0,0 +1,189 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * AsyncOutputChannel is a {@link WritableByteChannel} that writes the bytes to the target channel behind the client on
+ * a dedicated I/O thread, so the client produces the next bytes while the previous ones are being written. The bytes
+ * are copied into one of the given number of buffers borrowed from {@link BufferPool}, a full buffer is handed to
+ * the I/O thread and the client continues with the next one. The client waits only if all the buffers are being
+ * written, so two buffers give the double buffering and three buffers the triple buffering.<br><br>
+ *
+ * The target is written in the order of the writes. Before the client accesses the target in another way, e.g.
+ * overwrites the written bytes or forces them, it must wait for the written bytes by {@link #drain()}. The failure of
+ * a write is rethrown by the next write, {@link #drain()} or {@link #close()}. The target isn't closed by
+ * AsyncOutputChannel.
+ */
+public class AsyncOutputChannel implements WritableByteChannel {
+
+	/**
+	 * Block is a buffer handed to the I/O thread.
+	 * @param buffer the buffer
+	 * @param task the future completed once the buffer is written
+	 */
+	private record Block(ByteBuffer buffer, Future<?> task) {}
+
+	private final WritableByteChannel target;
+
+	private final ExecutorService writer;
+
+	private final int bufferSize;
+
+	private final ArrayDeque<ByteBuffer> free = new ArrayDeque<>();
+
+	private final ArrayDeque<Block> written = new ArrayDeque<>();
+
+	// null until the first byte is written after the previous buffer was handed to the I/O thread
+	private ByteBuffer current;
+
+	private boolean open = true;
+
+	/**
+	 * Constructs an AsyncOutputChannel writing to the given channel through the given number of buffers.
+	 * @param target the channel to write the bytes to
+	 * @param buffers the number of buffers, at least 2
+	 * @param bufferSize the size of every buffer in bytes
+	 */
+	public AsyncOutputChannel(WritableByteChannel target, int buffers, int bufferSize) {
+		assert target != null && buffers >= 2 && bufferSize > 0;
+
+		this.target = target;
+		this.bufferSize = bufferSize;
+		writer = Executors.newSingleThreadExecutor(task -> {
+			Thread thread = new Thread(task, "ardat-async-output");
+			thread.setDaemon(true);
+			return thread;
+		});
+		for (int i = 0; i < buffers; i++) free.add(BufferPool.getBufferPool().acquire(bufferSize));
+	}
+
+	/**
+	 * Returns the channel the bytes are written to.
+	 * @return the target channel
+	 */
+	public WritableByteChannel getTarget() {
+		return target;
+	}
+
+	@Override
+	public int write(ByteBuffer byteBuffer) throws IOException {
+		assert byteBuffer != null;
+		if (!open) throw new ClosedChannelException();
+
+		int accepted = 0;
+		while (byteBuffer.hasRemaining()) {
+			if (current == null) current = takeBuffer();
+			accepted += Buffers.transfer(byteBuffer, current);
+			if (!current.hasRemaining()) handOver();
+		}
+		return accepted;
+	}
+
+	/**
+	 * Hands the partially filled buffer to the I/O thread and waits until all the bytes are written to the target.
+	 * @throws IOException if some I/O errors occur
+	 */
+	public void drain() throws IOException {
+		if (!open) throw new ClosedChannelException();
+
+		if (current != null && current.position() > 0) handOver();
+		while (!written.isEmpty()) free.add(awaitBlock());
+	}
+
+	@Override
+	public boolean isOpen() {
+		return open;
+	}
+
+	/**
+	 * Writes the remaining bytes to the target, stops the I/O thread and returns the buffers to the pool. The buffers
+	 * are returned even if a write failed.
+	 * @throws IOException if some I/O errors occur
+	 */
+	@Override
+	public void close() throws IOException {
+		if (!open) return;
+		try {
+			drain();
+		} finally {
+			open = false;
+			// the buffers still being written are returned only after the I/O thread stops using them
+			while (!written.isEmpty()) {
+				try {
+					free.add(awaitBlock());
+				} catch (InterruptedIOException exception) {
+					// the buffers still being written are left to the garbage collector
+					written.clear();
+				} catch (IOException | RuntimeException ignored) {
+				}
+			}
+			writer.shutdown();
+			if (current != null) free.add(current);
+			current = null;
+			for (ByteBuffer buffer: free) BufferPool.getBufferPool().release(buffer);
+			free.clear();
+		}
+	}
+
+	// waits for the oldest buffer handed to the I/O thread if all the buffers are being written
+	private ByteBuffer takeBuffer() throws IOException {
+		ByteBuffer buffer = free.isEmpty() ? awaitBlock() : free.poll();
+		return buffer.clear().limit(bufferSize);
+	}
+
+	private void handOver() {
+		ByteBuffer buffer = current.flip();
+		current = null;
+		written.add(new Block(buffer, writer.submit(() -> {
+			while (buffer.hasRemaining()) target.write(buffer);
+			return null;
+		})));
+	}
+
+	// the buffer is returned to the client even if its write failed, so it can be released
+	private ByteBuffer awaitBlock() throws IOException {
+		Block block = written.poll();
+		try {
+			block.task().get();
+			return block.buffer();
+		} catch (InterruptedException exception) {
+			Thread.currentThread().interrupt();
+			written.addFirst(block);
+			throw new InterruptedIOException("Interrupted while waiting for the write");
+		} catch (ExecutionException exception) {
+			free.add(block.buffer());
+			Throwable cause = exception.getCause();
+			if (cause instanceof IOException ioException) throw ioException;
+			if (cause instanceof RuntimeException runtimeException) throw runtimeException;
+			if (cause instanceof Error error) throw error;
+			throw new IOException(cause);
+		}
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * BufferPool is a global object that lends direct buffers to the processors and the writers of the current job.
+ * The buffers are grouped in size classes, every class is a power of two from 512 bytes to 4 MiB. A borrowed buffer
+ * has the capacity of its class, but its limit is set to the requested size.<br><br>
+ *
+ * A returned buffer is kept for the next borrower unless its class already keeps 4 MiB or 64 buffers, the buffers
+ * larger than the largest class aren't kept at all. Direct buffers let the channels read and write them without
+ * copying the bytes into a temporary direct buffer first.
+ */
+public class BufferPool {
+
+	private static final int MIN_CLASS_SHIFT = 9;
+
+	private static final int MAX_CLASS_SHIFT = 22;
+
+	private static final long MAX_CLASS_BYTES = 4 * 1024 * 1024;
+
+	private static final int MAX_CLASS_BUFFERS = 64;
+
+	private static final BufferPool instance = new BufferPool();
+
+	private final ArrayDeque<ByteBuffer>[] classes;
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private BufferPool() {
+		classes = new ArrayDeque[MAX_CLASS_SHIFT - MIN_CLASS_SHIFT + 1];
+		for (int i = 0; i < classes.length; i++) classes[i] = new ArrayDeque<>();
+	}
+
+	/**
+	 * Returns the BufferPool object.
+	 * @return the BufferPool object
+	 */
+	public static BufferPool getBufferPool() {
+		return instance;
+	}
+
+	/**
+	 * Borrows a direct buffer of at least the given size. The position of the buffer is 0 and the limit is the size.
+	 * @param size the size of the buffer
+	 * @return the borrowed buffer
+	 */
+	public ByteBuffer acquire(int size) {
+		assert size >= 0;
+
+		int shift = Math.max(MIN_CLASS_SHIFT, 32 - Integer.numberOfLeadingZeros(Math.max(size, 1) - 1));
+		if (shift > MAX_CLASS_SHIFT) return ByteBuffer.allocateDirect(size);
+
+		ArrayDeque<ByteBuffer> pooled = classes[shift - MIN_CLASS_SHIFT];
+		ByteBuffer buffer;
+		synchronized (pooled) {
+			buffer = pooled.poll();
+		}
+		if (buffer == null) buffer = ByteBuffer.allocateDirect(1 << shift);
+		return buffer.clear().limit(size);
+	}
+
+	/**
+	 * Returns the borrowed buffer to the pool. The buffer mustn't be used after it's returned. The buffers that weren't
+	 * borrowed from the pool are ignored.
+	 * @param buffer the borrowed buffer
+	 */
+	public void release(ByteBuffer buffer) {
+		assert buffer != null;
+
+		int capacity = buffer.capacity();
+		if (!buffer.isDirect() || Integer.bitCount(capacity) != 1) return;
+		int shift = Integer.numberOfTrailingZeros(capacity);
+		if (shift < MIN_CLASS_SHIFT || shift > MAX_CLASS_SHIFT) return;
+
+		ArrayDeque<ByteBuffer> pooled = classes[shift - MIN_CLASS_SHIFT];
+		synchronized (pooled) {
+			if (pooled.size() < MAX_CLASS_BUFFERS && (long) (pooled.size() + 1) * capacity <= MAX_CLASS_BYTES) {
+				pooled.push(buffer);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of bytes kept by the pool for the next borrowers.
+	 * @return the number of kept bytes
+	 */
+	public long getPooledBytes() {
+		long bytes = 0;
+		for (ArrayDeque<ByteBuffer> pooled: classes) {
+			synchronized (pooled) {
+				for (ByteBuffer buffer: pooled) bytes += buffer.capacity();
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * Drops the kept buffers, so their memory is freed once they are collected.
+	 */
+	public void clear() {
+		for (ArrayDeque<ByteBuffer> pooled: classes) {
+			synchronized (pooled) {
+				pooled.clear();
+			}
+		}
+	}
+}
@@ -18,9 +18,35 @@
 
 package io;
 
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 
 public class Buffers {
+
+	// sun.misc.Unsafe#invokeCleaner(ByteBuffer), or null if it isn't accessible
+	private static final Object UNSAFE;
+
+	private static final Method INVOKE_CLEANER;
+
+	static {
+		Object unsafe = null;
+		Method invokeCleaner = null;
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field field = unsafeClass.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			unsafe = field.get(null);
+			invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+		} catch (ReflectiveOperationException | RuntimeException ignored) {
+			unsafe = null;
+			invokeCleaner = null;
+		}
+		UNSAFE = unsafe;
+		INVOKE_CLEANER = invokeCleaner;
+	}
+
 	public static int transfer(ByteBuffer in, ByteBuffer out) {
 		int transferred = Math.min(in.remaining(), out.remaining());
 		int inLimit = in.limit();
@@ -28,4 +54,23 @@ public class Buffers {
 		in.limit(inLimit);
 		return transferred;
 	}
+
+	/**
+	 * Releases the mapping immediately instead of waiting for the buffer to be collected. The buffer and all its views
+	 * mustn't be accessed afterwards. If the cleaner isn't accessible, the mapping is released when the buffer is
+	 * collected.
+	 * @param buffer the buffer returned by {@link java.nio.channels.FileChannel#map}
+	 * @return true if the mapping was released, otherwise false
+	 */
+	public static boolean unmap(MappedByteBuffer buffer) {
+		assert buffer != null;
+
+		if (INVOKE_CLEANER == null) return false;
+		try {
+			INVOKE_CLEANER.invoke(UNSAFE, buffer);
+			return true;
+		} catch (ReflectiveOperationException | RuntimeException exception) {
+			return false;
+		}
+	}
 }
@@ -18,12 +18,12 @@
 
 package io;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.CharBuffer;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.SeekableByteChannel;
-import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Channels is a class containing static methods related to channels.
@@ -40,27 +40,27 @@ public class Channels {
 	/**
 	 * Attempts to read a line from the given channel. The position of the channel is moved forward by the length of the
 	 * return line plus a line feeder. If the length of the line is equal to maxSize but didn't reach a line feeder,
-	 * the method moves the position of the channel by the length of this line.
+	 * the method moves the position of the channel by the length of this line. The line is decoded as UTF-8 and its
+	 * length is measured in bytes.
 	 * @param channel the channel to read a line from
-	 * @param maxSize the maximum length of the line
+	 * @param maxSize the maximum length of the line in bytes
 	 * @return the line or null if it's the end of the channel
 	 * @throws IOException If some I/O error occurs
 	 */
 	public static String readLine(ReadableByteChannel channel, int maxSize) throws IOException {
 		assert channel != null && maxSize > 0;
 
-		StringBuilder lineBuilder = new StringBuilder();
-		String line = null;
+		ByteArrayOutputStream lineBytes = new ByteArrayOutputStream();
 		ByteBuffer buffer = ByteBuffer.allocate(1);
-		while (channel.read(buffer) > 0) {
-			buffer.flip();
-			if (buffer.get(0) == '\n' || maxSize == lineBuilder.length()) break;
-			lineBuilder.append(Character.toChars(buffer.get(0)));
-			line = lineBuilder.toString();
+		boolean read = false;
+		while (lineBytes.size() < maxSize && channel.read(buffer) > 0) {
+			read = true;
+			if (buffer.get(0) == '\n') break;
+			lineBytes.write(buffer.get(0));
 			buffer.clear();
 		}
 
-		return line;
+		return read ? lineBytes.toString(StandardCharsets.UTF_8) : null;
 	}
 
 	/**
@@ -72,36 +72,45 @@ public class Channels {
 
 	/**
 	 * The invocation is analogous to {@link Channels#readLine(ReadableByteChannel, int)}, with the exception that it
-	 * reads the data in a bulk potentially improving the performance.
+	 * reads the data in a bulk potentially improving the performance. The bytes are scanned for a line feeder as they
+	 * are and decoded only once, when the line is complete.
 	 * @param channel the channel to read a line from
-	 * @param maxSize the maximum length of the line
+	 * @param maxSize the maximum length of the line in bytes
 	 * @return the line or null if it's the end of the channel
 	 * @throws IOException If some I/O error occurs
 	 */
 	public static String readLine(SeekableByteChannel channel, int maxSize) throws IOException {
 		assert channel != null && maxSize > 0;
 
-		StringBuilder lineBuilder = new StringBuilder();
-		String line = null;
-		ByteBuffer byteBuffer = ByteBuffer.allocate(512);
+		long start = channel.position();
+		ByteArrayOutputStream lineBytes = new ByteArrayOutputStream();
+		ByteBuffer byteBuffer = ByteBuffer.allocate(Math.min(512, maxSize));
+		boolean read = false;
 		while (channel.read(byteBuffer) > 0) {
+			read = true;
 			byteBuffer.flip();
-			CharBuffer charBuffer = Charset.defaultCharset().decode(byteBuffer);
+			int lfIndex = -1;
+			for (int i = 0; i < byteBuffer.limit(); i++) {
+				if (byteBuffer.get(i) == '\n') {
+					lfIndex = i;
+					break;
+				}
+			}
 
-			int lfIndex = charBuffer.toString().indexOf('\n');
 			if (lfIndex > -1) {
-				lineBuilder.append(charBuffer, 0, lfIndex);
-				channel.position(channel.position() - byteBuffer.limit() + lfIndex + 1);
-				line = lineBuilder.toString();
-				break;
+				lineBytes.write(byteBuffer.array(), 0, lfIndex);
+				channel.position(start + lineBytes.size() + 1);
+				return lineBytes.toString(StandardCharsets.UTF_8);
 			}
 
-			lineBuilder.append(charBuffer);
-			line = lineBuilder.toString();
+			lineBytes.write(byteBuffer.array(), 0, byteBuffer.limit());
 			byteBuffer.clear();
-			byteBuffer.limit(Math.min(byteBuffer.capacity(), maxSize - lineBuilder.length()));
+			byteBuffer.limit(Math.min(byteBuffer.capacity(), maxSize - lineBytes.size()));
+			if (!byteBuffer.hasRemaining()) break;
 		}
 
-		return line;
+		if (!read) return null;
+		channel.position(start + lineBytes.size());
+		return lineBytes.toString(StandardCharsets.UTF_8);
 	}
 }
@@ -0,0 +1,189 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io;
+
+import com.sun.nio.file.ExtendedOpenOption;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * DirectOutputChannel is a {@link WritableByteChannel} that appends the bytes to a file with the direct I/O, see
+ * {@link ExtendedOpenOption#DIRECT}, so the written bytes bypass the page cache. The direct writes must start at
+ * the block boundaries and consist of whole blocks, so the bytes are staged in an aligned 1 MiB buffer borrowed from
+ * {@link BufferPool} and written once it's full. The partial block at the end is written through the buffered channel
+ * when the channel is closed, and the block preceding the first appended byte is read back through it.<br><br>
+ *
+ * The bytes already appended can be overwritten by {@link #write(ByteBuffer, long)}, the staged ones are overwritten
+ * in the buffer. The bytes staged but not yet written can be written through the buffered channel by
+ * {@link #writeStaged()}, so they can be forced, e.g. by another thread. The buffered channel isn't closed by
+ * DirectOutputChannel.
+ */
+public class DirectOutputChannel implements WritableByteChannel {
+
+	private static final int STAGE_SIZE = 1024 * 1024;
+
+	private final FileChannel buffered;
+
+	private final FileChannel direct;
+
+	private final int blockSize;
+
+	private final ByteBuffer pooled;
+
+	// the aligned part of the pooled buffer containing the bytes from the stage offset up to the position
+	private final ByteBuffer stage;
+
+	private long stageOffset;
+
+	private boolean open = true;
+
+	/**
+	 * Opens the given file for the direct I/O and constructs a DirectOutputChannel appending to it from the given
+	 * position.
+	 * @param path the path of the file
+	 * @param buffered the buffered channel of the file opened for reading and writing
+	 * @param position the position of the first appended byte
+	 * @param blockSize the block size of the file store
+	 * @throws IOException if the file can't be opened for the direct I/O or some I/O errors occur
+	 * @throws UnsupportedOperationException if the direct I/O isn't supported
+	 */
+	public DirectOutputChannel(Path path, FileChannel buffered, long position, int blockSize) throws IOException {
+		assert path != null && buffered != null && position >= 0;
+		assert blockSize > 0 && Integer.bitCount(blockSize) == 1 && blockSize <= STAGE_SIZE / 2;
+
+		this.buffered = buffered;
+		this.blockSize = blockSize;
+		direct = FileChannel.open(path, StandardOpenOption.WRITE, ExtendedOpenOption.DIRECT);
+		pooled = BufferPool.getBufferPool().acquire(STAGE_SIZE);
+		try {
+			ByteBuffer aligned = pooled.clear().alignedSlice(blockSize);
+			stage = aligned.limit(aligned.capacity() - aligned.capacity() % blockSize).slice();
+			stageOffset = position - position % blockSize;
+			stage.limit((int) (position - stageOffset));
+			while (stage.hasRemaining()) {
+				if (buffered.read(stage, stageOffset + stage.position()) <= 0) throw new IOException("Unexpected end");
+			}
+			stage.limit(stage.capacity());
+		} catch (IOException | RuntimeException exception) {
+			BufferPool.getBufferPool().release(pooled);
+			direct.close();
+			throw exception;
+		}
+	}
+
+	@Override
+	public synchronized int write(ByteBuffer byteBuffer) throws IOException {
+		assert byteBuffer != null;
+		if (!open) throw new ClosedChannelException();
+
+		int written = 0;
+		while (byteBuffer.hasRemaining()) {
+			written += Buffers.transfer(byteBuffer, stage);
+			if (!stage.hasRemaining()) writeStage();
+		}
+		return written;
+	}
+
+	/**
+	 * Overwrites the bytes already appended at the given position. The position of the channel isn't moved.
+	 * @param byteBuffer the bytes
+	 * @param position the position of the first overwritten byte
+	 * @return the number of written bytes
+	 * @throws IOException if some I/O errors occur
+	 */
+	public synchronized int write(ByteBuffer byteBuffer, long position) throws IOException {
+		assert byteBuffer != null && position >= 0 && position + byteBuffer.remaining() <= position();
+		if (!open) throw new ClosedChannelException();
+
+		int written = 0;
+		while (byteBuffer.hasRemaining() && position + written < stageOffset) {
+			int limit = byteBuffer.limit();
+			byteBuffer.limit(byteBuffer.position() + (int) Math.min(byteBuffer.remaining(), stageOffset - position));
+			written += buffered.write(byteBuffer, position + written);
+			byteBuffer.limit(limit);
+		}
+		if (byteBuffer.hasRemaining()) {
+			int length = byteBuffer.remaining();
+			stage.put((int) (position + written - stageOffset), byteBuffer, byteBuffer.position(), length);
+			byteBuffer.position(byteBuffer.limit());
+			written += length;
+		}
+		return written;
+	}
+
+	/**
+	 * Writes the staged bytes through the buffered channel, so they can be forced. The bytes stay staged and are
+	 * written again with the direct I/O once their block is full. If the channel is closed, nothing is staged.
+	 * @throws IOException if some I/O errors occur
+	 */
+	public synchronized void writeStaged() throws IOException {
+		if (!open) return;
+
+		ByteBuffer staged = stage.duplicate().flip();
+		while (staged.hasRemaining()) buffered.write(staged, stageOffset + staged.position());
+	}
+
+	/**
+	 * Returns the position of the next appended byte.
+	 * @return the position
+	 */
+	public synchronized long position() {
+		return stageOffset + stage.position();
+	}
+
+	@Override
+	public synchronized boolean isOpen() {
+		return open;
+	}
+
+	/**
+	 * Writes the staged bytes, the whole blocks with the direct I/O and the partial block through the buffered channel,
+	 * and returns the buffer to the pool.
+	 * @throws IOException if some I/O errors occur
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (!open) return;
+		try {
+			int partial = stage.position() % blockSize;
+			int whole = stage.position() - partial;
+			ByteBuffer blocks = stage.duplicate().position(0).limit(whole);
+			while (blocks.hasRemaining()) direct.write(blocks, stageOffset + blocks.position());
+			ByteBuffer tail = stage.duplicate().position(whole).limit(whole + partial);
+			while (tail.hasRemaining()) buffered.write(tail, stageOffset + tail.position());
+		} finally {
+			open = false;
+			BufferPool.getBufferPool().release(pooled);
+			direct.close();
+		}
+	}
+
+	private void writeStage() throws IOException {
+		ByteBuffer blocks = stage.flip();
+		while (blocks.hasRemaining()) direct.write(blocks, stageOffset + blocks.position());
+		stageOffset += stage.limit();
+		stage.clear();
+	}
+}
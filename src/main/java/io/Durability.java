@@ -0,0 +1,91 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io;
+
+/**
+ * Durability defines when the written data is forced to the storage device, see {@link Flusher}.
+ * @param mode the durability mode
+ * @param groupBytes the number of written bytes triggering a group commit
+ * @param groupMillis the maximum delay of a group commit in milliseconds
+ */
+public record Durability(Mode mode, long groupBytes, long groupMillis) {
+
+	/**
+	 * Mode is the moment the written data is forced.
+	 */
+	public enum Mode {
+		/**
+		 * The data is never forced, it's written back by the operating system.
+		 */
+		NONE,
+		/**
+		 * The data is forced once after the whole output operation.
+		 */
+		END_OF_JOB,
+		/**
+		 * The data is forced by a background thread every time enough bytes are written or enough time has passed.
+		 */
+		GROUP_COMMIT,
+		/**
+		 * The data is forced after every entity.
+		 */
+		PER_ENTITY
+	}
+
+	/**
+	 * Forbids non-positive thresholds of the group commit.
+	 */
+	public Durability {
+		assert mode != null && (mode != Mode.GROUP_COMMIT || (groupBytes > 0 && groupMillis > 0));
+	}
+
+	/**
+	 * Constructs Durability, which never forces the data.
+	 * @return a new Durability
+	 */
+	public static Durability none() {
+		return new Durability(Mode.NONE, 0, 0);
+	}
+
+	/**
+	 * Constructs Durability, which forces the data after the output operation.
+	 * @return a new Durability
+	 */
+	public static Durability endOfJob() {
+		return new Durability(Mode.END_OF_JOB, 0, 0);
+	}
+
+	/**
+	 * Constructs Durability, which forces the data in groups.
+	 * @param groupBytes the number of written bytes triggering a group commit
+	 * @param groupMillis the maximum delay of a group commit in milliseconds
+	 * @return a new Durability
+	 */
+	public static Durability groupCommit(long groupBytes, long groupMillis) {
+		return new Durability(Mode.GROUP_COMMIT, groupBytes, groupMillis);
+	}
+
+	/**
+	 * Constructs Durability, which forces the data after every entity.
+	 * @return a new Durability
+	 */
+	public static Durability perEntity() {
+		return new Durability(Mode.PER_ENTITY, 0, 0);
+	}
+}
@@ -0,0 +1,246 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+
+/**
+ * Flusher forces the written data to the storage device according to the given {@link Durability}. The writer reports
+ * every written entity, and Flusher either forces it at once, remembers it until the end of the output operation, or
+ * lets the background thread force the collected files in groups. The files whose channels are closed after they are
+ * reported are reopened to be forced.<br><br>
+ *
+ * Flusher is thread-safe. The failure of a background commit is rethrown by the next report or by {@link #finish()}.
+ * <br><br>
+ *
+ * If the writer holds some reported data in its own buffers, it can set a {@link Preparation}, which writes the data
+ * right before it's forced, see {@link #setPreparation(Preparation)}.
+ */
+public class Flusher implements Closeable {
+
+	/**
+	 * Preparation writes the reported data held by the writer, so it can be forced. It's invoked before every force,
+	 * possibly by the background thread.
+	 */
+	@FunctionalInterface
+	public interface Preparation {
+		void prepare() throws IOException;
+	}
+
+	private final Durability durability;
+
+	private final LinkedHashSet<FileChannel> channels = new LinkedHashSet<>();
+
+	private final LinkedHashSet<Path> paths = new LinkedHashSet<>();
+
+	private long pendingBytes = 0;
+
+	private long pendingSince = 0;
+
+	private boolean forcing = false;
+
+	private boolean closed = false;
+
+	private IOException failure;
+
+	private final Thread thread;
+
+	private volatile Preparation preparation;
+
+	/**
+	 * Constructs Flusher and starts the background thread if the group commit is requested.
+	 * @param durability the durability
+	 */
+	public Flusher(Durability durability) {
+		assert durability != null;
+
+		this.durability = durability;
+		if (durability.mode() == Durability.Mode.GROUP_COMMIT) {
+			thread = new Thread(this::commitGroups, "ardat-flusher");
+			thread.setDaemon(true);
+			thread.start();
+		} else {
+			thread = null;
+		}
+	}
+
+	/**
+	 * Sets the preparation invoked before the reported data is forced.
+	 * @param preparation the preparation or null if the reported data is already written
+	 */
+	public void setPreparation(Preparation preparation) {
+		this.preparation = preparation;
+	}
+
+	/**
+	 * Reports an entity written to the channel, which is kept open until {@link #finish()}.
+	 * @param channel the channel the entity was written to
+	 * @param bytes the number of written bytes
+	 * @throws IOException if forcing failed
+	 */
+	public void written(FileChannel channel, long bytes) throws IOException {
+		assert channel != null && bytes >= 0;
+
+		written(channel, null, bytes);
+	}
+
+	/**
+	 * Reports an entity written to the channel, which is closed after the call. The file is reopened to be forced.
+	 * @param channel the channel the entity was written to
+	 * @param path the path to the file
+	 * @param bytes the number of written bytes
+	 * @throws IOException if forcing failed
+	 */
+	public void written(FileChannel channel, Path path, long bytes) throws IOException {
+		assert channel != null && bytes >= 0;
+
+		switch (durability.mode()) {
+			case NONE -> {}
+			case PER_ENTITY -> {
+				prepare();
+				channel.force(false);
+			}
+			case END_OF_JOB, GROUP_COMMIT -> {
+				synchronized (this) {
+					if (failure != null) throw failure;
+					boolean first = channels.isEmpty() && paths.isEmpty();
+					if (first) pendingSince = System.nanoTime();
+					if (path == null) channels.add(channel);
+					else paths.add(path);
+					pendingBytes += bytes;
+					// the background thread starts the delay with the first entity of the group
+					if (first || pendingBytes >= durability.groupBytes()) notifyAll();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Forces all the reported data, which isn't forced yet, on the calling thread.
+	 * @throws IOException if forcing failed
+	 */
+	public void finish() throws IOException {
+		ArrayList<FileChannel> channelGroup;
+		ArrayList<Path> pathGroup;
+		synchronized (this) {
+			while (forcing) {
+				try {
+					wait();
+				} catch (InterruptedException exception) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Interrupted while waiting for the group commit");
+				}
+			}
+			if (failure != null) throw failure;
+			channelGroup = new ArrayList<>(channels);
+			pathGroup = new ArrayList<>(paths);
+			clear();
+		}
+		prepare();
+		force(channelGroup, pathGroup);
+	}
+
+	/**
+	 * Stops the background thread. The data, which isn't forced yet, is left to the operating system.
+	 */
+	@Override
+	public void close() {
+		synchronized (this) {
+			closed = true;
+			clear();
+			notifyAll();
+		}
+		if (thread == null) return;
+		try {
+			thread.join();
+		} catch (InterruptedException exception) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	// the group is committed if enough bytes are written or the oldest written entity waits for too long
+	private void commitGroups() {
+		long groupNanos = durability.groupMillis() * 1_000_000;
+		while (true) {
+			ArrayList<FileChannel> channelGroup;
+			ArrayList<Path> pathGroup;
+			synchronized (this) {
+				try {
+					while (!closed) {
+						if (pendingBytes >= durability.groupBytes()) break;
+						if (channels.isEmpty() && paths.isEmpty()) {
+							wait();
+							continue;
+						}
+						long left = pendingSince + groupNanos - System.nanoTime();
+						if (left <= 0) break;
+						wait(left / 1_000_000, (int) (left % 1_000_000));
+					}
+				} catch (InterruptedException exception) {
+					return;
+				}
+				if (closed) return;
+				channelGroup = new ArrayList<>(channels);
+				pathGroup = new ArrayList<>(paths);
+				clear();
+				forcing = true;
+			}
+			try {
+				prepare();
+				force(channelGroup, pathGroup);
+			} catch (IOException exception) {
+				synchronized (this) {
+					if (failure == null) failure = exception;
+				}
+			} finally {
+				synchronized (this) {
+					forcing = false;
+					notifyAll();
+				}
+			}
+		}
+	}
+
+	private void prepare() throws IOException {
+		Preparation current = preparation;
+		if (current != null) current.prepare();
+	}
+
+	private void clear() {
+		channels.clear();
+		paths.clear();
+		pendingBytes = 0;
+	}
+
+	private static void force(ArrayList<FileChannel> channelGroup, ArrayList<Path> pathGroup) throws IOException {
+		for (FileChannel channel: channelGroup) channel.force(false);
+		for (Path path: pathGroup) {
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+				channel.force(false);
+			}
+		}
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io;
+
+import java.io.InterruptedIOException;
+
+/**
+ * GlobalGovernor is a global object that stores the {@link IOGovernor} of the current job. The readers and the writers
+ * report their operations to GlobalGovernor, which bypasses them if no governor is set.
+ */
+public class GlobalGovernor {
+
+	private volatile IOGovernor governor;
+
+	private static final GlobalGovernor instance = new GlobalGovernor();
+
+	private GlobalGovernor() {}
+
+	/**
+	 * Returns the GlobalGovernor object.
+	 * @return the GlobalGovernor object
+	 */
+	public static GlobalGovernor getGlobalGovernor() {
+		return instance;
+	}
+
+	/**
+	 * Sets a new governor.
+	 * @param governor a new governor or null to bypass the limits
+	 */
+	public void setGovernor(IOGovernor governor) {
+		this.governor = governor;
+	}
+
+	/**
+	 * Returns the governor.
+	 * @return the governor or null if the limits are bypassed
+	 */
+	public IOGovernor getGovernor() {
+		return governor;
+	}
+
+	/**
+	 * Acquires the given number of bytes and operations from the governor if it's set.
+	 * @param bytes the number of bytes
+	 * @param ops the number of operations
+	 * @throws InterruptedIOException if the thread was interrupted while waiting
+	 */
+	public void acquire(long bytes, int ops) throws InterruptedIOException {
+		IOGovernor current = governor;
+		if (current != null) current.acquire(bytes, ops);
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * IOGovernor limits the bandwidth and the number of I/O operations per second of a job using two token buckets. Every
+ * read or write acquires its bytes and operations, and the calling thread sleeps if the buckets are exhausted. A large
+ * request drives the buckets into debt, which the subsequent requests wait out, so the rates hold on average. The
+ * buckets hold at most a tenth of a second of tokens, hence an idle job can't burst afterwards.<br><br>
+ *
+ * The limits can be changed at any time, 0 means no limit. The governor is shared by all the channels of a job through
+ * {@link GlobalGovernor}.
+ */
+public class IOGovernor {
+
+	private static final long MIN_CHUNK_SIZE = 64 * 1024;
+
+	private static final long MAX_CHUNK_SIZE = 16 * 1024 * 1024;
+
+	private long bytesPerSecond;
+
+	private long opsPerSecond;
+
+	private double bytes;
+
+	private double ops;
+
+	private long refilled = System.nanoTime();
+
+	/**
+	 * Constructs IOGovernor with the given limits.
+	 * @param bytesPerSecond the maximum number of bytes per second or 0 if unlimited
+	 * @param opsPerSecond the maximum number of operations per second or 0 if unlimited
+	 */
+	public IOGovernor(long bytesPerSecond, long opsPerSecond) {
+		assert bytesPerSecond >= 0 && opsPerSecond >= 0;
+
+		this.bytesPerSecond = bytesPerSecond;
+		this.opsPerSecond = opsPerSecond;
+		bytes = bytesPerSecond / 10.0;
+		ops = opsPerSecond / 10.0;
+	}
+
+	/**
+	 * Sets the maximum number of bytes per second.
+	 * @param bytesPerSecond the maximum number of bytes per second or 0 if unlimited
+	 */
+	public synchronized void setBytesPerSecond(long bytesPerSecond) {
+		assert bytesPerSecond >= 0;
+
+		refill();
+		this.bytesPerSecond = bytesPerSecond;
+		bytes = Math.min(bytes, bytesPerSecond / 10.0);
+	}
+
+	/**
+	 * Returns the maximum number of bytes per second.
+	 * @return the maximum number of bytes per second or 0 if unlimited
+	 */
+	public synchronized long getBytesPerSecond() {
+		return bytesPerSecond;
+	}
+
+	/**
+	 * Sets the maximum number of operations per second.
+	 * @param opsPerSecond the maximum number of operations per second or 0 if unlimited
+	 */
+	public synchronized void setOpsPerSecond(long opsPerSecond) {
+		assert opsPerSecond >= 0;
+
+		refill();
+		this.opsPerSecond = opsPerSecond;
+		ops = Math.min(ops, opsPerSecond / 10.0);
+	}
+
+	/**
+	 * Returns the maximum number of operations per second.
+	 * @return the maximum number of operations per second or 0 if unlimited
+	 */
+	public synchronized long getOpsPerSecond() {
+		return opsPerSecond;
+	}
+
+	/**
+	 * Returns the recommended size of a single operation, so the long transfers are spread evenly over time.
+	 * @return the number of bytes the bucket refills in a tenth of a second, at least 64 KiB and at most 16 MiB
+	 */
+	public synchronized long getChunkSize() {
+		if (bytesPerSecond == 0) return MAX_CHUNK_SIZE;
+		return Math.max(MIN_CHUNK_SIZE, Math.min(bytesPerSecond / 10, MAX_CHUNK_SIZE));
+	}
+
+	/**
+	 * Acquires the given number of bytes and operations, waits until the buckets are refilled if necessary.
+	 * @param requestedBytes the number of bytes
+	 * @param requestedOps the number of operations
+	 * @throws InterruptedIOException if the thread was interrupted while waiting
+	 */
+	public void acquire(long requestedBytes, int requestedOps) throws InterruptedIOException {
+		assert requestedBytes >= 0 && requestedOps >= 0;
+
+		long delay = reserve(requestedBytes, requestedOps);
+		if (delay <= 0) return;
+		try {
+			TimeUnit.NANOSECONDS.sleep(delay);
+		} catch (InterruptedException exception) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the I/O governor");
+		}
+	}
+
+	// returns the time the caller has to wait for the debt to be paid off
+	private synchronized long reserve(long requestedBytes, int requestedOps) {
+		refill();
+		long delay = 0;
+		if (bytesPerSecond > 0) {
+			bytes -= requestedBytes;
+			if (bytes < 0) delay = (long) (-bytes * 1e9 / bytesPerSecond);
+		}
+		if (opsPerSecond > 0) {
+			ops -= requestedOps;
+			if (ops < 0) delay = Math.max(delay, (long) (-ops * 1e9 / opsPerSecond));
+		}
+		return delay;
+	}
+
+	private void refill() {
+		long now = System.nanoTime();
+		double seconds = (now - refilled) / 1e9;
+		refilled = now;
+		if (bytesPerSecond > 0) bytes = Math.min(bytes + seconds * bytesPerSecond, bytesPerSecond / 10.0);
+		if (opsPerSecond > 0) ops = Math.min(ops + seconds * opsPerSecond, opsPerSecond / 10.0);
+	}
+}
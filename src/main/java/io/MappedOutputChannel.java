@@ -0,0 +1,148 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * MappedOutputChannel is a {@link WritableByteChannel} that appends the bytes to a file through memory mappings
+ * instead of the channel writes. The file is mapped in regions starting at the current position, the first region is
+ * 1 MiB long and every next one is twice as long up to 1 GiB, so neither a small output is extended far beyond its end
+ * nor a large output is mapped too many times. The output can be larger than any single region.<br><br>
+ *
+ * The client can also write to the mapping in place: {@link #view(int)} returns the mapped bytes at the current
+ * position and {@link #skip(int)} moves the position past the bytes written to the view.<br><br>
+ *
+ * A mapping extends the file to the end of its region, so the file is truncated to the position when the channel is
+ * closed. The underlying file channel isn't closed. The file channel can be forced as usual, the mapped bytes are
+ * in the same page cache.
+ */
+public class MappedOutputChannel implements WritableByteChannel {
+
+	private static final long FIRST_REGION_SIZE = 1024 * 1024;
+
+	private static final long MAX_REGION_SIZE = 1024 * 1024 * 1024;
+
+	private final FileChannel file;
+
+	private long position;
+
+	// null until the first byte is written and after the channel is closed
+	private MappedByteBuffer region;
+
+	private long regionOffset;
+
+	private long nextRegionSize = FIRST_REGION_SIZE;
+
+	private boolean open = true;
+
+	/**
+	 * Constructs a MappedOutputChannel appending to the given file from the given position.
+	 * @param file the file channel opened for reading and writing
+	 * @param position the position of the first appended byte
+	 */
+	public MappedOutputChannel(FileChannel file, long position) {
+		assert file != null && position >= 0;
+
+		this.file = file;
+		this.position = position;
+	}
+
+	@Override
+	public int write(ByteBuffer byteBuffer) throws IOException {
+		assert byteBuffer != null;
+
+		int written = 0;
+		while (byteBuffer.hasRemaining()) {
+			ByteBuffer view = view((int) Math.min(byteBuffer.remaining(), MAX_REGION_SIZE));
+			written += Buffers.transfer(byteBuffer, view);
+			skip(view.position());
+		}
+		return written;
+	}
+
+	/**
+	 * Returns the writable view of the given number of mapped bytes at the current position. The position isn't moved,
+	 * see {@link #skip(int)}. The view is valid until the next invocation of any method of the channel.
+	 * @param length the number of bytes
+	 * @return the view of the mapped bytes
+	 * @throws IOException if some I/O errors occur
+	 */
+	public ByteBuffer view(int length) throws IOException {
+		assert length >= 0;
+		if (!open) throw new ClosedChannelException();
+
+		if (region == null || position + length > regionOffset + region.capacity()) map(length);
+		return region.slice((int) (position - regionOffset), length);
+	}
+
+	/**
+	 * Moves the position forward past the bytes written to the view.
+	 * @param length the number of written bytes
+	 */
+	public void skip(int length) {
+		assert length >= 0 && region != null && position + length <= regionOffset + region.capacity();
+
+		position += length;
+	}
+
+	/**
+	 * Returns the position of the next appended byte.
+	 * @return the position
+	 */
+	public long position() {
+		return position;
+	}
+
+	@Override
+	public boolean isOpen() {
+		return open;
+	}
+
+	/**
+	 * Releases the mapping and truncates the file to the position.
+	 * @throws IOException if some I/O errors occur
+	 */
+	@Override
+	public void close() throws IOException {
+		if (!open) return;
+		open = false;
+		unmap();
+		if (file.size() > position) file.truncate(position);
+	}
+
+	private void map(int length) throws IOException {
+		unmap();
+		long size = Math.max(nextRegionSize, length);
+		regionOffset = position;
+		region = file.map(FileChannel.MapMode.READ_WRITE, regionOffset, size);
+		nextRegionSize = Math.min(nextRegionSize * 2, MAX_REGION_SIZE);
+	}
+
+	private void unmap() {
+		if (region == null) return;
+		Buffers.unmap(region);
+		region = null;
+	}
+}
@@ -19,6 +19,7 @@
 package io;
 
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -27,7 +28,8 @@ import java.util.HashMap;
 
 /**
  * SharedChannelFactory is a global object intended to initialize and store the instances of
- * {@link SharedSeekableByteChannel}.
+ * {@link SharedSeekableByteChannel}. SharedChannelFactory is thread-safe, and the underlying channels are instances of
+ * {@link FileChannel}, so the shared channels read them concurrently without moving the position.
  */
 public final class SharedChannelFactory {
 
@@ -56,14 +58,14 @@ public final class SharedChannelFactory {
 	 * @return an instance of SharedSeekableByteChannel
 	 * @throws IOException if some I/O exceptions occur
 	 */
-	public SharedSeekableByteChannel newChannel(Path p, long startingPos, long size) throws IOException {
+	public synchronized SharedSeekableByteChannel newChannel(Path p, long startingPos, long size) throws IOException {
 		assert p != null && startingPos >= 0 && startingPos + size <= Files.size(p);
 
 		if (openedChannel.containsKey(p)) {
 			counters.replace(p, counters.get(p) + 1);
 			return new SharedSeekableByteChannel(openedChannel.get(p), startingPos, size);
 		} else {
-			SeekableByteChannel underlyingChannel = Files.newByteChannel(p, StandardOpenOption.READ);
+			SeekableByteChannel underlyingChannel = FileChannel.open(p, StandardOpenOption.READ);
 			channelPathAssociation.put(underlyingChannel, p);
 			SharedSeekableByteChannel newChannel =
 				new SharedSeekableByteChannel(underlyingChannel, startingPos, size);
@@ -96,7 +98,7 @@ public final class SharedChannelFactory {
 	 * @return an instance of SharedSeekableByteChannel
 	 * @throws IOException if some I/O exceptions occur
 	 */
-	public SharedSeekableByteChannel newChannel(
+	public synchronized SharedSeekableByteChannel newChannel(
 		SharedSeekableByteChannel channel,
 		long startingPos,
 		long size
@@ -129,7 +131,7 @@ public final class SharedChannelFactory {
 	 * Invoked by an instance of {@link SharedSeekableByteChannel} to notify that close() was invoked on that channel.
 	 * @param channel the channel itself
 	 */
-	void notifyClosing(SharedSeekableByteChannel channel) {
+	synchronized void notifyClosing(SharedSeekableByteChannel channel) {
 		assert channel != null;
 
 		Path p = channelPathAssociation.get(channel.getUnderlyingChannel());
@@ -141,7 +143,7 @@ public final class SharedChannelFactory {
 				openedChannel.remove(p).close();
 			} catch (IOException ignored) { }
 		} else {
-			counters.replace(p, counters.get(p) + 1);
+			counters.replace(p, counter);
 		}
 	}
 }
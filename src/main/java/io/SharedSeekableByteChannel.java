@@ -21,8 +21,10 @@ package io;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
 import java.nio.channels.NonWritableChannelException;
 import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
 
 /**
  * SharedSeekableByteChannel is a wrapper class of {@link SeekableByteChannel}, which allows it to reference to the
@@ -30,7 +32,11 @@ import java.nio.channels.SeekableByteChannel;
  *
  * The instance of the class is accessible through the {@link SharedChannelFactory} global object. <br><br>
  * Due to the ability to share the same channel, SharedSeekableByteChannel doesn't support writing operations, it also
- * can't close the channel by itself delegating this operation to {@link SharedChannelFactory}.
+ * can't close the channel by itself delegating this operation to {@link SharedChannelFactory}.<br><br>
+ *
+ * The instances sharing the same channel can be read by different threads, since the underlying {@link FileChannel}
+ * is read at absolute positions. Other underlying channels are locked for the duration of a read. A single instance
+ * isn't thread-safe.
  */
 public class SharedSeekableByteChannel implements SeekableByteChannel {
 
@@ -72,16 +78,96 @@ public class SharedSeekableByteChannel implements SeekableByteChannel {
 	@Override
 	public int read(ByteBuffer byteBuffer) throws IOException {
 		if (!isOpened) throw new ClosedChannelException();
-		if (position() == size()) return -1;
+		if (position() >= size()) return -1;
+		int limit = byteBuffer.limit();
 		byteBuffer.limit((int) Math.min(
-			byteBuffer.limit(),
+			limit,
 			byteBuffer.position() + size() - position()
 		));
-		int result = channel.position(localPosition + offset).read(byteBuffer);
-		localPosition += result;
+		int result;
+		try {
+			if (channel instanceof FileChannel fileChannel) {
+				result = fileChannel.read(byteBuffer, localPosition + offset);
+			} else {
+				synchronized (channel) {
+					result = channel.position(localPosition + offset).read(byteBuffer);
+				}
+			}
+		} finally {
+			byteBuffer.limit(limit);
+		}
+		if (result > 0) localPosition += result;
 		return result;
 	}
 
+	/**
+	 * Reads the bytes of the available window starting at the given position without moving the position of
+	 * the channel.
+	 * @param byteBuffer the buffer to read the bytes into
+	 * @param position the position in the window
+	 * @return the number of read bytes or -1 if the position is at the end of the window
+	 * @throws IOException if some I/O errors occur
+	 */
+	public int read(ByteBuffer byteBuffer, long position) throws IOException {
+		assert byteBuffer != null && position >= 0;
+		if (!isOpened) throw new ClosedChannelException();
+		if (position >= size()) return -1;
+
+		int limit = byteBuffer.limit();
+		byteBuffer.limit((int) Math.min(limit, byteBuffer.position() + size() - position));
+		try {
+			if (channel instanceof FileChannel fileChannel) return fileChannel.read(byteBuffer, offset + position);
+			synchronized (channel) {
+				return channel.position(offset + position).read(byteBuffer);
+			}
+		} finally {
+			byteBuffer.limit(limit);
+		}
+	}
+
+	/**
+	 * Writes the given range of the available window to the channel without moving the position, so different threads
+	 * can transfer different ranges at once. The range is contracted to the end of the window.
+	 * @param position the position of the first byte in the window
+	 * @param count the maximum number of bytes to write
+	 * @param target the channel to write the bytes to
+	 * @return the number of written bytes
+	 * @throws IOException if some I/O errors occur
+	 */
+	public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+		assert position >= 0 && count >= 0 && target != null;
+		if (!isOpened) throw new ClosedChannelException();
+
+		long end = Math.min(size(), position + count);
+		long transferred = 0;
+		if (channel instanceof FileChannel fileChannel) {
+			while (position + transferred < end) {
+				long n = fileChannel.transferTo(offset + position + transferred, end - position - transferred, target);
+				if (n <= 0) break;
+				transferred += n;
+			}
+			return transferred;
+		}
+
+		ByteBuffer byteBuffer = BufferPool.getBufferPool().acquire(8 * 1024);
+		try {
+			while (position + transferred < end) {
+				byteBuffer.clear().limit((int) Math.min(byteBuffer.capacity(), end - position - transferred));
+				int n;
+				synchronized (channel) {
+					n = channel.position(offset + position + transferred).read(byteBuffer);
+				}
+				if (n <= 0) break;
+				byteBuffer.flip();
+				while (byteBuffer.hasRemaining()) target.write(byteBuffer);
+				transferred += n;
+			}
+		} finally {
+			BufferPool.getBufferPool().release(byteBuffer);
+		}
+		return transferred;
+	}
+
 	@Override
 	public int write(ByteBuffer byteBuffer) {
 		throw new NonWritableChannelException();
@@ -0,0 +1,148 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ardat.format;
+
+import ardat.tree.ArchiveEntity;
+import ardat.tree.ArchiveEntityProperty;
+import ardat.tree.DirectoryEntity;
+import ardat.tree.FileEntity;
+import ardat.tree.builder.ArchiveTreeBuilder;
+import ardat.tree.builder.ArraySeekableByteChannel;
+import ardat.tree.root.TreeRoot;
+import ardat.tree.writer.ArchiveTreeWriter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ArchiveIndexTests {
+	Path workingDir;
+	Path arch;
+
+	@BeforeEach
+	void beforeEach() throws IOException {
+		workingDir = Files.createTempDirectory(null);
+		arch = Path.of(workingDir.toString(), "indexed.ardat");
+
+		DirectoryEntity root = mkdir("root");
+		DirectoryEntity subDir = mkdir("subDir");
+		root.addChildren(subDir, touch("file", "qwerty".getBytes()));
+		subDir.addChildren(touch("subFile", "phoenix".getBytes()));
+		TreeRoot.getTreeRoot().set(root);
+		ArchiveTreeWriter.getArchiveTreeWriter(arch, true).write();
+	}
+
+	@AfterEach
+	void afterEach() throws IOException {
+		TreeRoot.getTreeRoot().set(null);
+		Files.deleteIfExists(arch);
+		Files.delete(workingDir);
+	}
+
+	@Test
+	void trailerTest() throws IOException {
+		String content = Files.readString(arch, StandardCharsets.UTF_8);
+		assertTrue(content.contains("\nindex trailing\n"));
+
+		try (FileChannel channel = FileChannel.open(arch, StandardOpenOption.READ)) {
+			long indexOffset = ArchiveIndex.readTrailer(channel);
+			assertTrue(content.startsWith("index 0000000000000004\n", (int) indexOffset));
+			assertTrue(ArchiveIndex.isOpening(channel, indexOffset));
+		}
+	}
+
+	@Test
+	void indexedBuildTest() throws IOException {
+		assertTree(ArchiveTreeBuilder.getArchiveTreeBuilder(arch).build().get());
+	}
+
+	@Test
+	void missingTrailerTest() throws IOException {
+		try (FileChannel channel = FileChannel.open(arch, StandardOpenOption.WRITE)) {
+			channel.truncate(channel.size() - 1);
+		}
+		assertTree(ArchiveTreeBuilder.getArchiveTreeBuilder(arch).build().get());
+	}
+
+	@Test
+	void misleadingTrailerTest() throws IOException {
+		// the trailer points into the metadata, so the index is rejected, and the scan mustn't trust it either
+		try (FileChannel channel = FileChannel.open(arch, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap("0000000000000001".getBytes()), channel.size() - 17);
+		}
+		assertTree(ArchiveTreeBuilder.getArchiveTreeBuilder(arch).build().get());
+	}
+
+	@Test
+	void inconsistentIndexTest() throws IOException {
+		String content = Files.readString(arch, StandardCharsets.UTF_8);
+		int entryOffset = content.indexOf(" 0000000000000006 0 root/file");
+		try (FileChannel channel = FileChannel.open(arch, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap("0000000000000001".getBytes()), entryOffset - 16);
+		}
+		assertTree(ArchiveTreeBuilder.getArchiveTreeBuilder(arch).build().get());
+	}
+
+	private void assertTree(ArchiveEntity root) throws IOException {
+		assertArrayEquals(new String[]{"root"}, root.getName());
+		ArchiveEntity[] children = root.getChildren();
+		assertEquals(2, children.length);
+		assertArrayEquals(new String[]{"root", "subDir"}, children[0].getName());
+		assertArrayEquals(new String[]{"root", "file"}, children[1].getName());
+		ArchiveEntity subFile = children[0].getChildren()[0];
+		assertArrayEquals(new String[]{"root", "subDir", "subFile"}, subFile.getName());
+
+		ByteBuffer buffer = ByteBuffer.allocate(16);
+		subFile.getContent(buffer);
+		assertEquals("phoenix", new String(buffer.array(), 0, buffer.position()));
+		TreeRoot.getTreeRoot().set(null);
+	}
+
+	private static DirectoryEntity mkdir(String name) {
+		return new DirectoryEntity(
+			name,
+			new ArchiveEntityProperty[]{
+				new ArchiveEntityProperty("create-time", "1"),
+				new ArchiveEntityProperty("modify-time", "1"),
+				new ArchiveEntityProperty("access-time", "1")
+			}
+		);
+	}
+
+	private static FileEntity touch(String name, byte[] content) {
+		return new FileEntity(
+			name,
+			new ArraySeekableByteChannel(content),
+			new ArchiveEntityProperty[]{
+				new ArchiveEntityProperty("create-time", "1"),
+				new ArchiveEntityProperty("modify-time", "1"),
+				new ArchiveEntityProperty("access-time", "1")
+			}
+		);
+	}
+}
@@ -30,10 +30,15 @@ import javax.crypto.spec.SecretKeySpec;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.security.Key;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 import java.util.LinkedList;
 
 public class AESEntityTests {
+	private static final Key KEY = new SecretKeySpec(new byte[]{1,1,1,1,1,1,1,1,1,1,1,1,1,1,1,1}, "AES");
+
 	@ParameterizedTest
 	@MethodSource("entityProvider")
 	void encryptTest(AESEntity aesEntity, ByteBuffer encryptedBuffer) throws IOException {
@@ -76,9 +81,38 @@ public class AESEntityTests {
 		tests.encodeTest();
 	}
 
+	@ParameterizedTest
+	@MethodSource("entityProvider")
+	void contentLengthTest(AESEntity aesEntity, ByteBuffer encryptedBuffer) throws IOException {
+		ArrayList<AESEntity> instances = new ArrayList<>(List.of(aesEntity, copy(aesEntity)));
+		ArchiveEntityProcessorTests tests = new ArchiveEntityProcessorTests() {
+			@Override
+			ArchiveEntityProcessor getInstance(ArchiveEntity archiveEntity) {
+				AESEntity instance = instances.remove(0);
+				instance.setComponent(archiveEntity);
+				return instance;
+			}
+			@Override
+			ByteBuffer getEncodedData() {
+				return encryptedBuffer;
+			}
+			@Override
+			ByteBuffer getDecodedData() {
+				return ByteBuffer.wrap("We won't forget".getBytes());
+			}
+		};
+		tests.contentLengthTest();
+	}
+
+	private static AESEntity copy(AESEntity aesEntity) {
+		ArchiveEntityProperty[] pts = aesEntity.getProperties();
+		ArchiveEntityProperty[] aesPts = Arrays.copyOfRange(pts, pts.length - 2, pts.length);
+		return new AESEntity(aesEntity.getComponent(), aesPts, KEY);
+	}
+
 	static Iterator<Arguments> entityProvider() {
 		LinkedList<Arguments> ll = new LinkedList<>();
-		Key key = new SecretKeySpec(new byte[]{1,1,1,1,1,1,1,1,1,1,1,1,1,1,1,1}, "AES");
+		Key key = KEY;
 		ArchiveEntity entity =
 			new FileEntity("", new ArraySeekableByteChannel(new byte[0]), new ArchiveEntityProperty[]{});
 
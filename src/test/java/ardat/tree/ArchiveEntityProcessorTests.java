@@ -19,6 +19,7 @@
 package ardat.tree;
 
 import ardat.tree.builder.ArraySeekableByteChannel;
+import io.BufferPool;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
@@ -71,4 +72,45 @@ public abstract class ArchiveEntityProcessorTests {
 		);
 	}
 
+	@Test
+	void contentLengthTest() throws IOException {
+		SeekableByteChannel decoded = new ArraySeekableByteChannel(getDecodedData().array());
+		ArchiveEntityProcessor encoder = getInstance(new FileEntity("file", decoded, new ArchiveEntityProperty[]{}));
+		encoder.setEncode(true);
+		assertEquals(ContentLength.exactly(getEncodedData().capacity()), encoder.getContentLength());
+		encoder.getContent(ByteBuffer.allocate(1));
+		assertNull(encoder.getContentLength());
+
+		SeekableByteChannel encoded = new ArraySeekableByteChannel(getEncodedData().array());
+		ArchiveEntityProcessor decoder = getInstance(new FileEntity("file", encoded, new ArchiveEntityProperty[]{}));
+		decoder.setEncode(false);
+		ContentLength length = decoder.getContentLength();
+		assertTrue(length.bytes() >= getDecodedData().capacity());
+		if (length.exact()) assertEquals(getDecodedData().capacity(), length.bytes());
+	}
+
+	@Test
+	void pooledWindowsTest() throws IOException {
+		BufferPool pool = BufferPool.getBufferPool();
+		pool.clear();
+		SeekableByteChannel decoded = new ArraySeekableByteChannel(getDecodedData().array());
+		ArchiveEntityProcessor encoder = getInstance(new FileEntity("file", decoded, new ArchiveEntityProperty[]{}));
+		encoder.setEncode(true);
+		assertEquals(0, pool.getPooledBytes());
+
+		ByteBuffer output = ByteBuffer.allocate(getEncodedData().capacity() + 1);
+		encoder.getContent(ByteBuffer.allocate(1));
+		assertEquals(0, pool.getPooledBytes(), "The windows are returned before the content is drained");
+		while (encoder.getContent(output) >= 0);
+		long pooled = pool.getPooledBytes();
+		assertTrue(pooled > 0, "The windows aren't returned after the content is drained");
+
+		SeekableByteChannel encoded = new ArraySeekableByteChannel(getEncodedData().array());
+		ArchiveEntityProcessor decoder = getInstance(new FileEntity("file", encoded, new ArchiveEntityProperty[]{}));
+		decoder.setEncode(false);
+		decoder.getContent(ByteBuffer.allocate(1));
+		assertTrue(pool.getPooledBytes() < pooled, "The windows aren't reused");
+		decoder.close();
+		assertEquals(pooled, pool.getPooledBytes(), "The windows aren't returned on close");
+	}
 }
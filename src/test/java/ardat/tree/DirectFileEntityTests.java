@@ -0,0 +1,158 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ardat.tree;
+
+import ardat.tree.builder.ArraySeekableByteChannel;
+import ardat.tree.builder.FSTreeBuilder;
+import ardat.tree.root.TreeRoot;
+import com.sun.nio.file.ExtendedOpenOption;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class DirectFileEntityTests {
+	Path workingDir;
+	Path file;
+	byte[] content;
+	int blockSize;
+
+	@BeforeEach
+	void beforeEach() throws IOException {
+		workingDir = Files.createTempDirectory(null);
+		file = workingDir.resolve("file");
+		// the content crosses several windows and ends with a partial block
+		content = new byte[3 * 1024 * 1024 + 1001];
+		new Random(42).nextBytes(content);
+		Files.write(file, content);
+		blockSize = (int) Files.getFileStore(file).getBlockSize();
+	}
+
+	@AfterEach
+	void afterEach() throws IOException {
+		TreeRoot.getTreeRoot().set(null);
+		try (Stream<Path> paths = Files.walk(workingDir)) {
+			for (Path path: paths.sorted(Comparator.reverseOrder()).toList()) Files.delete(path);
+		}
+	}
+
+	DirectFileEntity open() throws IOException {
+		FileChannel channel;
+		try {
+			channel = FileChannel.open(file, StandardOpenOption.READ, ExtendedOpenOption.DIRECT);
+		} catch (IOException | UnsupportedOperationException exception) {
+			channel = null;
+		}
+		assumeTrue(channel != null, "the file system doesn't support the direct I/O");
+		return new DirectFileEntity("file", channel, blockSize, new ArchiveEntityProperty[]{});
+	}
+
+	@Test
+	void contentTest() throws IOException {
+		try (DirectFileEntity entity = open()) {
+			assertEquals(ContentLength.exactly(content.length), entity.getContentLength());
+			// the odd window makes the reads start inside the blocks
+			ByteBuffer window = ByteBuffer.allocate(7777);
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			while (entity.getContent(window.clear()) > 0) output.write(window.array(), 0, window.position());
+			assertArrayEquals(content, output.toByteArray());
+			assertFalse(entity.hasRemainingContent());
+			assertEquals(ContentLength.exactly(0), entity.getContentLength());
+			assertEquals(-1, entity.getContent(window.clear()));
+		}
+	}
+
+	@Test
+	void grownFileTest() throws IOException {
+		try (DirectFileEntity entity = open()) {
+			Files.write(file, new byte[5000], StandardOpenOption.APPEND);
+			ByteBuffer window = ByteBuffer.allocate(content.length + 5000);
+			while (entity.getContent(window) > 0);
+			assertEquals(ByteBuffer.wrap(content), window.flip());
+			assertFalse(entity.hasRemainingContent());
+		}
+	}
+
+	@Test
+	void transferTest() throws IOException {
+		try (DirectFileEntity entity = open()) {
+			assertFalse(entity.isRangeTransferable());
+			assertEquals(-1, entity.prefetchContent(ByteBuffer.allocate(100), 0));
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			assertEquals(content.length, entity.transferContentTo(Channels.newChannel(output)));
+			assertArrayEquals(content, output.toByteArray());
+		}
+	}
+
+	@Test
+	void processorTest() throws IOException {
+		ByteBuffer expected = ByteBuffer.allocate(content.length * 2);
+		try (PrettyEntity pretty = new PrettyEntity(new FileEntity(
+			"file",
+			new ArraySeekableByteChannel(content),
+			new ArchiveEntityProperty[]{}
+		))) {
+			while (pretty.getContent(expected) > 0);
+		}
+		ByteBuffer actual = ByteBuffer.allocate(content.length * 2);
+		try (PrettyEntity pretty = new PrettyEntity(open())) {
+			while (pretty.getContent(actual) > 0);
+		}
+		assertEquals(expected.flip(), actual.flip());
+	}
+
+	@Test
+	void closeTest() throws IOException {
+		DirectFileEntity entity = open();
+		entity.getContent(ByteBuffer.allocate(100));
+		entity.close();
+		assertFalse(entity.isOpened());
+		assertEquals("FileEntity", ArchiveEntityProperty.findVal("class", entity.getProperties()));
+	}
+
+	@Test
+	void builderTest() throws IOException {
+		Files.write(workingDir.resolve("small"), new byte[10]);
+		FSTreeBuilder builder = new FSTreeBuilder(workingDir);
+		builder.setDirectReads(true);
+		ArchiveEntity root = builder.build().get();
+		for (ArchiveEntity child: root.getChildren()) {
+			// the files are read as usual if the file system doesn't support the direct I/O
+			assertInstanceOf(FileEntity.class, child);
+			ByteBuffer window = ByteBuffer.allocate(content.length + 1);
+			while (child.getContent(window) > 0);
+			assertEquals(child.getName()[1].equals("file") ? content.length : 10, window.position());
+			child.close();
+		}
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ardat.tree;
+
+import ardat.tree.builder.ArraySeekableByteChannel;
+import ardat.tree.builder.FSTreeBuilder;
+import ardat.tree.root.TreeRoot;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappedFileEntityTests {
+	Path workingDir;
+	Path file;
+	byte[] content;
+
+	@BeforeEach
+	void beforeEach() throws IOException {
+		workingDir = Files.createTempDirectory(null);
+		file = workingDir.resolve("file");
+		content = new byte[300_001];
+		new Random(42).nextBytes(content);
+		Files.write(file, content);
+	}
+
+	@AfterEach
+	void afterEach() throws IOException {
+		TreeRoot.getTreeRoot().set(null);
+		try (Stream<Path> paths = Files.walk(workingDir)) {
+			for (Path path: paths.sorted(Comparator.reverseOrder()).toList()) Files.delete(path);
+		}
+	}
+
+	MappedFileEntity map() throws IOException {
+		// the small regions make the content cross several of them
+		return new MappedFileEntity("file", FileChannel.open(file), new ArchiveEntityProperty[]{}, 4096);
+	}
+
+	@Test
+	void contentTest() throws IOException {
+		try (MappedFileEntity entity = map()) {
+			assertEquals(ContentLength.exactly(content.length), entity.getContentLength());
+			ByteBuffer window = ByteBuffer.allocate(1000);
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			while (entity.getContent(window.clear()) > 0) output.write(window.array(), 0, window.position());
+			assertArrayEquals(content, output.toByteArray());
+			assertFalse(entity.hasRemainingContent());
+			assertEquals(-1, entity.getContent(window.clear()));
+		}
+	}
+
+	@Test
+	void viewTest() throws IOException {
+		try (MappedFileEntity entity = map()) {
+			ByteBuffer view = entity.viewContent(3000);
+			assertTrue(view.isReadOnly());
+			assertEquals(ByteBuffer.wrap(content, 0, 3000), view);
+			// the second view crosses the end of the first region
+			assertEquals(ByteBuffer.wrap(content, 3000, 3000), entity.viewContent(3000));
+			assertEquals(ContentLength.exactly(content.length - 6000), entity.getContentLength());
+
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			assertEquals(content.length - 6000, entity.transferContentTo(Channels.newChannel(output)));
+			assertArrayEquals(Arrays.copyOfRange(content, 6000, content.length), output.toByteArray());
+			assertFalse(entity.viewContent(3000).hasRemaining());
+		}
+	}
+
+	@Test
+	void processorTest() throws IOException {
+		ByteBuffer expected = ByteBuffer.allocate(content.length * 2);
+		try (PrettyEntity pretty = new PrettyEntity(new FileEntity(
+			"file",
+			new ArraySeekableByteChannel(content),
+			new ArchiveEntityProperty[]{}
+		))) {
+			while (pretty.getContent(expected) > 0);
+		}
+		ByteBuffer actual = ByteBuffer.allocate(content.length * 2);
+		try (PrettyEntity pretty = new PrettyEntity(map())) {
+			while (pretty.getContent(actual) > 0);
+		}
+		assertEquals(expected.flip(), actual.flip());
+	}
+
+	@Test
+	void closeTest() throws IOException {
+		MappedFileEntity entity = map();
+		entity.viewContent(100);
+		entity.close();
+		assertFalse(entity.isOpened());
+		assertEquals("FileEntity", ArchiveEntityProperty.findVal("class", entity.getProperties()));
+	}
+
+	@Test
+	void builderTest() throws IOException {
+		Files.write(workingDir.resolve("small"), new byte[10]);
+		FSTreeBuilder builder = new FSTreeBuilder(workingDir);
+		builder.setMappingThreshold(1000);
+		ArchiveEntity root = builder.build().get();
+		for (ArchiveEntity child: root.getChildren()) {
+			String name = child.getName()[1];
+			assertEquals(name.equals("file"), child instanceof MappedFileEntity, name);
+		}
+	}
+}
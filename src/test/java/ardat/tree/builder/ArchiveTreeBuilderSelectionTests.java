@@ -0,0 +1,136 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ardat.tree.builder;
+
+import ardat.ArdatFacade;
+import ardat.tree.ArchiveEntity;
+import ardat.tree.ArchiveEntityProperty;
+import ardat.tree.DirectoryEntity;
+import ardat.tree.FileEntity;
+import ardat.tree.root.TreeRoot;
+import ardat.tree.writer.ArchiveTreeWriter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ArchiveTreeBuilderSelectionTests {
+	Path workingDir;
+	Path arch;
+
+	@BeforeEach
+	void beforeEach() throws IOException {
+		workingDir = Files.createTempDirectory(null);
+		arch = Path.of(workingDir.toString(), "selection.ardat");
+
+		DirectoryEntity root = mkdir("root");
+		DirectoryEntity subDir = mkdir("subDir");
+		root.addChildren(subDir, touch("file", "qwerty".getBytes()));
+		subDir.addChildren(touch("subFile", "phoenix".getBytes()), touch("other", "other".getBytes()));
+		TreeRoot.getTreeRoot().set(root);
+		ArchiveTreeWriter.getArchiveTreeWriter(arch, true).write();
+		TreeRoot.getTreeRoot().set(null);
+	}
+
+	@AfterEach
+	void afterEach() throws IOException {
+		TreeRoot.getTreeRoot().set(null);
+		try (Stream<Path> paths = Files.walk(workingDir)) {
+			for (Path path: paths.sorted(Comparator.reverseOrder()).toList()) Files.delete(path);
+		}
+	}
+
+	@Test
+	void fileSelectionTest() throws IOException {
+		ArchiveTreeBuilder builder = ArchiveTreeBuilder.getArchiveTreeBuilder(arch);
+		builder.setSelection(FileSystems.getDefault().getPathMatcher("glob:**/subFile"));
+		assertEquals(3, builder.getSelectedCount());
+
+		ArchiveEntity root = builder.build().get();
+		assertEquals(1, root.getChildren().length);
+		ArchiveEntity subDir = root.getChildren()[0];
+		assertArrayEquals(new String[]{"root", "subDir"}, subDir.getName());
+		assertEquals(1, subDir.getChildren().length);
+		assertArrayEquals(new String[]{"root", "subDir", "subFile"}, subDir.getChildren()[0].getName());
+	}
+
+	@Test
+	void directorySelectionTest() throws IOException {
+		ArchiveTreeBuilder builder = ArchiveTreeBuilder.getArchiveTreeBuilder(arch);
+		builder.setSelection(FileSystems.getDefault().getPathMatcher("glob:root/subDir"));
+		assertEquals(4, builder.getSelectedCount());
+
+		ArchiveEntity root = builder.build().get();
+		assertEquals(1, root.getChildren().length);
+		assertEquals(2, root.getChildren()[0].getChildren().length);
+	}
+
+	@Test
+	void noSelectionTest() throws IOException {
+		ArchiveTreeBuilder builder = ArchiveTreeBuilder.getArchiveTreeBuilder(arch);
+		builder.setSelection(FileSystems.getDefault().getPathMatcher("glob:missing"));
+		assertEquals(0, builder.getSelectedCount());
+		builder.setSelection(null);
+		assertEquals(5, builder.getSelectedCount());
+	}
+
+	@Test
+	void selectiveExtractionTest() throws IOException {
+		Path extracted = Files.createDirectory(workingDir.resolve("extracted"));
+		ArdatFacade.extract(arch, extracted, FileSystems.getDefault().getPathMatcher("glob:root/{file,missing}"));
+		assertEquals("qwerty", Files.readString(extracted.resolve("root/file")));
+		assertFalse(Files.exists(extracted.resolve("root/subDir")));
+
+		ArdatFacade.extract(arch, extracted, FileSystems.getDefault().getPathMatcher("glob:missing"));
+		try (Stream<Path> paths = Files.list(extracted)) {
+			assertEquals(1, paths.count());
+		}
+	}
+
+	private static DirectoryEntity mkdir(String name) {
+		return new DirectoryEntity(
+			name,
+			new ArchiveEntityProperty[]{
+				new ArchiveEntityProperty("create-time", "1"),
+				new ArchiveEntityProperty("modify-time", "1"),
+				new ArchiveEntityProperty("access-time", "1")
+			}
+		);
+	}
+
+	private static FileEntity touch(String name, byte[] content) {
+		return new FileEntity(
+			name,
+			new ArraySeekableByteChannel(content),
+			new ArchiveEntityProperty[]{
+				new ArchiveEntityProperty("create-time", "1"),
+				new ArchiveEntityProperty("modify-time", "1"),
+				new ArchiveEntityProperty("access-time", "1")
+			}
+		);
+	}
+}
@@ -0,0 +1,61 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ardat.tree.builder;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileHierarchyTests {
+	@ParameterizedTest
+	@ValueSource(booleans = {false, true})
+	void relationsTest(boolean offHeap) {
+		FileHierarchy hierarchy = new FileHierarchy(1, offHeap);
+		int root = hierarchy.addChild(-1);
+		int dir = hierarchy.addChild(root);
+		int file = hierarchy.addChild(root);
+		int nested = hierarchy.addChild(dir);
+		int last = hierarchy.addChild(root);
+
+		assertEquals(5, hierarchy.size());
+		assertEquals(-1, hierarchy.getParent(root));
+		assertEquals(root, hierarchy.getParent(last));
+		assertEquals(dir, hierarchy.getParent(nested));
+		assertEquals(3, hierarchy.getChildCount(root));
+		assertEquals(0, hierarchy.getChildCount(file));
+		assertArrayEquals(new int[] {dir, file, last}, hierarchy.getChildren(root));
+		assertArrayEquals(new int[] {nested}, hierarchy.getChildren(dir));
+		assertArrayEquals(new int[0], hierarchy.getChildren(file));
+		assertEquals(-1, hierarchy.getNextSibling(last));
+		assertThrows(IndexOutOfBoundsException.class, () -> hierarchy.getParent(5));
+	}
+
+	@ParameterizedTest
+	@ValueSource(booleans = {false, true})
+	void wideDirectoryTest(boolean offHeap) {
+		FileHierarchy hierarchy = new FileHierarchy(16, offHeap);
+		int root = hierarchy.addChild(-1);
+		for (int i = 0; i < 100_000; i++) hierarchy.addChild(root);
+
+		assertEquals(100_000, hierarchy.getChildCount(root));
+		int[] children = hierarchy.getChildren(root);
+		for (int i = 0; i < children.length; i++) assertEquals(i + 1, children[i]);
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ardat.tree.builder;
+
+import ardat.tree.ArchiveEntity;
+import ardat.tree.FileEntity;
+import ardat.tree.root.TreeRoot;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParallelFSTreeBuilderTests {
+	Path workingDir;
+	ForkJoinPool pool;
+
+	@BeforeEach
+	void beforeEach() throws IOException {
+		workingDir = Files.createTempDirectory(null);
+		pool = new ForkJoinPool(4);
+		// three levels of directories with a few files in every one
+		for (int i = 0; i < 4; i++) {
+			Path dir = Files.createDirectories(workingDir.resolve("dir" + i).resolve("sub" + i));
+			for (int j = 0; j < 5; j++) {
+				Files.writeString(dir.resolve("file" + j), "content" + i + j);
+				Files.writeString(dir.getParent().resolve("file" + j), "content" + j);
+			}
+		}
+		Files.createDirectory(workingDir.resolve("empty"));
+	}
+
+	@AfterEach
+	void afterEach() throws IOException {
+		pool.shutdown();
+		TreeRoot.getTreeRoot().set(null);
+		try (Stream<Path> paths = Files.walk(workingDir)) {
+			for (Path path: paths.sorted(Comparator.reverseOrder()).toList()) Files.delete(path);
+		}
+	}
+
+	@Test
+	void treeTest() throws IOException {
+		// the tree is described before the next one is built, since TreeRoot closes the previous tree
+		ArrayList<String> sequential = new ArrayList<>();
+		describe(new FSTreeBuilder(workingDir).build().get(), sequential);
+		FSTreeBuilder builder = new FSTreeBuilder(workingDir);
+		builder.setPool(pool);
+		ArrayList<String> parallel = new ArrayList<>();
+		describe(builder.build().get(), parallel);
+
+		assertEquals(sequential, parallel);
+	}
+
+	@Test
+	void fileTest() throws IOException {
+		Path file = workingDir.resolve("dir0").resolve("file0");
+		FSTreeBuilder builder = new FSTreeBuilder(file);
+		builder.setPool(pool);
+		ArchiveEntity root = builder.build().get();
+
+		assertInstanceOf(FileEntity.class, root);
+		assertEquals(0, root.getChildren().length);
+	}
+
+	@Test
+	void failureTest() throws IOException {
+		// the dangling link fails the task listing its directory
+		Path link = workingDir.resolve("dir1").resolve("sub1").resolve("link");
+		Files.createSymbolicLink(link, workingDir.resolve("missing"));
+		FSTreeBuilder builder = new FSTreeBuilder(workingDir);
+		builder.setPool(pool);
+		assertThrows(NoSuchFileException.class, builder::build);
+	}
+
+	// the first listing of a directory may update its access time, so it isn't described
+	private static void describe(ArchiveEntity entity, List<String> description) {
+		description.add(
+			entity.getClass().getSimpleName() + " " +
+			String.join("/", entity.getName()) + " " +
+			Arrays
+				.stream(entity.getProperties())
+				.filter(property -> !property.key().equals("access-time"))
+				.toList()
+		);
+		for (ArchiveEntity child: entity.getChildren()) describe(child, description);
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ardat.tree.builder.archive;
+
+import ardat.ArdatFacade;
+import ardat.exceptions.ArchiveCorruptedException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ArchiveListerTests {
+	private static final Path archives = Path.of(System.getProperty("user.dir"), "src/test/resources/test_archives");
+
+	@Test
+	void treeListingTest() throws IOException {
+		try (ArchiveLister lister = ArdatFacade.list(archives.resolve("chain1_linux.ardat"))) {
+			ArchiveLister.ListedEntity root = lister.next();
+			assertEquals("chain1", root.path());
+			assertTrue(root.directory());
+			assertEquals(FileTime.fromMillis(1), root.modifyTime());
+
+			ArchiveLister.ListedEntity subDir = lister.next();
+			assertEquals("chain1/subDir", subDir.path());
+
+			ArchiveLister.ListedEntity subFile = lister.next();
+			assertEquals("chain1/subDir/subFile", subFile.path());
+			assertFalse(subFile.directory());
+			assertEquals(7, subFile.size());
+			assertEquals(0, subFile.decorators().length);
+
+			assertFalse(lister.hasNext());
+			assertThrows(NoSuchElementException.class, lister::next);
+		}
+	}
+
+	@Test
+	void decoratedListingTest() throws IOException {
+		try (ArchiveLister lister = new ArchiveLister(archives.resolve("composed_file_linux.ardat"))) {
+			ArchiveLister.ListedEntity file = lister.next();
+			assertEquals("composed_file", file.path());
+			assertEquals(0x60, file.size());
+			assertArrayEquals(new String[]{"AESEntity", "PrettyEntity"}, file.decorators());
+			assertFalse(lister.hasNext());
+		}
+	}
+
+	@Test
+	void truncatedListingTest() throws IOException {
+		Path truncated = Files.createTempFile(null, ".ardat");
+		try {
+			String content = Files.readString(archives.resolve("chain1_linux.ardat"));
+			Files.writeString(truncated, content.substring(0, content.indexOf("chain1/subDir")));
+			try (ArchiveLister lister = new ArchiveLister(truncated)) {
+				lister.next();
+				assertThrows(ArchiveCorruptedException.class, lister::next);
+			}
+		} finally {
+			Files.delete(truncated);
+		}
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ardat.tree.builder.archive;
+
+import ardat.exceptions.ArchiveCorruptedException;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EntryIndexTests {
+	@ParameterizedTest
+	@ValueSource(booleans = {false, true})
+	void layoutTest(boolean offHeap) {
+		EntryIndex index = new EntryIndex(1, offHeap);
+		index.add("root", 10, 0, 2);
+		index.add("root/dir", 20, 0, 1);
+		index.add("root/file", 30, 6, 0);
+		index.add("root/dir/\u0444\u0430\u0439\u043b", 40, 7, 0);
+		index.validate();
+
+		assertEquals(4, index.size());
+		assertEquals(-1, index.getParent(0));
+		assertEquals(1, index.getFirstChild(0));
+		assertEquals(2, index.getNextSibling(1));
+		assertEquals(-1, index.getNextSibling(2));
+		assertEquals(0, index.getParent(2));
+		assertEquals(3, index.getFirstChild(1));
+		assertEquals(-1, index.getFirstChild(2));
+		assertEquals(1, index.getParent(3));
+		assertEquals(2, index.getChildCount(0));
+		assertEquals(1, index.getChildCount(1));
+		assertEquals(0, index.getChildCount(3));
+		assertEquals(40, index.getOffset(3));
+		assertEquals(7, index.getSize(3));
+		assertEquals("file", index.getName(2));
+		assertEquals("root/dir/\u0444\u0430\u0439\u043b", index.getPath(3));
+	}
+
+	@ParameterizedTest
+	@ValueSource(booleans = {false, true})
+	void misplacedTest(boolean offHeap) {
+		EntryIndex index = new EntryIndex(16, offHeap);
+		index.add("root", 10, 0, 2);
+		index.add("root/dir", 20, 0, 1);
+		assertThrows(ArchiveCorruptedException.class, () -> index.add("root/dir/file", 30, 0, 0));
+	}
+
+	@ParameterizedTest
+	@ValueSource(booleans = {false, true})
+	void missingTest(boolean offHeap) {
+		EntryIndex index = new EntryIndex(16, offHeap);
+		index.add("root", 10, 0, 2);
+		index.add("root/file", 20, 0, 0);
+		assertThrows(ArchiveCorruptedException.class, index::validate);
+		index.add("root/file2", 30, 0, 0);
+		index.validate();
+		assertThrows(ArchiveCorruptedException.class, () -> index.add("root/file3", 40, 0, 0));
+	}
+}
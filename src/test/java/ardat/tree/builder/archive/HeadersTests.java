@@ -0,0 +1,123 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ardat.tree.builder.archive;
+
+import ardat.exceptions.ArchiveCorruptedException;
+import ardat.tree.ArchiveEntityProperty;
+import ardat.tree.builder.ArraySeekableByteChannel;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HeadersTests {
+	static String composedHeader = """
+		class FileEntity
+		create-time 1
+		modify-time 1
+		access-time 1
+		class AESEntity
+		strategy crypto.AESCBCStrategy
+		iv128 aeba7524752a5b6393247b144a73c4cf
+		class PrettyEntity
+		class none
+		filepath composed_file
+		children 0
+		size 0000000000000060
+
+		""";
+
+	@Test
+	void parseTest() {
+		ArchiveHeader header = Headers.parse(composedHeader);
+
+		assertEquals("composed_file", header.path());
+		assertEquals(0x60, header.size());
+		assertEquals(0, header.children());
+		assertEquals(composedHeader.length(), header.length());
+		assertEquals(3, header.layers().length);
+		assertEquals("FileEntity", header.layers()[0].entityClass());
+		assertEquals("AESEntity", header.layers()[1].entityClass());
+		assertEquals("PrettyEntity", header.layers()[2].entityClass());
+		assertArrayEquals(
+			new ArchiveEntityProperty[]{
+				new ArchiveEntityProperty("strategy", "crypto.AESCBCStrategy"),
+				new ArchiveEntityProperty("iv128", "aeba7524752a5b6393247b144a73c4cf")
+			},
+			header.layers()[1].pts()
+		);
+		assertEquals(0, header.layers()[2].pts().length);
+	}
+
+	@Test
+	void byteLengthTest() {
+		String path = "\u043a\u0430\u0442\u0430\u043b\u043e\u0433/\u0444\u0430\u0439\u043b";
+		String header = """
+			class DirectoryEntity
+			class none
+			filepath %s
+			children 0
+			size 0000000000000000
+
+			""".formatted(path);
+		ArchiveHeader parsed = Headers.parse(header);
+
+		assertEquals(path, parsed.path());
+		assertEquals(path.substring(path.indexOf('/') + 1), parsed.getName());
+		assertEquals(header.getBytes(StandardCharsets.UTF_8).length, parsed.length());
+	}
+
+	@Test
+	void incompleteTest() {
+		ByteBuffer buffer = ByteBuffer.wrap(composedHeader.substring(0, 100).getBytes(StandardCharsets.UTF_8));
+		assertNull(Headers.parse(buffer));
+		assertEquals(0, buffer.position());
+	}
+
+	@Test
+	void failSize() {
+		assertThrows(
+			ArchiveCorruptedException.class,
+			() -> Headers.parse(composedHeader.replace("size 0000000000000060", "size 60"))
+		);
+	}
+
+	@Test
+	void failFilepath() {
+		assertThrows(
+			ArchiveCorruptedException.class,
+			() -> Headers.parse(composedHeader.replace("filepath composed_file\n", ""))
+		);
+	}
+
+	@Test
+	void readerTest() throws IOException {
+		String archive = composedHeader + "a".repeat(0x60) + composedHeader.replace("composed_file", "second");
+		HeaderReader reader = new HeaderReader(new ArraySeekableByteChannel(archive.getBytes(StandardCharsets.UTF_8)));
+
+		ArchiveHeader first = reader.read(0);
+		assertEquals("composed_file", first.path());
+		ArchiveHeader second = reader.read(first.length() + first.size());
+		assertEquals("second", second.path());
+		assertThrows(ArchiveCorruptedException.class, () -> reader.read(archive.length() - 10));
+	}
+}
@@ -24,6 +24,7 @@ import ardat.tree.DirectoryEntity;
 import ardat.tree.FileEntity;
 import ardat.tree.builder.ArraySeekableByteChannel;
 import ardat.tree.root.TreeRoot;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
 
@@ -31,6 +32,8 @@ import java.io.IOException;
 import java.util.LinkedList;
 import java.util.stream.Stream;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public abstract class AbstractTreeWriterTests {
@@ -72,6 +75,28 @@ public abstract class AbstractTreeWriterTests {
 		assertTrue(isExpected(root));
 	}
 
+	@Test
+	void finishFailureTest() {
+		AbstractTreeWriter failing = new AbstractTreeWriter() {
+			@Override
+			protected void writeArchiveEntity(ArchiveEntity entity) throws IOException {
+				throw new IOException("write");
+			}
+
+			@Override
+			protected void finishWriting(boolean completed) throws IOException {
+				throw new IOException("finish " + completed);
+			}
+		};
+		TreeRoot.getTreeRoot().set(mkdir("root"));
+		IOException exception = assertThrows(IOException.class, failing::write);
+		TreeRoot.getTreeRoot().set(null);
+
+		assertEquals("write", exception.getMessage());
+		assertEquals(1, exception.getSuppressed().length);
+		assertEquals("finish false", exception.getSuppressed()[0].getMessage());
+	}
+
 	static DirectoryEntity mkdir(String name) {
 		return new DirectoryEntity(
 			name,
@@ -19,14 +19,28 @@
 package ardat.tree.writer;
 
 import ardat.tree.ArchiveEntity;
+import ardat.tree.ArchiveEntityProperty;
+import ardat.tree.ContentLength;
+import ardat.tree.DirectoryEntity;
+import ardat.tree.FileEntity;
+import ardat.tree.builder.ArchiveTreeBuilder;
+import ardat.tree.root.TreeRoot;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ByteChannel;
+import java.nio.channels.FileChannel;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public class ArchiveTreeWriterTests extends AbstractTreeWriterTests {
 	Path workingDir;
@@ -66,6 +80,99 @@ public class ArchiveTreeWriterTests extends AbstractTreeWriterTests {
 		}
 	}
 
+	@Test
+	void sourceFileTest() throws IOException {
+		byte[] content = new byte[300 * 1024];
+		new Random(42).nextBytes(content);
+		Path source = Path.of(workingDir.toString(), "source");
+		Files.write(source, content);
+
+		DirectoryEntity root = mkdir("root");
+		root.addChildren(new FileEntity(
+			"file",
+			Files.newByteChannel(source),
+			new ArchiveEntityProperty[]{
+				new ArchiveEntityProperty("create-time", "1"),
+				new ArchiveEntityProperty("modify-time", "1"),
+				new ArchiveEntityProperty("access-time", "1")
+			}
+		));
+		TreeRoot.getTreeRoot().set(root);
+		getWriter().write();
+
+		ArchiveTreeBuilder.getArchiveTreeBuilder(resultArch).build();
+		ArchiveEntity file = TreeRoot.getTreeRoot().get().getChildren()[0];
+		ByteBuffer buffer = ByteBuffer.allocate(content.length + 1);
+		while (file.getContent(buffer) > 0);
+		TreeRoot.getTreeRoot().set(null);
+
+		assertArrayEquals(content, Arrays.copyOf(buffer.array(), buffer.position()));
+	}
+
+	@Test
+	void grownFileTest() throws IOException {
+		writeGrown(1000);
+	}
+
+	@Test
+	void grownTransferredFileTest() throws IOException {
+		writeGrown(300 * 1024);
+	}
+
+	@Test
+	void shrunkFileTest() throws IOException {
+		Path source = Path.of(workingDir.toString(), "source");
+		Files.write(source, new byte[300 * 1024]);
+
+		DirectoryEntity root = mkdir("root");
+		// the file gets shorter right after the writer predicts its length
+		root.addChildren(new FileEntity("file", Files.newByteChannel(source), new ArchiveEntityProperty[]{}) {
+			@Override
+			public ContentLength getContentLength() throws IOException {
+				ContentLength length = super.getContentLength();
+				try (FileChannel channel = FileChannel.open(source, StandardOpenOption.WRITE)) {
+					channel.truncate(100 * 1024);
+				}
+				return length;
+			}
+		});
+		TreeRoot.getTreeRoot().set(root);
+		assertThrows(IOException.class, () -> getWriter().write());
+		TreeRoot.getTreeRoot().set(null);
+	}
+
+	// the file grows after its length is predicted, the archive stores only the predicted content
+	private void writeGrown(int length) throws IOException {
+		byte[] content = new byte[length];
+		new Random(42).nextBytes(content);
+		Path source = Path.of(workingDir.toString(), "source");
+		Files.write(source, content);
+
+		DirectoryEntity root = mkdir("root");
+		FileEntity grown = new FileEntity(
+			"file",
+			Files.newByteChannel(source),
+			new ArchiveEntityProperty[]{
+				new ArchiveEntityProperty("create-time", "1"),
+				new ArchiveEntityProperty("modify-time", "1"),
+				new ArchiveEntityProperty("access-time", "1")
+			}
+		);
+		root.addChildren(grown);
+		assertEquals(length, grown.getContentLength().bytes());
+		Files.write(source, new byte[500], StandardOpenOption.APPEND);
+		TreeRoot.getTreeRoot().set(root);
+		getWriter().write();
+
+		ArchiveTreeBuilder.getArchiveTreeBuilder(resultArch).build();
+		ArchiveEntity file = TreeRoot.getTreeRoot().get().getChildren()[0];
+		ByteBuffer buffer = ByteBuffer.allocate(length + 1000);
+		while (file.getContent(buffer) > 0);
+		TreeRoot.getTreeRoot().set(null);
+
+		assertArrayEquals(content, Arrays.copyOf(buffer.array(), buffer.position()));
+	}
+
 	@AfterEach
 	void afterEach() throws IOException{
 		Files.walkFileTree(workingDir, new SimpleFileVisitor<>() {
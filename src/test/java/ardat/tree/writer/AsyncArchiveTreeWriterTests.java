@@ -0,0 +1,83 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ardat.tree.writer;
+
+import ardat.tree.ArchiveEntityDecorator;
+import ardat.tree.ContentLength;
+import ardat.tree.DirectoryEntity;
+import ardat.tree.PrettyEntity;
+import ardat.tree.root.TreeRoot;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+public class AsyncArchiveTreeWriterTests extends ArchiveTreeWriterTests {
+	@Override
+	AbstractTreeWriter getWriter() throws IOException {
+		ArchiveTreeWriter writer = ArchiveTreeWriter.getArchiveTreeWriter(resultArch);
+		writer.setAsyncOutput(2);
+		return writer;
+	}
+
+	@Test
+	void layoutTest() throws IOException {
+		Path syncArch = Path.of(workingDir.toString(), "sync.ardat");
+
+		TreeRoot.getTreeRoot().set(tree());
+		ArchiveTreeWriter.getArchiveTreeWriter(syncArch, true).write();
+		TreeRoot.getTreeRoot().set(tree());
+		ArchiveTreeWriter writer = ArchiveTreeWriter.getArchiveTreeWriter(resultArch, true);
+		writer.setAsyncOutput(3);
+		writer.write();
+		TreeRoot.getTreeRoot().set(null);
+
+		assertArrayEquals(Files.readAllBytes(syncArch), Files.readAllBytes(resultArch));
+	}
+
+	// the archive spans several buffers, the sizes of the unpredictable contents are patched, and the large files are
+	// transferred past the buffers
+	private static DirectoryEntity tree() {
+		Random random = new Random(42);
+		DirectoryEntity root = mkdir("root");
+		for (int i = 0; i < 24; i++) {
+			byte[] content = new byte[random.nextInt(i % 4 == 0 ? 700 * 1024 : 4 * 1024)];
+			random.nextBytes(content);
+			if (i % 3 == 0) {
+				root.addChildren(new PrettyEntity(touch("pretty" + i, content)));
+			} else if (i % 3 == 1) {
+				ArchiveEntityDecorator unpredictable = new ArchiveEntityDecorator() {
+					@Override
+					public ContentLength getContentLength() {
+						return null;
+					}
+				};
+				unpredictable.setComponent(touch("unpredictable" + i, content));
+				root.addChildren(unpredictable);
+			} else {
+				root.addChildren(touch("file" + i, content));
+			}
+		}
+		return root;
+	}
+}
@@ -0,0 +1,51 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ardat.tree.writer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ContentSpoolTests {
+	@Test
+	void spillTest() throws IOException {
+		byte[] content = new byte[200 * 1024];
+		new Random(7).nextBytes(content);
+
+		try (ContentSpool spool = new ContentSpool(100 * 1024)) {
+			for (int i = 0; i < 2; i++) {
+				for (int offset = 0; offset < content.length; offset += 10000) {
+					spool.write(ByteBuffer.wrap(content, offset, Math.min(10000, content.length - offset)));
+				}
+				assertEquals(content.length, spool.size());
+
+				ByteArrayOutputStream output = new ByteArrayOutputStream();
+				spool.transferTo(Channels.newChannel(output));
+				assertArrayEquals(content, output.toByteArray());
+				assertEquals(0, spool.size());
+			}
+		}
+	}
+}
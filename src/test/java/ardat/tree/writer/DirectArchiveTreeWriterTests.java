@@ -0,0 +1,88 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ardat.tree.writer;
+
+import ardat.tree.DirectoryEntity;
+import ardat.tree.PrettyEntity;
+import ardat.tree.root.TreeRoot;
+import io.Durability;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+public class DirectArchiveTreeWriterTests extends ArchiveTreeWriterTests {
+	@Override
+	AbstractTreeWriter getWriter() throws IOException {
+		ArchiveTreeWriter writer = ArchiveTreeWriter.getArchiveTreeWriter(resultArch);
+		writer.setDirectOutput(true);
+		return writer;
+	}
+
+	@Test
+	void layoutTest() throws IOException {
+		Path channelArch = Path.of(workingDir.toString(), "channel.ardat");
+
+		TreeRoot.getTreeRoot().set(tree());
+		ArchiveTreeWriter.getArchiveTreeWriter(channelArch, true).write();
+		TreeRoot.getTreeRoot().set(tree());
+		ArchiveTreeWriter writer = ArchiveTreeWriter.getArchiveTreeWriter(resultArch, true);
+		writer.setDirectOutput(true);
+		writer.write();
+		TreeRoot.getTreeRoot().set(null);
+
+		assertArrayEquals(Files.readAllBytes(channelArch), Files.readAllBytes(resultArch));
+	}
+
+	@Test
+	void durableLayoutTest() throws IOException {
+		Path channelArch = Path.of(workingDir.toString(), "channel.ardat");
+
+		TreeRoot.getTreeRoot().set(tree());
+		ArchiveTreeWriter.getArchiveTreeWriter(channelArch, true).write();
+		for (Durability durability: new Durability[]{Durability.perEntity(), Durability.groupCommit(64 * 1024, 1)}) {
+			TreeRoot.getTreeRoot().set(tree());
+			Files.deleteIfExists(resultArch);
+			ArchiveTreeWriter writer = ArchiveTreeWriter.getArchiveTreeWriter(resultArch, true);
+			writer.setDirectOutput(true);
+			writer.setDurability(durability);
+			writer.write();
+			TreeRoot.getTreeRoot().set(null);
+
+			assertArrayEquals(Files.readAllBytes(channelArch), Files.readAllBytes(resultArch), durability.toString());
+		}
+	}
+
+	// the archive spans several stages, and the sizes of the hex encoded contents are patched inside and before them
+	private static DirectoryEntity tree() {
+		Random random = new Random(42);
+		DirectoryEntity root = mkdir("root");
+		for (int i = 0; i < 24; i++) {
+			byte[] content = new byte[random.nextInt(i % 4 == 0 ? 700 * 1024 : 4 * 1024)];
+			random.nextBytes(content);
+			if (i % 3 == 0) root.addChildren(new PrettyEntity(touch("pretty" + i, content)));
+			else root.addChildren(touch("file" + i, content));
+		}
+		return root;
+	}
+}
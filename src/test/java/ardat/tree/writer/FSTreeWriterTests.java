@@ -19,14 +19,22 @@
 package ardat.tree.writer;
 
 import ardat.tree.ArchiveEntity;
+import ardat.tree.ArchiveEntityDecorator;
+import ardat.tree.ContentLength;
+import ardat.tree.DirectoryEntity;
+import ardat.tree.root.TreeRoot;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ByteChannel;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 
 public class FSTreeWriterTests extends AbstractTreeWriterTests {
 	Path workingDir;
@@ -55,6 +63,32 @@ public class FSTreeWriterTests extends AbstractTreeWriterTests {
 		return !comparator.isTerminated();
 	}
 
+	@Test
+	void predictedLengthTest() throws IOException {
+		Random random = new Random(42);
+		byte[] exact = new byte[3 * 1024 * 1024 + 5];
+		byte[] bounded = new byte[100 * 1024];
+		random.nextBytes(exact);
+		random.nextBytes(bounded);
+		ArchiveEntityDecorator overestimated = new ArchiveEntityDecorator() {
+			@Override
+			public ContentLength getContentLength() {
+				return ContentLength.atMost(bounded.length + 4096);
+			}
+		};
+		overestimated.setComponent(touch("bounded", bounded));
+		DirectoryEntity root = mkdir("root");
+		root.addChildren(touch("exact", exact), overestimated, touch("empty", new byte[0]));
+
+		TreeRoot.getTreeRoot().set(root);
+		getWriter().write();
+		TreeRoot.getTreeRoot().set(null);
+
+		assertArrayEquals(exact, Files.readAllBytes(workingDir.resolve("root/exact")));
+		assertArrayEquals(bounded, Files.readAllBytes(workingDir.resolve("root/bounded")));
+		assertArrayEquals(new byte[0], Files.readAllBytes(workingDir.resolve("root/empty")));
+	}
+
 	@AfterEach
 	void afterEach() throws IOException {
 		Files.walkFileTree(workingDir, new SimpleFileVisitor<>() {
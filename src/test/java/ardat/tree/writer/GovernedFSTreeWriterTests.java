@@ -0,0 +1,38 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ardat.tree.writer;
+
+import io.GlobalGovernor;
+import io.IOGovernor;
+import org.junit.jupiter.api.AfterEach;
+
+import java.io.IOException;
+
+public class GovernedFSTreeWriterTests extends ScheduledFSTreeWriterTests {
+	@Override
+	AbstractTreeWriter getWriter() throws IOException {
+		GlobalGovernor.getGlobalGovernor().setGovernor(new IOGovernor(1024 * 1024 * 1024, 100_000));
+		return super.getWriter();
+	}
+
+	@AfterEach
+	void removeGovernor() {
+		GlobalGovernor.getGlobalGovernor().setGovernor(null);
+	}
+}
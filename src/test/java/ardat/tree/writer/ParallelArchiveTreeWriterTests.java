@@ -0,0 +1,81 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ardat.tree.writer;
+
+import ardat.tree.DirectoryEntity;
+import ardat.tree.PrettyEntity;
+import ardat.tree.root.TreeRoot;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+public class ParallelArchiveTreeWriterTests extends ArchiveTreeWriterTests {
+	ExecutorService executor = Executors.newFixedThreadPool(4);
+
+	@Override
+	AbstractTreeWriter getWriter() throws IOException {
+		ArchiveTreeWriter writer = ArchiveTreeWriter.getArchiveTreeWriter(resultArch);
+		writer.setExecutor(executor, 16);
+		return writer;
+	}
+
+	@AfterEach
+	void shutdownExecutor() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	void sequentialLayoutTest() throws IOException {
+		Path sequentialArch = Path.of(workingDir.toString(), "sequential.ardat");
+
+		TreeRoot.getTreeRoot().set(tree());
+		ArchiveTreeWriter.getArchiveTreeWriter(sequentialArch, true).write();
+		TreeRoot.getTreeRoot().set(tree());
+		ArchiveTreeWriter writer = ArchiveTreeWriter.getArchiveTreeWriter(resultArch, true);
+		writer.setExecutor(executor, 256 * 1024);
+		writer.write();
+		TreeRoot.getTreeRoot().set(null);
+
+		assertArrayEquals(Files.readAllBytes(sequentialArch), Files.readAllBytes(resultArch));
+	}
+
+	private static DirectoryEntity tree() {
+		Random random = new Random(42);
+		DirectoryEntity root = mkdir("root");
+		for (int i = 0; i < 8; i++) {
+			DirectoryEntity dir = mkdir("dir" + i);
+			root.addChildren(dir);
+			for (int j = 0; j < 16; j++) {
+				byte[] content = new byte[random.nextInt(i % 2 == 0 ? 1024 : 200 * 1024)];
+				random.nextBytes(content);
+				if (j % 3 == 0) dir.addChildren(new PrettyEntity(touch("pretty" + j, content)));
+				else dir.addChildren(touch("file" + j, content));
+			}
+		}
+		return root;
+	}
+}
@@ -0,0 +1,88 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ardat.tree.writer;
+
+import ardat.tree.ArchiveEntity;
+import ardat.tree.DirectoryEntity;
+import ardat.tree.PrettyEntity;
+import ardat.tree.builder.ArchiveTreeBuilder;
+import ardat.tree.root.TreeRoot;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParallelFSTreeWriterTests extends FSTreeWriterTests {
+	ExecutorService executor = Executors.newFixedThreadPool(4);
+
+	@Override
+	AbstractTreeWriter getWriter() throws IOException {
+		FSTreeWriter writer = FSTreeWriter.getFSTreeWriter(workingDir);
+		writer.setExecutor(executor);
+		return writer;
+	}
+
+	@AfterEach
+	void shutdownExecutor() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	void archiveExtractionTest() throws IOException {
+		Random random = new Random(42);
+		byte[][] contents = new byte[64][];
+		DirectoryEntity root = mkdir("root");
+		DirectoryEntity dir = mkdir("dir");
+		root.addChildren(dir);
+		for (int i = 0; i < contents.length; i++) {
+			contents[i] = new byte[random.nextInt(100 * 1024)];
+			random.nextBytes(contents[i]);
+			ArchiveEntity file = touch("file" + i, contents[i]);
+			(i % 2 == 0 ? root : dir).addChildren(i % 3 == 0 ? new PrettyEntity(file) : file);
+		}
+		Path arch = Files.createTempFile(null, ".ardat");
+		Files.delete(arch);
+		try {
+			TreeRoot.getTreeRoot().set(root);
+			ArchiveTreeWriter.getArchiveTreeWriter(arch).write();
+			TreeRoot.getTreeRoot().set(null);
+
+			ArchiveTreeBuilder.getArchiveTreeBuilder(arch).build();
+			getWriter().write();
+			TreeRoot.getTreeRoot().set(null);
+		} finally {
+			Files.deleteIfExists(arch);
+		}
+
+		for (int i = 0; i < contents.length; i++) {
+			Path file = workingDir.resolve(i % 2 == 0 ? "root" : "root/dir").resolve("file" + i);
+			assertArrayEquals(contents[i], Files.readAllBytes(file));
+			assertEquals(1, Files.getLastModifiedTime(file).toMillis());
+		}
+		assertEquals(1, Files.getLastModifiedTime(workingDir.resolve("root")).toMillis());
+		assertEquals(1, Files.getLastModifiedTime(workingDir.resolve("root/dir")).toMillis());
+	}
+}
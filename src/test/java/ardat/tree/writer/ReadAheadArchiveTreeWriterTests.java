@@ -0,0 +1,127 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ardat.tree.writer;
+
+import ardat.tree.ArchiveEntityDecorator;
+import ardat.tree.ArchiveEntityProperty;
+import ardat.tree.DirectoryEntity;
+import ardat.tree.FileEntity;
+import ardat.tree.root.TreeRoot;
+import io.GlobalGovernor;
+import io.IOGovernor;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReadAheadArchiveTreeWriterTests extends ArchiveTreeWriterTests {
+	@Override
+	AbstractTreeWriter getWriter() throws IOException {
+		ArchiveTreeWriter writer = ArchiveTreeWriter.getArchiveTreeWriter(resultArch);
+		writer.setReadAhead(4, 1024 * 1024);
+		return writer;
+	}
+
+	@Test
+	void prefetchTest() throws IOException {
+		Set<String> prefetched = ConcurrentHashMap.newKeySet();
+		CountDownLatch nextPrefetched = new CountDownLatch(1);
+		DirectoryEntity root = mkdir("root");
+		for (int i = 0; i < 16; i++) {
+			String name = "file" + i;
+			ArchiveEntityDecorator recorder = new ArchiveEntityDecorator() {
+				@Override
+				public int getContent(ByteBuffer byteBuffer) throws IOException {
+					// the next entity is read ahead while the first one is being written
+					try {
+						if (name.equals("file0")) assertTrue(nextPrefetched.await(10, TimeUnit.SECONDS));
+					} catch (InterruptedException exception) {
+						throw new IOException(exception);
+					}
+					return super.getContent(byteBuffer);
+				}
+
+				@Override
+				public int prefetchContent(ByteBuffer byteBuffer, long offset) throws IOException {
+					prefetched.add(name);
+					if (name.equals("file1")) nextPrefetched.countDown();
+					return super.prefetchContent(byteBuffer, offset);
+				}
+			};
+			recorder.setComponent(touch(name, name.getBytes()));
+			root.addChildren(recorder);
+		}
+		TreeRoot.getTreeRoot().set(root);
+		getWriter().write();
+		TreeRoot.getTreeRoot().set(null);
+
+		assertFalse(prefetched.contains("file0"));
+		assertTrue(prefetched.contains("file1"));
+	}
+
+	@Test
+	void governedTest() throws IOException {
+		Set<String> prefetched = ConcurrentHashMap.newKeySet();
+		DirectoryEntity root = mkdir("root");
+		for (int i = 0; i < 16; i++) {
+			String name = "file" + i;
+			ArchiveEntityDecorator recorder = new ArchiveEntityDecorator() {
+				@Override
+				public int prefetchContent(ByteBuffer byteBuffer, long offset) throws IOException {
+					prefetched.add(name);
+					return super.prefetchContent(byteBuffer, offset);
+				}
+			};
+			recorder.setComponent(touch(name, name.getBytes()));
+			root.addChildren(recorder);
+		}
+		TreeRoot.getTreeRoot().set(root);
+		GlobalGovernor.getGlobalGovernor().setGovernor(new IOGovernor(1024 * 1024 * 1024, 100_000));
+		try {
+			getWriter().write();
+		} finally {
+			GlobalGovernor.getGlobalGovernor().setGovernor(null);
+			TreeRoot.getTreeRoot().set(null);
+		}
+
+		assertTrue(prefetched.isEmpty());
+	}
+
+	@Test
+	void positionTest() throws IOException {
+		Path source = Path.of(workingDir.toString(), "source");
+		Files.writeString(source, "qwerty");
+		try (FileEntity file = new FileEntity("file", Files.newByteChannel(source), new ArchiveEntityProperty[0])) {
+			ByteBuffer buffer = ByteBuffer.allocate(16);
+			assertEquals(4, file.prefetchContent(buffer, 2));
+			assertEquals("erty", new String(buffer.array(), 0, 4));
+			assertEquals(-1, file.prefetchContent(buffer.clear(), 6));
+			buffer.clear();
+			assertEquals(6, file.getContent(buffer));
+		}
+	}
+}
@@ -0,0 +1,97 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ardat.tree.writer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScheduledFSTreeWriterTests extends ParallelFSTreeWriterTests {
+	ForkJoinPool pool = new ForkJoinPool(4);
+
+	SizeAwareScheduler scheduler = new SizeAwareScheduler(pool, 8 * 1024);
+
+	@Override
+	AbstractTreeWriter getWriter() throws IOException {
+		FSTreeWriter writer = FSTreeWriter.getFSTreeWriter(workingDir);
+		writer.setScheduler(scheduler);
+		return writer;
+	}
+
+	@AfterEach
+	void shutdownPool() {
+		pool.shutdownNow();
+	}
+
+	@Test
+	void metricsTest() throws IOException {
+		archiveExtractionTest();
+
+		SizeAwareScheduler.Metrics metrics = scheduler.getMetrics();
+		assertEquals(64, metrics.tasks());
+		assertTrue(metrics.parts() > 2 * metrics.tasks());
+		assertEquals(4, metrics.workers());
+		assertTrue(metrics.busyNanos() > 0);
+	}
+
+	@Test
+	void partsTest() throws IOException {
+		SizeAwareScheduler split = new SizeAwareScheduler(pool, 1024);
+		split.add(4097, (offset, count) -> {}, () -> {});
+		split.add(10, () -> {});
+		split.run();
+
+		// 1024 + 1024 + 1024 + 1024 + 1 bytes and the unsplit task, the completion isn't a part
+		assertEquals(2, split.getMetrics().tasks());
+		assertEquals(6, split.getMetrics().parts());
+	}
+
+	@Test
+	void largestFirstTest() throws IOException {
+		StringBuffer order = new StringBuffer();
+		ForkJoinPool singlePool = new ForkJoinPool(1);
+		try {
+			SizeAwareScheduler single = new SizeAwareScheduler(singlePool, 1024);
+			single.add(1, () -> order.append("small "));
+			single.add(3, () -> order.append("large "));
+			single.add(2, () -> order.append("medium "));
+			single.run();
+		} finally {
+			singlePool.shutdownNow();
+		}
+
+		assertEquals("large medium small ", order.toString());
+	}
+
+	@Test
+	void failureTest() {
+		SizeAwareScheduler failing = new SizeAwareScheduler(pool, 1024);
+		failing.add(4096, (offset, count) -> {
+			if (offset > 0) throw new IOException("range " + offset);
+		}, () -> fail("the failed task is completed"));
+
+		IOException exception = assertThrows(IOException.class, failing::run);
+		assertTrue(exception.getMessage().startsWith("range "));
+		assertEquals(1, failing.getMetrics().tasks());
+	}
+}
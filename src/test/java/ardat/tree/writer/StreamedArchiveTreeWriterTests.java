@@ -0,0 +1,81 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ardat.tree.writer;
+
+import ardat.tree.ArchiveEntityDecorator;
+import ardat.tree.ContentLength;
+import ardat.tree.DirectoryEntity;
+import ardat.tree.root.TreeRoot;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+public class StreamedArchiveTreeWriterTests extends ArchiveTreeWriterTests {
+	OutputStream output;
+
+	@Override
+	AbstractTreeWriter getWriter() throws IOException {
+		output = Files.newOutputStream(resultArch);
+		return ArchiveTreeWriter.getArchiveTreeWriter(Channels.newChannel(output), false);
+	}
+
+	@AfterEach
+	void closeOutput() throws IOException {
+		if (output != null) output.close();
+		output = null;
+	}
+
+	@Test
+	void spooledContentTest() throws IOException {
+		byte[] content = new byte[300 * 1024];
+		new Random(42).nextBytes(content);
+		Path seekableArch = Path.of(workingDir.toString(), "seekable.ardat");
+
+		TreeRoot.getTreeRoot().set(tree(content));
+		ArchiveTreeWriter.getArchiveTreeWriter(seekableArch, true).write();
+		TreeRoot.getTreeRoot().set(tree(content));
+		try (OutputStream stream = Files.newOutputStream(resultArch)) {
+			ArchiveTreeWriter.getArchiveTreeWriter(Channels.newChannel(stream), true).write();
+		}
+		TreeRoot.getTreeRoot().set(null);
+
+		assertArrayEquals(Files.readAllBytes(seekableArch), Files.readAllBytes(resultArch));
+	}
+
+	private static DirectoryEntity tree(byte[] content) {
+		DirectoryEntity root = mkdir("root");
+		ArchiveEntityDecorator unpredictable = new ArchiveEntityDecorator() {
+			@Override
+			public ContentLength getContentLength() {
+				return null;
+			}
+		};
+		unpredictable.setComponent(touch("unpredictable", content));
+		root.addChildren(touch("big", content), unpredictable, touch("small", "qwerty".getBytes()));
+		return root;
+	}
+}
@@ -0,0 +1,64 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ardat.tree.writer;
+
+import ardat.tree.ContentLength;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WindowPolicyTests {
+	@Test
+	void adaptiveTest() {
+		WindowPolicy policy = WindowPolicy.adaptive();
+		assertEquals(4096, policy.getWindowSize(ContentLength.exactly(0), 4096));
+		assertEquals(4096, policy.getWindowSize(ContentLength.exactly(100), 4096));
+		assertEquals(8192, policy.getWindowSize(ContentLength.exactly(4096), 4096));
+		assertEquals(64 * 1024, policy.getWindowSize(ContentLength.atMost(60 * 1024), 16 * 1024));
+		assertEquals(1024 * 1024, policy.getWindowSize(ContentLength.exactly(1024 * 1024 - 1), 4096));
+		assertEquals(1024 * 1024, policy.getWindowSize(ContentLength.exactly(10L * 1024 * 1024), 4096));
+		assertEquals(4 * 1024 * 1024, policy.getWindowSize(ContentLength.exactly(100L << 30), 4096));
+		assertEquals(1024 * 1024, policy.getWindowSize(null, 4096));
+		// the implausible block sizes are replaced by the default
+		assertEquals(4096, policy.getWindowSize(ContentLength.exactly(100), 0));
+		assertEquals(4096, policy.getWindowSize(ContentLength.exactly(100), 1L << 40));
+	}
+
+	@Test
+	void fixedTest() {
+		WindowPolicy policy = WindowPolicy.fixed(8 * 1024);
+		assertEquals(8 * 1024, policy.getWindowSize(ContentLength.exactly(100), 4096));
+		assertEquals(8 * 1024, policy.getWindowSize(null, 512));
+	}
+
+	@Test
+	void blockSizeTest() throws IOException {
+		Path dir = Files.createTempDirectory(null);
+		try {
+			assertTrue(WindowPolicy.getBlockSize(dir) > 0);
+			assertEquals(WindowPolicy.DEFAULT_BLOCK_SIZE, WindowPolicy.getBlockSize(dir.resolve("missing")));
+		} finally {
+			Files.delete(dir);
+		}
+	}
+}
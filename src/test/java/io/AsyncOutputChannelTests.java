@@ -0,0 +1,81 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsyncOutputChannelTests {
+	@Test
+	void writeTest() throws IOException {
+		byte[] content = new byte[100_001];
+		new Random(42).nextBytes(content);
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		AsyncOutputChannel channel = new AsyncOutputChannel(Channels.newChannel(output), 2, 4096);
+
+		assertEquals(50_000, channel.write(ByteBuffer.wrap(content, 0, 50_000)));
+		channel.drain();
+		assertArrayEquals(Arrays.copyOf(content, 50_000), output.toByteArray());
+		for (int offset = 50_000; offset < content.length; offset += 1000) {
+			channel.write(ByteBuffer.wrap(content, offset, Math.min(1000, content.length - offset)));
+		}
+		channel.close();
+		assertFalse(channel.isOpen());
+		assertArrayEquals(content, output.toByteArray());
+		assertThrows(ClosedChannelException.class, () -> channel.write(ByteBuffer.allocate(1)));
+	}
+
+	@Test
+	void failureTest() throws IOException {
+		WritableByteChannel failing = new WritableByteChannel() {
+			@Override
+			public int write(ByteBuffer src) throws IOException {
+				throw new IOException("failure");
+			}
+
+			@Override
+			public boolean isOpen() {
+				return true;
+			}
+
+			@Override
+			public void close() {}
+		};
+		AsyncOutputChannel channel = new AsyncOutputChannel(failing, 3, 512);
+
+		// the failure is rethrown once the failed buffer is needed again
+		IOException exception = assertThrows(IOException.class, () -> {
+			for (int i = 0; i < 10; i++) channel.write(ByteBuffer.allocate(512));
+		});
+		assertEquals("failure", exception.getMessage());
+		channel.write(ByteBuffer.allocate(100));
+		assertThrows(IOException.class, channel::close);
+		assertFalse(channel.isOpen());
+	}
+}
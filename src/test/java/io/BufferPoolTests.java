@@ -0,0 +1,86 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BufferPoolTests {
+	@Test
+	void sizeClassTest() {
+		BufferPool pool = BufferPool.getBufferPool();
+		pool.clear();
+		ByteBuffer small = pool.acquire(48);
+		assertTrue(small.isDirect());
+		assertEquals(512, small.capacity());
+		assertEquals(0, small.position());
+		assertEquals(48, small.limit());
+
+		ByteBuffer exact = pool.acquire(64 * 1024);
+		assertEquals(64 * 1024, exact.capacity());
+		ByteBuffer odd = pool.acquire(64 * 1024 + 1);
+		assertEquals(128 * 1024, odd.capacity());
+
+		ByteBuffer large = pool.acquire(5 * 1024 * 1024);
+		assertEquals(5 * 1024 * 1024, large.capacity());
+		pool.release(large);
+		assertEquals(0, pool.getPooledBytes());
+	}
+
+	@Test
+	void reuseTest() {
+		BufferPool pool = BufferPool.getBufferPool();
+		pool.clear();
+		ByteBuffer buffer = pool.acquire(1000);
+		buffer.put((byte) 1).limit(10);
+		pool.release(buffer);
+		assertEquals(1024, pool.getPooledBytes());
+
+		ByteBuffer reused = pool.acquire(600);
+		assertSame(buffer, reused);
+		assertEquals(0, reused.position());
+		assertEquals(600, reused.limit());
+		assertEquals(0, pool.getPooledBytes());
+
+		pool.release(ByteBuffer.allocate(1024));
+		pool.release(ByteBuffer.allocateDirect(1000));
+		assertEquals(0, pool.getPooledBytes());
+	}
+
+	@Test
+	void retentionTest() {
+		BufferPool pool = BufferPool.getBufferPool();
+		pool.clear();
+		ByteBuffer[] buffers = new ByteBuffer[8];
+		for (int i = 0; i < buffers.length; i++) buffers[i] = pool.acquire(1024 * 1024);
+		for (ByteBuffer buffer: buffers) pool.release(buffer);
+		assertEquals(4 * 1024 * 1024, pool.getPooledBytes());
+
+		pool.clear();
+		buffers = new ByteBuffer[100];
+		for (int i = 0; i < buffers.length; i++) buffers[i] = pool.acquire(512);
+		for (ByteBuffer buffer: buffers) pool.release(buffer);
+		assertEquals(64 * 512, pool.getPooledBytes());
+		pool.clear();
+		assertEquals(0, pool.getPooledBytes());
+	}
+}
@@ -0,0 +1,77 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class DirectOutputChannelTests {
+	@Test
+	void appendTest() throws IOException {
+		Path path = Files.createTempFile(null, null);
+		int blockSize = (int) Files.getFileStore(path).getBlockSize();
+		byte[] content = new byte[3 * 1024 * 1024 + 1001];
+		new Random(42).nextBytes(content);
+		try {
+			Files.write(path, new byte[]{1, 2, 3});
+			try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				DirectOutputChannel channel;
+				try {
+					channel = new DirectOutputChannel(path, file, 3, blockSize);
+				} catch (IOException | UnsupportedOperationException exception) {
+					channel = null;
+				}
+				assumeTrue(channel != null, "the file system doesn't support the direct I/O");
+
+				// the first write fills the first stage
+				assertEquals(1100 * 1024, channel.write(ByteBuffer.wrap(content, 0, 1100 * 1024)));
+				channel.write(ByteBuffer.wrap(content, 1100 * 1024, content.length - 1100 * 1024));
+				assertEquals(3 + content.length, channel.position());
+
+				// the bytes are overwritten before the stage and inside it
+				content[10] = 0;
+				content[content.length - 10] = 0;
+				channel.write(ByteBuffer.wrap(new byte[]{0}), 13);
+				channel.write(ByteBuffer.wrap(new byte[]{0}), 3 + content.length - 10);
+
+				channel.writeStaged();
+				assertEquals(3 + content.length, file.size());
+				channel.close();
+				assertFalse(channel.isOpen());
+				assertEquals(3 + content.length, file.size());
+			}
+			byte[] written = Files.readAllBytes(path);
+			assertArrayEquals(new byte[]{1, 2, 3}, Arrays.copyOf(written, 3));
+			assertArrayEquals(content, Arrays.copyOfRange(written, 3, written.length));
+		} finally {
+			Files.delete(path);
+		}
+	}
+}
@@ -0,0 +1,118 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FlusherTests {
+	@Test
+	void endOfJobTest() throws IOException {
+		Path file = Files.createTempFile(null, null);
+		try (Flusher flusher = new Flusher(Durability.endOfJob())) {
+			FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE);
+			channel.write(ByteBuffer.wrap("qwerty".getBytes()));
+			flusher.written(channel, 6);
+			channel.close();
+			// the closed channel shows that it's forced only by finish()
+			assertThrows(ClosedChannelException.class, flusher::finish);
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	void reopenedFileTest() throws IOException {
+		Path file = Files.createTempFile(null, null);
+		try (Flusher flusher = new Flusher(Durability.endOfJob())) {
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+				channel.write(ByteBuffer.wrap("qwerty".getBytes()));
+				flusher.written(channel, file, 6);
+			}
+			flusher.finish();
+			assertEquals("qwerty", Files.readString(file));
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	void perEntityTest() throws IOException {
+		Path file = Files.createTempFile(null, null);
+		try (Flusher flusher = new Flusher(Durability.perEntity())) {
+			FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE);
+			channel.close();
+			assertThrows(ClosedChannelException.class, () -> flusher.written(channel, 6));
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	void groupCommitTest() throws IOException, InterruptedException {
+		Path file = Files.createTempFile(null, null);
+		try (Flusher flusher = new Flusher(Durability.groupCommit(1024 * 1024, 10))) {
+			FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE);
+			flusher.written(channel, 6);
+			channel.close();
+			// the background commit fails after the delay and the failure is reported by the next call
+			Thread.sleep(200);
+			assertThrows(ClosedChannelException.class, () -> flusher.written(channel, 6));
+			assertThrows(ClosedChannelException.class, flusher::finish);
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	void preparationTest() throws IOException {
+		Path file = Files.createTempFile(null, null);
+		AtomicInteger prepared = new AtomicInteger();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			try (Flusher flusher = new Flusher(Durability.perEntity())) {
+				flusher.setPreparation(prepared::incrementAndGet);
+				flusher.written(channel, 6);
+				flusher.written(channel, 6);
+				assertEquals(2, prepared.get());
+			}
+			prepared.set(0);
+			try (Flusher flusher = new Flusher(Durability.endOfJob())) {
+				flusher.setPreparation(prepared::incrementAndGet);
+				flusher.written(channel, 6);
+				flusher.written(channel, 6);
+				// the data is forced only once
+				assertEquals(0, prepared.get());
+				flusher.finish();
+				assertEquals(1, prepared.get());
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+}
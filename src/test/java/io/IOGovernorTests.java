@@ -0,0 +1,66 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IOGovernorTests {
+	@Test
+	void bytesLimitTest() throws IOException {
+		IOGovernor governor = new IOGovernor(1024 * 1024, 0);
+		long start = System.nanoTime();
+		// the bucket holds a tenth of a second
+		governor.acquire(100 * 1024, 1);
+		governor.acquire(200 * 1024, 1);
+		long elapsed = (System.nanoTime() - start) / 1_000_000;
+		assertTrue(elapsed >= 150 && elapsed < 2000, "elapsed " + elapsed);
+	}
+
+	@Test
+	void opsLimitTest() throws IOException {
+		IOGovernor governor = new IOGovernor(0, 100);
+		long start = System.nanoTime();
+		for (int i = 0; i < 30; i++) governor.acquire(1024 * 1024, 1);
+		long elapsed = (System.nanoTime() - start) / 1_000_000;
+		assertTrue(elapsed >= 150 && elapsed < 2000, "elapsed " + elapsed);
+	}
+
+	@Test
+	void adjustmentTest() throws IOException {
+		IOGovernor governor = new IOGovernor(1024, 0);
+		assertEquals(64 * 1024, governor.getChunkSize());
+		governor.setBytesPerSecond(0);
+		long start = System.nanoTime();
+		governor.acquire(1024 * 1024 * 1024, 1);
+		assertTrue((System.nanoTime() - start) / 1_000_000 < 1000);
+		assertEquals(0, governor.getBytesPerSecond());
+	}
+
+	@Test
+	void bypassTest() throws IOException {
+		GlobalGovernor.getGlobalGovernor().setGovernor(null);
+		long start = System.nanoTime();
+		GlobalGovernor.getGlobalGovernor().acquire(Long.MAX_VALUE / 2, Integer.MAX_VALUE);
+		assertTrue((System.nanoTime() - start) / 1_000_000 < 1000);
+	}
+}
@@ -0,0 +1,67 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappedOutputChannelTests {
+	@Test
+	void appendTest() throws IOException {
+		Path path = Files.createTempFile(null, null);
+		byte[] content = new byte[5 * 1024 * 1024];
+		new Random(42).nextBytes(content);
+		try {
+			Files.write(path, new byte[]{1, 2, 3});
+			try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				MappedOutputChannel channel = new MappedOutputChannel(file, 3);
+				// the first write crosses the end of the first region
+				assertEquals(1000 * 1024, channel.write(ByteBuffer.wrap(content, 0, 1000 * 1024)));
+				assertEquals(100 * 1024, channel.write(ByteBuffer.wrap(content, 1000 * 1024, 100 * 1024)));
+
+				ByteBuffer view = channel.view(2 * 1024 * 1024);
+				view.put(content, 1100 * 1024, 1024 * 1024);
+				channel.skip(view.position());
+				channel.write(ByteBuffer.wrap(content, 2124 * 1024, content.length - 2124 * 1024));
+				assertEquals(3 + content.length, channel.position());
+				assertTrue(file.size() > channel.position());
+
+				channel.close();
+				assertFalse(channel.isOpen());
+				assertEquals(3 + content.length, file.size());
+				assertThrows(IOException.class, () -> channel.view(1));
+			}
+			byte[] written = Files.readAllBytes(path);
+			assertArrayEquals(new byte[]{1, 2, 3}, Arrays.copyOf(written, 3));
+			assertArrayEquals(content, Arrays.copyOfRange(written, 3, written.length));
+		} finally {
+			Files.delete(path);
+		}
+	}
+}
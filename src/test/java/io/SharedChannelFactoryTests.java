@@ -0,0 +1,112 @@
+/*
+ * Ardat is a file archiver
+ * Copyright (C) 2024 Yegore Vlussove
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SharedChannelFactoryTests {
+	@Test
+	void closingTest() throws IOException {
+		Path file = Files.createTempFile(null, null);
+		try {
+			Files.writeString(file, "qwerty");
+			SharedChannelFactory factory = SharedChannelFactory.getSharedChannelFactory();
+			SharedSeekableByteChannel first = factory.newChannel(file);
+			SharedSeekableByteChannel second = factory.newChannel(file, 2);
+			SharedSeekableByteChannel third = factory.newChannel(second);
+
+			first.close();
+			second.close();
+			ByteBuffer buffer = ByteBuffer.allocate(16);
+			assertEquals(4, third.read(buffer));
+			assertTrue(third.getUnderlyingChannel().isOpen());
+			third.close();
+			assertFalse(third.getUnderlyingChannel().isOpen());
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	void concurrentReadTest() throws Exception {
+		byte[] content = new byte[1024 * 1024];
+		for (int i = 0; i < content.length; i++) content[i] = (byte) (i / 4096);
+		Path file = Files.createTempFile(null, null);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			Files.write(file, content);
+			ArrayList<SharedSeekableByteChannel> channels = new ArrayList<>();
+			for (int i = 0; i < 256; i++) {
+				channels.add(SharedChannelFactory.getSharedChannelFactory().newChannel(file, i * 4096L, 4096));
+			}
+			ArrayList<Future<Boolean>> results = new ArrayList<>();
+			for (int i = 0; i < channels.size(); i++) {
+				SharedSeekableByteChannel channel = channels.get(i);
+				byte expected = (byte) i;
+				results.add(executor.submit(() -> {
+					ByteBuffer buffer = ByteBuffer.allocate(100);
+					long read = 0;
+					int n;
+					while ((n = channel.read(buffer.clear())) > 0) {
+						read += n;
+						for (int j = 0; j < n; j++) if (buffer.get(j) != expected) return false;
+					}
+					return read == 4096;
+				}));
+			}
+			for (Future<Boolean> result: results) assertTrue(result.get());
+			for (SharedSeekableByteChannel channel: channels) channel.close();
+		} finally {
+			executor.shutdownNow();
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	void transferTest() throws IOException {
+		Path file = Files.createTempFile(null, null);
+		Path target = Files.createTempFile(null, null);
+		try {
+			Files.writeString(file, "qwerty");
+			SharedSeekableByteChannel channel = SharedChannelFactory.getSharedChannelFactory().newChannel(file, 1, 4);
+			try (FileChannel output = FileChannel.open(target, StandardOpenOption.WRITE)) {
+				assertEquals(3, channel.transferTo(1, 16, output));
+			}
+			assertEquals(0, channel.position());
+			assertEquals("ert", Files.readString(target));
+			channel.close();
+		} finally {
+			Files.delete(file);
+			Files.delete(target);
+		}
+	}
+}